@@ -33,6 +33,9 @@ import java.util.*;
  */
 public class Controller {
 
+    // number of documents returned for each query of a query file, deep enough for trec_eval.
+    private static final int FILE_QUERY_RESULT_SIZE = 1000;
+
 
     @FXML public TextField corpusPath;
     @FXML public TextField indexPath;
@@ -170,7 +173,7 @@ public class Controller {
     @FXML
     public void onClickRunQuery() {
         updateOptions();
-        if (dictionary == null || documentMap == null) {
+        if (dictionary == null || documentMap == null || queryProcessor == null) {
             showAlert("ERROR", "cannot process query when dictionary\nis not loaded.");
             return;
         }
@@ -201,7 +204,7 @@ public class Controller {
             textResult = queryProcessor.query(queryText.getText());
             double queryTime = (System.currentTimeMillis() - t0) / 1000.0;
             showAlert("SUCCESS", "query results are ready!\n" +
-                    " query processing took: " + queryTime);
+                    " query processing took: " + queryTime + "\n" + getCacheStatistics());
             showQueryResult(textResult);
         }
     }
@@ -212,10 +215,10 @@ public class Controller {
         Pair<Integer, String>[] queries = getQueriesFromFile();
         if (queries != null) {
             long t0 = System.currentTimeMillis();
-            fileResult = queryProcessor.query(queries);
+            fileResult = queryProcessor.queryBatch(queries, FILE_QUERY_RESULT_SIZE);
             double queryTime = (System.currentTimeMillis() - t0) / 1000.0;
             showAlert("SUCCESS", "query results are ready!\n" +
-                    "query processing took: " + queryTime);
+                    "query processing took: " + queryTime + "\n" + getCacheStatistics());
 
             String resultPath = directoryChooser.showDialog(stage).getAbsolutePath() + "/results.txt";
             saveQueryResults(fileResult, resultPath);
@@ -225,6 +228,9 @@ public class Controller {
     @FXML
     public void onClickReset() {
         try {
+            // the query processor holds the inverted file open, it must be released before deleting it.
+            if (queryProcessor != null) queryProcessor.close();
+            queryProcessor = null;
             if (dictionary != null) dictionary.clear();
             if (documentMap != null) documentMap.clear();
             PostingCache.deleteInvertedFile();
@@ -245,6 +251,7 @@ public class Controller {
         try {
             this.dictionary = Dictionary.loadDictionary();
             this.documentMap = DocumentMap.loadDocumentMap();
+            if (this.queryProcessor != null) this.queryProcessor.close();
             this.queryProcessor = new QueryProcessor(configuration.getIndexPath(), dictionary, documentMap);
             viewableDictionary.clear();
         } catch (IOException e) {
@@ -307,6 +314,12 @@ public class Controller {
         alert.showAndWait();
     }
 
+    // returns the hit and miss counters of the query processor's result cache.
+    private String getCacheStatistics() {
+        return "result cache hits: " + queryProcessor.getCacheHits() +
+                ", misses: " + queryProcessor.getCacheMisses();
+    }
+
     // parses the query file and returns an array of queries.
     private Pair<Integer, String>[] getQueriesFromFile() {
         if (queryPath.getText().isEmpty())
@@ -366,17 +379,20 @@ public class Controller {
             BufferedWriter resultsWriter = new BufferedWriter(new FileWriter(path));
 
             for (Map.Entry<Integer, int[]> query : result.sorted()) {
-                for (int docID : query.getValue()) {
-                    Optional<DocumentMap.DocumentMapping> dictTerm = documentMap.lookup(docID);
+                int[] docs = query.getValue();
+                double[] scores = result.scoresOf(query.getKey()).orElse(new double[docs.length]);
+                for (int rank = 0; rank < docs.length; rank++) {
+                    Optional<DocumentMap.DocumentMapping> dictTerm = documentMap.lookup(docs[rank]);
                     String docName = dictTerm.orElseThrow(
                             () -> new IllegalStateException("query result contained nonexistent document"))
                             .name;
 
+                    // trec_eval format: queryID iteration docName rank score runName
                     resultsWriter.append(String.valueOf(query.getKey())).append(" ")
                             .append("0 ")
                             .append(docName).append(" ")
-                            .append("10 ")
-                            .append("9 ")
+                            .append(String.valueOf(rank + 1)).append(" ")
+                            .append(String.valueOf(scores[rank])).append(" ")
                             .append("mt\n");
                 }
             }
@@ -0,0 +1,70 @@
+package indexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The block maxima of a posting line, the postings of a line are split into blocks of
+ * {@link #BLOCK_SIZE} consecutive postings and for each block the last docID in the block
+ * and an upper bound of the document dependant part of the bm25 score of the postings in
+ * the block are kept.
+ *
+ * <p> Block max file format:
+ * The block maxima of every term that has more than one block are written one after the other,
+ * the block maxima of a term are [block count (int)]([last docID (int)][score bound (float)])*
+ * and the term's {@link Term#blockPointer} points to the start of its block maxima.
+ */
+public final class BlockMaxList {
+
+    /**
+     * the number of postings in each block (the last block may be smaller).
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    private final int[] lastDocuments;
+    private final float[] scoreBounds;
+
+    private BlockMaxList(int[] lastDocuments, float[] scoreBounds) {
+        this.lastDocuments = lastDocuments;
+        this.scoreBounds = scoreBounds;
+    }
+
+    /**
+     * @return the number of blocks.
+     */
+    public int size() {
+        return lastDocuments.length;
+    }
+
+    /**
+     * @param block index of a block, between 0 and {@link #size()}.
+     * @return the docID of the last posting in the block.
+     */
+    public int lastDocumentAt(int block) {
+        return lastDocuments[block];
+    }
+
+    /**
+     * @param block index of a block, between 0 and {@link #size()}.
+     * @return upper bound of the document dependant part of the bm25 score of the postings in the block.
+     */
+    public float scoreBoundAt(int block) {
+        return scoreBounds[block];
+    }
+
+    /**
+     * Decodes the block maxima of a term.
+     * @param blocks buffer holding the ([last docID][score bound])* part of the term's block maxima.
+     * @return the decoded block maxima.
+     */
+    public static BlockMaxList decode(ByteBuffer blocks) {
+        int blockCount = blocks.remaining() / (Integer.BYTES + Float.BYTES);
+        int[] lastDocuments = new int[blockCount];
+        float[] scoreBounds = new float[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            lastDocuments[i] = blocks.getInt();
+            scoreBounds[i] = blocks.getFloat();
+        }
+
+        return new BlockMaxList(lastDocuments, scoreBounds);
+    }
+}
@@ -0,0 +1,131 @@
+package indexer;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Computes the score bounds of the posting lines written into the inverted file
+ * and writes their block maxima into the block max file (see {@link BlockMaxList}).
+ *
+ * <p> The writer receives the decoded postings of a line as a {@link PostingDecoder.Consumer}
+ * and computes the document dependant part of the bm25 score of each posting
+ * {@code (k + 1) * tf / (tf + k * (1 - b + b * (length / avgLength)))},
+ * the maximum of the line is its term's score bound and the maximum of every
+ * {@link BlockMaxList#BLOCK_SIZE} postings is a block maximum.
+ * The bounds are rounded up when stored as floats so they never underestimate a score.
+ */
+class BlockMaxWriter implements PostingDecoder.Consumer, Closeable {
+
+    private static final int INITIAL_BLOCK_COUNT = 64;
+
+    private final DataOutputStream output;
+    // number of bytes written into the block max file.
+    private long position;
+
+    private final double k1;
+    private final double[] lengthNormalization;
+
+    // the block maxima of the current line.
+    private int[] lastDocuments;
+    private float[] blockBounds;
+    private int blockCount;
+
+    // the state of the current block.
+    private int blockSize;
+    private int lastDocument;
+    private double blockBound;
+
+    /**
+     * Creates the block max file at the given path.
+     * @param path path of the block max file.
+     * @param k the bm25 k parameter of the index.
+     * @param lengthNormalization column of {@code k * (1 - b + b * (length / avgLength))} for each document.
+     * @throws IOException if the file cannot be created.
+     */
+    BlockMaxWriter(String path, double k, double[] lengthNormalization) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        this.position = 0;
+        this.k1 = k + 1;
+        this.lengthNormalization = lengthNormalization;
+        this.lastDocuments = new int[INITIAL_BLOCK_COUNT];
+        this.blockBounds = new float[INITIAL_BLOCK_COUNT];
+        begin();
+    }
+
+    /**
+     * Prepares the writer for a new posting line.
+     */
+    void begin() {
+        blockCount = 0;
+        blockSize = 0;
+        blockBound = 0;
+    }
+
+    @Override
+    public void accept(int docID, int frequency) {
+        double score = (k1 * frequency) / (frequency + lengthNormalization[docID]);
+        blockBound = Math.max(blockBound, score);
+        lastDocument = docID;
+        blockSize++;
+        if (blockSize == BlockMaxList.BLOCK_SIZE)
+            endBlock();
+    }
+
+    /**
+     * Ends the current posting line, setting the score bound of its term and writing
+     * the block maxima of the line if it has more than one block.
+     * @param term the term of the line.
+     * @throws IOException if there was an error writing into the block max file.
+     */
+    void end(Term term) throws IOException {
+        if (blockSize > 0)
+            endBlock();
+
+        float termBound = 0;
+        for (int i = 0; i < blockCount; i++)
+            termBound = Math.max(termBound, blockBounds[i]);
+        term.scoreBound = termBound;
+
+        if (blockCount <= 1) {
+            term.blockPointer = -1;
+            return;
+        }
+
+        term.blockPointer = position;
+        output.writeInt(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            output.writeInt(lastDocuments[i]);
+            output.writeFloat(blockBounds[i]);
+        }
+        position += Integer.BYTES + (long) blockCount * (Integer.BYTES + Float.BYTES);
+    }
+
+    // adds the current block to the block maxima of the line.
+    private void endBlock() {
+        if (blockCount == lastDocuments.length) {
+            lastDocuments = Arrays.copyOf(lastDocuments, blockCount * 2);
+            blockBounds = Arrays.copyOf(blockBounds, blockCount * 2);
+        }
+
+        lastDocuments[blockCount] = lastDocument;
+        blockBounds[blockCount] = roundUp(blockBound);
+        blockCount++;
+
+        blockSize = 0;
+        blockBound = 0;
+    }
+
+    // the closest float that is not smaller than the given value.
+    private static float roundUp(double value) {
+        float rounded = (float) value;
+        if (rounded < value)
+            rounded = Math.nextUp(rounded);
+
+        return rounded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -1,11 +1,9 @@
 package indexer;
 
 import util.Configuration;
-import util.Logger;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -17,13 +15,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * the relevant term statistics and posting file pointer.
  *
  * <p> Dictionary file format:
- * Each line in the file represents a single entry in the Dictionary,
- * each line will look like so: [term]|[document frequency]|[posting file]\n
+ * The file is written by the merge of the inverted file, so the entries are sorted by their posting
+ * in the inverted file. Each line in the file represents a single entry in the Dictionary,
+ * each line will look like so:
+ * [term]|[term frequency]|[document frequency]|[posting pointer]|[posting length]|[score bound]|[block pointer]|[impact pointer]\n
  * <ul>
  *     <li>term - string representation of the term</li>
  *     <li>term frequency - number of times the term appears in the corpus</li>
  *     <li>document frequency - number of documents the term appears in</li>
- *     <li>posting pointer - index of the posting file this terms posting appears in</li>
+ *     <li>posting pointer - byte offset of the terms line in the inverted file</li>
+ *     <li>posting length - length in bytes of the terms line in the inverted file</li>
+ *     <li>score bound - upper bound of the document dependant part of the terms bm25 score</li>
+ *     <li>block pointer - byte offset of the terms block maxima in the block max file, -1 if there are none</li>
+ *     <li>impact pointer - byte offset of the terms segments in the impact file, -1 if there are none</li>
  * </ul>
  *
  * <p><em>{@code Dictionary} is externally immutable meaning that it is immutable outside of
@@ -270,33 +274,52 @@ public final class Dictionary {
     }
 
     /**
-     * Saves the {@code Dictionary} to the directory specified by {@link Configuration}
+     * Releases the entities that have only appeared in one document,
+     * once all the documents have been added they can never become entities.
      */
-    void save()  {
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(getPath()));
-
-            saveDictionary(this.dictionary, writer);
-            if (entityDictionary != null)
-                saveDictionary(entityDictionary, writer);
+    void releaseEntityCandidates() {
+        entities = null;
+    }
 
-            writer.close();
+    /**
+     * Removes the term from the dictionary, this is used to release the terms
+     * once they have been written into the dictionary file.
+     *
+     * @param term a term that was retrieved from this dictionary.
+     */
+    void release(Term term) {
+        dictionary.remove(term.term, term);
+        if (entityDictionary != null)
+            entityDictionary.remove(term.term, term);
+    }
 
-            // if the dictionary is saved then the entities are not needed anymore.
-            entities = null;
-        } catch (IOException e) {
-            Logger.getInstance().error(e);
-        }
+    /**
+     * Opens a writer to the dictionary file in the directory specified by {@link Configuration},
+     * entries are written into the writer using {@link #writeTerm(Writer, Term)}.
+     *
+     * @return writer to the dictionary file.
+     * @throws IOException if the dictionary file cannot be created.
+     */
+    static BufferedWriter newDictionaryWriter() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(getPath()), StandardCharsets.UTF_8));
     }
 
-    private static void saveDictionary(Map<String, Term> dictionary, BufferedWriter writer) throws IOException {
-        for (Map.Entry<String, Term> entry : dictionary.entrySet()) {
-            Term term = entry.getValue();
-            writer.append(entry.getKey()).append("|");
-            writer.append(String.valueOf(term.termFrequency)).append("|");
-            writer.append(String.valueOf(term.termDocumentFrequency)).append("|");
-            writer.append(String.valueOf(term.pointer)).append("\n");
-        }
+    /**
+     * Writes the term as a single entry of the dictionary file.
+     *
+     * @param writer writer to the dictionary file.
+     * @param term the term that will be written.
+     * @throws IOException if there was an error writing into the writer.
+     */
+    static void writeTerm(Writer writer, Term term) throws IOException {
+        writer.append(term.term).append("|");
+        writer.append(String.valueOf(term.termFrequency)).append("|");
+        writer.append(String.valueOf(term.termDocumentFrequency)).append("|");
+        writer.append(String.valueOf(term.pointer)).append("|");
+        writer.append(String.valueOf(term.length)).append("|");
+        writer.append(String.valueOf(term.scoreBound)).append("|");
+        writer.append(String.valueOf(term.blockPointer)).append("|");
+        writer.append(String.valueOf(term.impactPointer)).append("\n");
     }
 
     /**
@@ -325,21 +348,26 @@ public final class Dictionary {
      * @throws IOException if the dictionary file is corrupted or not found.
      */
     public synchronized static Dictionary loadDictionary() throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(getPath()));
+        List<String> lines = Files.readAllLines(Paths.get(getPath()), StandardCharsets.UTF_8);
 
         // concurrency level is set to 1 because the returned dictionary is should be immutable.
         Dictionary res = new Dictionary(lines.size(), LOAD_FACTOR, 1);
 
         for (String line : lines) {
             String[] contents = line.split("\\|");
-            if (contents.length != 4)
+            if (contents.length != 8)
                 throw new IOException("Dictionary file is corrupted.");
 
             String term = contents[0];
             int termFrequency = Integer.parseInt(contents[1]);
             int documentFrequency = Integer.parseInt(contents[2]);
             long pointer = Long.parseLong(contents[3]);
-            res.dictionary.put(term, new Term(term, termFrequency, documentFrequency, pointer));
+            int length = Integer.parseInt(contents[4]);
+            float scoreBound = Float.parseFloat(contents[5]);
+            long blockPointer = Long.parseLong(contents[6]);
+            long impactPointer = Long.parseLong(contents[7]);
+            res.dictionary.put(term, new Term(term, termFrequency, documentFrequency, pointer, length,
+                    scoreBound, blockPointer, impactPointer));
         }
 
         return res;
@@ -6,6 +6,9 @@ import util.Logger;
 import util.Pair;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -17,12 +20,21 @@ import java.util.concurrent.atomic.AtomicLong;
  * Maps document IDs to document data and generates said IDs.
  *
  * <p> Document Map file format:
- * Each line in the file represents a document ID -> document data mapping.
- * each line will look like so: [document ID]|[(document data)]\n
+ * The file is a binary file made of three sections, a header, four int columns
+ * and a heap of variable length data.
  * <ul>
- *     <li>document ID - id given to the document by the map</li>
- *     <li>document data - csv data about the document including document name </li>
+ *     <li>header - [document count (int)][total document length (long)]</li>
+ *     <li>columns - [length]* [max frequency]* [name offset]* [entity slot offset]*
+ *     each column holds one int for each document ordered by document ID,
+ *     the offsets are relative to the start of the heap</li>
+ *     <li>heap - holds the document names [byte count (short)][UTF-8 bytes] and the entity slots
+ *     [entity count (byte)]([byte count (short)][UTF-8 bytes][frequency (int)])*</li>
  * </ul>
+ * Since document IDs are dense the value of a document in a column is found at a fixed position
+ * in the file, so when loaded the file is read into a heap buffer and a lookup is a single index computation.
+ * The file is not memory mapped, so it is not held open and {@link #clear()} can delete it while the map is in use.
+ * The columns needed for ranking (length and max frequency) can be read directly
+ * using {@link #getLength(int)} and {@link #getMaxFrequency(int)} without creating a {@link DocumentMapping}.
  *
  * <p><em>{@code DocumentMap} is externally immutable meaning that it is immutable outside of
  * the scope of its package (indexer)</em>
@@ -32,9 +44,37 @@ public final class DocumentMap {
     private static final int MAP_SIZE = 524288;
     private static final float LOAD_FACTOR = 0.75f;
 
+    // size in bytes of the document map file header.
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    // number of int columns in the document map file.
+    private static final int COLUMN_COUNT = 4;
+
+    // index of each column in the document map file.
+    private static final int LENGTH_COLUMN = 0;
+    private static final int MAX_FREQUENCY_COLUMN = 1;
+    private static final int NAME_COLUMN = 2;
+    private static final int ENTITY_COLUMN = 3;
+
+    // the byte count of a string in the heap is an unsigned short.
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    // documents added while in ADD mode.
     private ConcurrentHashMap<Integer, DocumentMapping> documents;
     private volatile AtomicInteger runningID;
     private volatile AtomicLong totalDocLength;
+    private DominantEntities dominantEntities;
+
+    // the loaded document map file and views of its columns, only present in LOOKUP mode.
+    private ByteBuffer loadedFile;
+    private IntBuffer lengths;
+    private IntBuffer maxFrequencies;
+    private IntBuffer nameOffsets;
+    private IntBuffer entityOffsets;
+    private int documentCount;
+    private int heapStart;
+
+    // cache of bm25 length normalization columns mapped by their <k, b> parameters.
+    private ConcurrentHashMap<Pair<Double, Double>, double[]> lengthNormalizations;
 
 
     /**
@@ -57,6 +97,7 @@ public final class DocumentMap {
     // external loadDocumentMap function.
     private DocumentMap(final int mapSize, final float loadFactor) {
         this.documents = new ConcurrentHashMap<>(mapSize, loadFactor, Runtime.getRuntime().availableProcessors());
+        this.lengthNormalizations = new ConcurrentHashMap<>();
     }
 
     /**
@@ -81,35 +122,110 @@ public final class DocumentMap {
      * @return the document name associated with the given docID.
      */
     public Optional<DocumentMapping> lookup(int docID) {
-        return Optional.ofNullable(documents.get(docID));
+        if (loadedFile == null)
+            return Optional.ofNullable(documents.get(docID));
+
+        if (docID < 0 || docID >= documentCount)
+            return Optional.empty();
+
+        return Optional.of(readMapping(docID));
+    }
+
+    /**
+     * Gets the length of the given document without creating a {@link DocumentMapping}.
+     *
+     * @param docID a docID generated by this map
+     * @return the number of terms in the document (not unique).
+     */
+    public int getLength(int docID) {
+        if (lengths != null)
+            return lengths.get(docID);
+
+        return documents.get(docID).length;
+    }
+
+    /**
+     * Gets the max frequency of the given document without creating a {@link DocumentMapping}.
+     *
+     * @param docID a docID generated by this map
+     * @return the frequency of the most frequent term in the document.
+     */
+    public int getMaxFrequency(int docID) {
+        if (maxFrequencies != null)
+            return maxFrequencies.get(docID);
+
+        return documents.get(docID).maxFrequency;
+    }
+
+    /**
+     * Gets a column holding the bm25 length normalization factor of each document,
+     * that is {@code k * (1 - b + b * (length / averageLength))}.
+     * The column is computed once for each pair of parameters and then shared.
+     *
+     * @param k the bm25 k parameter.
+     * @param b the bm25 b parameter.
+     * @return array indexed by docID holding the length normalization of each document.
+     */
+    public double[] getLengthNormalization(double k, double b) {
+        return lengthNormalizations.computeIfAbsent(new Pair<>(k, b), params -> {
+            double avgDocLength = getAverageLength();
+            double[] normalization = new double[size()];
+            for (int docID = 0; docID < normalization.length; docID++)
+                normalization[docID] = k * (1 - b + (b * (getLength(docID) / avgDocLength)));
+
+            return normalization;
+        });
     }
 
     public double getAverageLength() {
-        return this.totalDocLength.get() / ((double) this.documents.size());
+        return this.totalDocLength.get() / ((double) size());
     }
 
     public int size() {
+        if (loadedFile != null)
+            return documentCount;
+
         return this.documents.size();
     }
 
+    // reads the mapping of the given document from the columns of the loaded file.
+    private DocumentMapping readMapping(int docID) {
+        DocumentMapping mapping = new DocumentMapping(
+                readString(heapStart + nameOffsets.get(docID)),
+                maxFrequencies.get(docID),
+                lengths.get(docID));
+
+        int entitySlot = heapStart + entityOffsets.get(docID);
+        int entityCount = loadedFile.get(entitySlot) & 0xFF;
+        int position = entitySlot + 1;
+        for (int i = 0; i < entityCount; i++) {
+            String entity = readString(position);
+            position += Short.BYTES + (loadedFile.getShort(position) & 0xFFFF);
+            mapping.dominantEntities.add(new Pair<>(entity, loadedFile.getInt(position)));
+            position += Integer.BYTES;
+        }
+
+        return mapping;
+    }
+
+    // reads a [byte count][UTF-8 bytes] string starting at the given position of the loaded file.
+    private String readString(int position) {
+        byte[] bytes = new byte[loadedFile.getShort(position) & 0xFFFF];
+        // the loaded buffer is shared between threads, so we only read it through a private view.
+        ByteBuffer view = loadedFile.duplicate();
+        view.position(position + Short.BYTES);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     /**
-     * Parses the term posting string and updates all the
-     * documents that the entity appears in.
-     * If the entities frequency is high enough in some document
-     * it will entered into the list of most dominant entries in the document.
+     * Sets the dominant entities of the documents, the entities are
+     * computed while the inverted file is merged and written when the map is saved.
      *
-     * @param termPostingStr string representation of the term posting.
+     * @param dominantEntities the dominant entities of all the documents in the map.
      */
-    void updateEntity(String termPostingStr, Runnable onComplete) {
-        String[] postingContent = termPostingStr.split("[|,]");
-        String entity = postingContent[0];
-        int index = 1;
-        while (index < postingContent.length) {
-            int docID = Integer.parseInt(postingContent[index++]);
-            int frequency = Integer.parseInt(postingContent[index++]);
-            documents.get(docID).updateEntity(entity, frequency);
-        }
-        onComplete.run();
+    void setDominantEntities(DominantEntities dominantEntities) {
+        this.dominantEntities = dominantEntities;
     }
 
     /**
@@ -117,13 +233,36 @@ public final class DocumentMap {
      */
     void save() {
         try {
-            BufferedWriter fileWriter = new BufferedWriter(new FileWriter(getPath()));
-            fileWriter.append(String.valueOf(totalDocLength)).append("\n");
-
-            for (Map.Entry<Integer, DocumentMapping> entry : documents.entrySet())
-                fileWriter.append(String.valueOf(entry.getKey())).append("|")
-                        .append(entry.getValue().toString()).append("\n");
+            int count = runningID.get();
+            // the heap is built before writing the columns since the columns need the heap offsets,
+            // and before opening the file so a string that cannot be written leaves no partial file.
+            ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+            DataOutputStream heap = new DataOutputStream(heapBytes);
+            int[] nameOffsets = new int[count];
+            int[] entityOffsets = new int[count];
+            for (int docID = 0; docID < count; docID++) {
+                DocumentMapping mapping = documents.get(docID);
+                nameOffsets[docID] = heap.size();
+                writeString(heap, mapping.name.trim());
+                entityOffsets[docID] = heap.size();
+                writeEntities(heap, docID);
+            }
 
+            DataOutputStream fileWriter = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(getPath())));
+            fileWriter.writeInt(count);
+            fileWriter.writeLong(totalDocLength.get());
+
+            for (int docID = 0; docID < count; docID++)
+                fileWriter.writeInt(documents.get(docID).length);
+            for (int docID = 0; docID < count; docID++)
+                fileWriter.writeInt(documents.get(docID).maxFrequency);
+            for (int offset : nameOffsets)
+                fileWriter.writeInt(offset);
+            for (int offset : entityOffsets)
+                fileWriter.writeInt(offset);
+
+            heapBytes.writeTo(fileWriter);
             fileWriter.close();
         }
         catch (IOException e) {
@@ -131,6 +270,30 @@ public final class DocumentMap {
         }
     }
 
+    // writes the string as [byte count][UTF-8 bytes], a string longer than MAX_STRING_BYTES cannot be written.
+    private static void writeString(DataOutputStream writer, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES)
+            throw new IOException("Document Map string is too long (" + bytes.length + " bytes)");
+        writer.writeShort(bytes.length);
+        writer.write(bytes);
+    }
+
+    // writes the entity slot of the given document.
+    private void writeEntities(DataOutputStream writer, int docID) throws IOException {
+        if (dominantEntities == null) {
+            writer.writeByte(0);
+            return;
+        }
+
+        List<Pair<String, Integer>> entities = dominantEntities.get(docID);
+        writer.writeByte(entities.size());
+        for (Pair<String, Integer> entity : entities) {
+            writeString(writer, entity.first);
+            writer.writeInt(entity.second);
+        }
+    }
+
     /**
      * Removes all of the document mappings from the map, and
      * deletes the document map file.
@@ -139,6 +302,13 @@ public final class DocumentMap {
      */
     public void clear() throws IOException {
         documents.clear();
+        lengthNormalizations.clear();
+        loadedFile = null;
+        lengths = null;
+        maxFrequencies = null;
+        nameOffsets = null;
+        entityOffsets = null;
+        documentCount = 0;
         Files.deleteIfExists(Paths.get(getPath()));
     }
 
@@ -150,22 +320,35 @@ public final class DocumentMap {
      * @throws IOException if the document map file is corrupted or not found.
      */
     public static DocumentMap loadDocumentMap() throws IOException {
-        List<String> lines = Files.readAllLines(Paths.get(getPath()));
-        BufferedReader fileReader = new BufferedReader(new FileReader(getPath()));
-        DocumentMap res = new DocumentMap(lines.size(), LOAD_FACTOR);
+        DocumentMap res = new DocumentMap(1, LOAD_FACTOR);
 
-        res.totalDocLength = new AtomicLong(Long.parseLong(fileReader.readLine()));
+        res.loadedFile = ByteBuffer.wrap(Files.readAllBytes(Paths.get(getPath())));
 
-        String line;
-        while ((line = fileReader.readLine()) != null) {
-            int startOfMapping = line.indexOf("|");
-            int docID = Integer.parseInt(line.substring(0, startOfMapping));
-            res.documents.put(docID, new DocumentMapping(line.substring(startOfMapping + 1)));
-        }
+        if (res.loadedFile.capacity() < HEADER_SIZE)
+            throw new IOException("Document Map file is corrupted");
+
+        res.documentCount = res.loadedFile.getInt(0);
+        res.totalDocLength = new AtomicLong(res.loadedFile.getLong(Integer.BYTES));
+        res.heapStart = HEADER_SIZE + res.documentCount * COLUMN_COUNT * Integer.BYTES;
+        if (res.documentCount < 0 || res.heapStart > res.loadedFile.capacity())
+            throw new IOException("Document Map file is corrupted");
+
+        res.lengths = res.column(LENGTH_COLUMN);
+        res.maxFrequencies = res.column(MAX_FREQUENCY_COLUMN);
+        res.nameOffsets = res.column(NAME_COLUMN);
+        res.entityOffsets = res.column(ENTITY_COLUMN);
 
         return res;
     }
 
+    // creates an int view of the column with the given index in the loaded file.
+    private IntBuffer column(int columnIndex) {
+        ByteBuffer view = loadedFile.duplicate();
+        view.position(HEADER_SIZE + columnIndex * documentCount * Integer.BYTES);
+        view.limit(view.position() + documentCount * Integer.BYTES);
+        return view.slice().asIntBuffer();
+    }
+
     // returns the path to the dictionary file as specified by Configuration
     private static String getPath() {
         return Configuration.getInstance().getDocumentMapPath();
@@ -177,69 +360,29 @@ public final class DocumentMap {
      *     <li>name - the name of the document (DOCNO)</li>
      *     <li>maxFrequency - frequency of the term or entity that is most frequent in the document</li>
      *     <li>length - number of terms or entities that appear the document (not unique)</li>
-     *     <li>dominant entities - list of up to {@code DOMINANT_ENTITIES_COUNT} pairs of entities and their
+     *     <li>dominant entities - list of up to {@code DominantEntities.DOMINANT_ENTITIES_COUNT} pairs of entities and their
      *     frequency in the document, the list represents the most common entities in the document.</li>
      * </ul>
      */
     public static class DocumentMapping {
 
-        private static final int DOMINANT_ENTITIES_COUNT = 5;
-
         public String name;
         public int maxFrequency;
         public int length;
         public List<Pair<String, Integer>> dominantEntities;
-        private Pair<String, Integer> minEntity;
 
         DocumentMapping(Document document) {
             this.name = document.name;
             this.maxFrequency = document.maxFrequency;
             this.length = document.length;
-            this.dominantEntities = new ArrayList<>(5);
-            minEntity = new Pair<>("", Integer.MAX_VALUE);
+            this.dominantEntities = new ArrayList<>(0);
         }
 
-        DocumentMapping(String strMapping) {
-            String[] contents = strMapping.split(",");
-            if (contents.length < 3 || contents.length > 3 + (DOMINANT_ENTITIES_COUNT * 2))
-                throw new IllegalStateException("Document Map file is corrupted");
-
-            this.name = contents[0].trim();
-            this.maxFrequency = Integer.parseInt(contents[1]);
-            this.length = Integer.parseInt(contents[2]);
-            dominantEntities = new ArrayList<>(DOMINANT_ENTITIES_COUNT);
-            if (contents.length > 3){
-                int i = 3;
-                while (i < contents.length) {
-                    String entity = contents[i++];
-                    int frequency = Integer.parseInt(contents[i++]);
-                    dominantEntities.add(new Pair<>(entity, frequency));
-                }
-            }
-        }
-
-        //updates the dominantEntities list with a new entity and its frequency.
-        synchronized void updateEntity(String entity, int frequency) {
-            Pair<String, Integer> newEntry = new Pair<>(entity, frequency);
-            // if the entity list is still not full
-            // add the new entity to the list and update the min entity.
-            if (dominantEntities.size() < DOMINANT_ENTITIES_COUNT) {
-                dominantEntities.add(newEntry);
-                if (frequency < minEntity.second)
-                    minEntity = newEntry;
-            }
-            else {
-                // otherwise remove the min entity, add the new entity
-                // and find the new min entity.
-                if (frequency < minEntity.second) return;
-                dominantEntities.remove(minEntity);
-                dominantEntities.add(newEntry);
-                minEntity = new Pair<>("", Integer.MAX_VALUE);
-                for (Pair<String, Integer> dominantEntity : dominantEntities) {
-                    if (dominantEntity.second < minEntity.second)
-                        minEntity = dominantEntity;
-                }
-            }
+        DocumentMapping(String name, int maxFrequency, int length) {
+            this.name = name;
+            this.maxFrequency = maxFrequency;
+            this.length = length;
+            this.dominantEntities = new ArrayList<>(DominantEntities.DOMINANT_ENTITIES_COUNT);
         }
 
         @Override
@@ -247,10 +390,8 @@ public final class DocumentMap {
             StringBuilder res = new StringBuilder(name).append(",");
             res.append(maxFrequency).append(",");
             res.append(length);
-            synchronized (this) {
-                for (Pair<String, Integer> entity: dominantEntities)
-                    res.append(",").append(entity.first).append(",").append(entity.second);
-            }
+            for (Pair<String, Integer> entity: dominantEntities)
+                res.append(",").append(entity.first).append(",").append(entity.second);
             return res.toString();
         }
     }
@@ -0,0 +1,114 @@
+package indexer;
+
+import util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the most dominant entities of every document while the inverted file is merged.
+ *
+ * <p> Each document has a bounded min-heap of up to {@code DOMINANT_ENTITIES_COUNT}
+ * entities stored in primitive arrays indexed by docID, the heap root holds the
+ * least frequent of the documents dominant entities so a new entity only needs to be
+ * compared with the root.
+ *
+ * <p><em>{@code DominantEntities} is not thread safe, it is meant to be updated only by
+ * the thread running the merge, which visits each entity posting exactly once.</em>
+ */
+final class DominantEntities {
+
+    static final int DOMINANT_ENTITIES_COUNT = 5;
+
+    // maps entity ids to the entity strings.
+    private final ArrayList<String> entities;
+
+    // the heaps of all the documents, the heap of document d is at [d * COUNT, (d + 1) * COUNT).
+    private final int[] heapEntities;
+    private final int[] heapFrequencies;
+    private final byte[] heapSizes;
+
+    /**
+     * Creates empty heaps for the given amount of documents.
+     * @param documentCount number of documents in the document map.
+     */
+    DominantEntities(int documentCount) {
+        this.entities = new ArrayList<>();
+        this.heapEntities = new int[documentCount * DOMINANT_ENTITIES_COUNT];
+        this.heapFrequencies = new int[documentCount * DOMINANT_ENTITIES_COUNT];
+        this.heapSizes = new byte[documentCount];
+    }
+
+    /**
+     * Registers an entity so that it can be offered to the documents it appears in.
+     * @param entity the entity string.
+     * @return the id of the entity.
+     */
+    int addEntity(String entity) {
+        entities.add(entity);
+        return entities.size() - 1;
+    }
+
+    /**
+     * Offers the entity to the document, if the entities frequency is high enough
+     * it will be entered into the documents most dominant entities.
+     * @param docID the document the entity appears in.
+     * @param entityID id given by {@link #addEntity(String)}.
+     * @param frequency the frequency of the entity in the document.
+     */
+    void offer(int docID, int entityID, int frequency) {
+        int base = docID * DOMINANT_ENTITIES_COUNT;
+        int size = heapSizes[docID];
+
+        // if the heap is still not full add the entity as a leaf and sift it up.
+        if (size < DOMINANT_ENTITIES_COUNT) {
+            int index = size;
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heapFrequencies[base + parent] <= frequency)
+                    break;
+                heapEntities[base + index] = heapEntities[base + parent];
+                heapFrequencies[base + index] = heapFrequencies[base + parent];
+                index = parent;
+            }
+            heapEntities[base + index] = entityID;
+            heapFrequencies[base + index] = frequency;
+            heapSizes[docID]++;
+            return;
+        }
+
+        // otherwise replace the least frequent entity and sift the new entity down.
+        if (frequency < heapFrequencies[base])
+            return;
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= DOMINANT_ENTITIES_COUNT)
+                break;
+            if (child + 1 < DOMINANT_ENTITIES_COUNT
+                    && heapFrequencies[base + child + 1] < heapFrequencies[base + child])
+                child++;
+            if (frequency <= heapFrequencies[base + child])
+                break;
+            heapEntities[base + index] = heapEntities[base + child];
+            heapFrequencies[base + index] = heapFrequencies[base + child];
+            index = child;
+        }
+        heapEntities[base + index] = entityID;
+        heapFrequencies[base + index] = frequency;
+    }
+
+    /**
+     * @param docID a document id.
+     * @return list of the most dominant entities in the document and their frequencies.
+     */
+    List<Pair<String, Integer>> get(int docID) {
+        int base = docID * DOMINANT_ENTITIES_COUNT;
+        List<Pair<String, Integer>> res = new ArrayList<>(heapSizes[docID]);
+        for (int i = 0; i < heapSizes[docID]; i++)
+            res.add(new Pair<>(entities.get(heapEntities[base + i]), heapFrequencies[base + i]));
+
+        return res;
+    }
+}
@@ -0,0 +1,120 @@
+package indexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The postings of a term in the impact ordered layout of the index, the postings are
+ * split into segments of documents that share the same quantized impact, and the segments
+ * are ordered from the highest impact to the lowest.
+ *
+ * <p> The impact of a posting is the document dependant part of its bm25 score
+ * {@code (k + 1) * tf / (tf + k * (1 - b + b * (length / avgLength)))} computed with the bm25
+ * parameters of the index, since it is always lower than {@code k + 1} it is quantized linearly
+ * into {@link #LEVELS} levels of {@code (k + 1) / LEVELS}.
+ *
+ * <p> Impact file format:
+ * The segments of every term are written one after the other, the segments of a term are
+ * [segment count (int)][posting count (int)]([impact (int)][segment size (int)])*([docID (int)])*
+ * where the docIDs of each segment are sorted, and the term's {@link Term#impactPointer}
+ * points to the start of its segments.
+ */
+public final class ImpactList {
+
+    /**
+     * the number of levels the impacts are quantized into.
+     */
+    public static final int LEVELS = 255;
+
+    private final int[] impacts;
+    // segmentStarts[i] is the index in documents of the first document of segment i.
+    private final int[] segmentStarts;
+    private final int[] documents;
+
+    private ImpactList(int[] impacts, int[] segmentStarts, int[] documents) {
+        this.impacts = impacts;
+        this.segmentStarts = segmentStarts;
+        this.documents = documents;
+    }
+
+    /**
+     * @return the number of segments.
+     */
+    public int segmentCount() {
+        return impacts.length;
+    }
+
+    /**
+     * @param segment index of a segment, between 0 and {@link #segmentCount()}.
+     * @return the quantized impact of the documents in the segment, between 1 and {@link #LEVELS}.
+     */
+    public int impactAt(int segment) {
+        return impacts[segment];
+    }
+
+    /**
+     * @param segment index of a segment, between 0 and {@link #segmentCount()}.
+     * @return index of the first document of the segment.
+     */
+    public int segmentStart(int segment) {
+        return segmentStarts[segment];
+    }
+
+    /**
+     * @param segment index of a segment, between 0 and {@link #segmentCount()}.
+     * @return index after the last document of the segment.
+     */
+    public int segmentEnd(int segment) {
+        return segment + 1 < segmentStarts.length ? segmentStarts[segment + 1] : documents.length;
+    }
+
+    /**
+     * @param index index between 0 and the number of postings.
+     * @return docID of the posting at the given index.
+     */
+    public int documentAt(int index) {
+        return documents[index];
+    }
+
+    /**
+     * @param score the document dependant part of the bm25 score of a posting.
+     * @param k the bm25 k parameter of the index.
+     * @return the quantized impact of the posting, between 1 and {@link #LEVELS}.
+     */
+    public static int quantize(double score, double k) {
+        int impact = (int) Math.round(score * LEVELS / (k + 1));
+        return Math.max(1, Math.min(LEVELS, impact));
+    }
+
+    /**
+     * @param impact a quantized impact.
+     * @param k the bm25 k parameter of the index.
+     * @return the document dependant part of the bm25 score the impact stands for.
+     */
+    public static double scoreOf(int impact, double k) {
+        return impact * (k + 1) / LEVELS;
+    }
+
+    /**
+     * Decodes the segments of a term.
+     * @param segments buffer holding the ([impact][segment size])*([docID])* part of the term's segments.
+     * @param segmentCount the number of segments.
+     * @param postingCount the number of postings.
+     * @return the decoded segments.
+     */
+    public static ImpactList decode(ByteBuffer segments, int segmentCount, int postingCount) {
+        int[] impacts = new int[segmentCount];
+        int[] segmentStarts = new int[segmentCount];
+        int start = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            impacts[i] = segments.getInt();
+            segmentStarts[i] = start;
+            start += segments.getInt();
+        }
+
+        int[] documents = new int[postingCount];
+        for (int i = 0; i < postingCount; i++)
+            documents[i] = segments.getInt();
+
+        return new ImpactList(impacts, segmentStarts, documents);
+    }
+}
@@ -0,0 +1,123 @@
+package indexer;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Writes the impact ordered layout of the posting lines written into the inverted file
+ * into the impact file (see {@link ImpactList}).
+ *
+ * <p> The writer receives the decoded postings of a line as a {@link PostingDecoder.Consumer}
+ * and quantizes the impact of every posting, when the line ends its postings are
+ * grouped by impact (the postings arrive sorted by docID so each group stays sorted)
+ * and written from the highest impact to the lowest.
+ */
+class ImpactWriter implements PostingDecoder.Consumer, Closeable {
+
+    private static final int INITIAL_LINE_SIZE = 64;
+
+    private final DataOutputStream output;
+    // number of bytes written into the impact file.
+    private long position;
+
+    private final double k;
+    private final double[] lengthNormalization;
+
+    // the postings of the current line.
+    private int[] documents;
+    private int[] impacts;
+    private int size;
+    // the documents of the current line ordered by impact.
+    private int[] ordered;
+
+    // number of postings of the current line in each impact.
+    private final int[] impactCounts;
+
+    /**
+     * Creates the impact file at the given path.
+     * @param path path of the impact file.
+     * @param k the bm25 k parameter of the index.
+     * @param lengthNormalization column of {@code k * (1 - b + b * (length / avgLength))} for each document.
+     * @throws IOException if the file cannot be created.
+     */
+    ImpactWriter(String path, double k, double[] lengthNormalization) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        this.position = 0;
+        this.k = k;
+        this.lengthNormalization = lengthNormalization;
+        this.documents = new int[INITIAL_LINE_SIZE];
+        this.impacts = new int[INITIAL_LINE_SIZE];
+        this.ordered = new int[INITIAL_LINE_SIZE];
+        this.impactCounts = new int[ImpactList.LEVELS + 1];
+        begin();
+    }
+
+    /**
+     * Prepares the writer for a new posting line.
+     */
+    void begin() {
+        size = 0;
+        Arrays.fill(impactCounts, 0);
+    }
+
+    @Override
+    public void accept(int docID, int frequency) {
+        if (size == documents.length) {
+            documents = Arrays.copyOf(documents, size * 2);
+            impacts = Arrays.copyOf(impacts, size * 2);
+        }
+
+        double score = ((k + 1) * frequency) / (frequency + lengthNormalization[docID]);
+        int impact = ImpactList.quantize(score, k);
+        documents[size] = docID;
+        impacts[size] = impact;
+        impactCounts[impact]++;
+        size++;
+    }
+
+    /**
+     * Ends the current posting line, writing its segments and setting the impact pointer of its term.
+     * @param term the term of the line.
+     * @throws IOException if there was an error writing into the impact file.
+     */
+    void end(Term term) throws IOException {
+        int segmentCount = 0;
+        for (int impact = ImpactList.LEVELS; impact > 0; impact--) {
+            if (impactCounts[impact] > 0)
+                segmentCount++;
+        }
+
+        term.impactPointer = position;
+        output.writeInt(segmentCount);
+        output.writeInt(size);
+        for (int impact = ImpactList.LEVELS; impact > 0; impact--) {
+            if (impactCounts[impact] == 0)
+                continue;
+
+            output.writeInt(impact);
+            output.writeInt(impactCounts[impact]);
+        }
+
+        // counting sort of the documents by descending impact, turning the counts into segment offsets.
+        if (ordered.length < size)
+            ordered = new int[documents.length];
+        int offset = 0;
+        for (int impact = ImpactList.LEVELS; impact > 0; impact--) {
+            int count = impactCounts[impact];
+            impactCounts[impact] = offset;
+            offset += count;
+        }
+        for (int i = 0; i < size; i++)
+            ordered[impactCounts[impacts[i]]++] = documents[i];
+
+        for (int i = 0; i < size; i++)
+            output.writeInt(ordered[i]);
+
+        position += 2 * Integer.BYTES + (long) segmentCount * 2 * Integer.BYTES + (long) size * Integer.BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -25,7 +25,8 @@ import java.util.concurrent.CountDownLatch;
  *     </li>
  *     <li>
  *         after all the documents have been inverted they are all merged into a single
- *         inverted file where each line is a term -> documents mapping
+ *         inverted file where each line is a term -> documents mapping, the dictionary
+ *         file is written by the merge alongside the inverted file.
  *     </li>
  *
  *     <p>during this process a {@link Dictionary} and {@link DocumentMap} are created
@@ -76,24 +77,23 @@ public class Indexer implements Parser.Consumer {
         CPUTasks.closeGroup();
         IOTasks.closeGroup();
         CPUTasks.awaitCompletion();
-        IOTasks.awaitCompletion();
 
+        // once all the documents are inverted the dictionary is complete,
+        // the semantic analysis runs while the last postings are written.
         Thread semanticAnalyzer = new Thread(new SemanticAnalyzer(dictionary));
         semanticAnalyzer.start();
+        IOTasks.awaitCompletion();
 
-        // merge all the posting files.
-        PostingCache.merge(dictionary, documentMap);
-        PostingCache.clean();
-
-        // wait for the analyzer to finish.
+        // wait for the analyzer to finish, the merge releases the dictionary as it goes.
         try { semanticAnalyzer.join(); }
         catch (InterruptedException e) {
             Logger.getInstance().warn(e);
         }
 
-        // save all the dictionary.
-        this.termCount = dictionary.size();
-        dictionary.save();
+        // merge all the posting files, this also writes the dictionary file.
+        this.termCount = PostingCache.merge(dictionary, documentMap);
+        PostingCache.clean();
+
         documentMap.save();
 
         // release all memory held by the indexer.
@@ -131,10 +131,24 @@ public class Indexer implements Parser.Consumer {
 
     /**
      * Queues an invert task for the given list of documents.
+     * <p> The documents are given their ids together with the posting file they will
+     * be written to, so every posting file holds a range of ids that is higher than the
+     * ids held by the posting files created before it, this way merging the posting files
+     * in their creation order produces postings that are sorted by docID.
      * @param documents a list of documents to invert.
      */
     void queueInvert(LinkedList<Document> documents) {
-        this.CPUTasks.add(() -> invert(documents));
+        Optional<PostingFile> optional = PostingCache.newPostingFile();
+        if (!optional.isPresent())
+            throw new IllegalStateException("failed to create posting file");
+
+        PostingFile newPosting = optional.get();
+        int[] docIDs = new int[documents.size()];
+        int i = 0;
+        for (Document doc : documents)
+            docIDs[i++] = documentMap.addDocument(doc);
+
+        this.CPUTasks.add(() -> invert(newPosting, documents, docIDs));
     }
 
     /*
@@ -142,16 +156,10 @@ public class Indexer implements Parser.Consumer {
     and then queues a task to write the resulting map into
     a posting file.
      */
-    private void invert(LinkedList<Document> documents) {
-        PostingFile newPosting;
-        Optional<PostingFile> optional = PostingCache.newPostingFile();
-        if (!optional.isPresent())
-            throw new IllegalStateException("failed to create posting file");
-
-        newPosting = optional.get();
-
+    private void invert(PostingFile newPosting, LinkedList<Document> documents, int[] docIDs) {
+        int i = 0;
         for (Document doc : documents) {
-            int docID = documentMap.addDocument(doc);
+            int docID = docIDs[i++];
 
             invertNumbers(docID, newPosting, doc);
             invertWords(docID, newPosting, doc);
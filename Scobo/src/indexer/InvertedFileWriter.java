@@ -0,0 +1,115 @@
+package indexer;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the inverted file one posting line at a time, the line is received in chunks
+ * and written through a bounded buffer so the size of a line never affects the memory used.
+ *
+ * <p> While writing the writer keeps track of the position in the file, so the
+ * pointer and length of each line are known as soon as the line is written.
+ * A {@link PostingDecoder} may be attached to a line in order to decode the
+ * postings as they pass through the writer.
+ */
+class InvertedFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536; // 2^16
+
+    private final OutputStream output;
+    private final byte[] buffer;
+    private int bufferSize;
+
+    // number of bytes written to the file (including buffered bytes).
+    private long position;
+    // position of the start of the current line.
+    private long lineStart;
+
+    private PostingDecoder decoder;
+
+    /**
+     * Creates the inverted file at the given path.
+     * @param path path of the inverted file.
+     * @throws IOException if the file cannot be created.
+     */
+    InvertedFileWriter(String path) throws IOException {
+        this.output = new FileOutputStream(path);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bufferSize = 0;
+        this.position = 0;
+    }
+
+    /**
+     * Starts a new posting line by writing its term.
+     * @param term the term of the line.
+     * @param decoder decoder that will receive the postings of the line, may be null.
+     * @return pointer to the start of the line in the inverted file.
+     * @throws IOException if there was an error writing into the file.
+     */
+    long beginPosting(String term, PostingDecoder decoder) throws IOException {
+        lineStart = position;
+        byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+        this.decoder = null;
+        write(termBytes, 0, termBytes.length);
+        this.decoder = decoder;
+        if (decoder != null)
+            decoder.reset();
+
+        return lineStart;
+    }
+
+    /**
+     * Writes a chunk of the current posting line.
+     * @param bytes array holding the chunk.
+     * @param offset start of the chunk in the array.
+     * @param length length of the chunk.
+     * @throws IOException if there was an error writing into the file.
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        if (decoder != null)
+            decoder.decode(bytes, offset, length);
+
+        position += length;
+        if (length >= buffer.length) {
+            flushBuffer();
+            output.write(bytes, offset, length);
+            return;
+        }
+
+        if (bufferSize + length > buffer.length)
+            flushBuffer();
+
+        System.arraycopy(bytes, offset, buffer, bufferSize, length);
+        bufferSize += length;
+    }
+
+    /**
+     * Ends the current posting line.
+     * @return the length in bytes of the line (not including the line break).
+     * @throws IOException if there was an error writing into the file.
+     */
+    int endPosting() throws IOException {
+        if (decoder != null)
+            decoder.finish();
+
+        decoder = null;
+        int length = (int) (position - lineStart);
+        write(new byte[]{'\n'}, 0, 1);
+        return length;
+    }
+
+    // writes the buffered bytes into the file.
+    private void flushBuffer() throws IOException {
+        output.write(buffer, 0, bufferSize);
+        bufferSize = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        output.close();
+    }
+}
@@ -2,10 +2,9 @@ package indexer;
 
 import util.Configuration;
 import util.Logger;
-import util.TaskGroup;
-import util.TaskManager;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -73,7 +72,8 @@ public final class PostingCache {
     private static void flushPosting(int postingFileId, TermPosting[] postings) {
         try {
             String path = getPostingFilePath(postingFileId);
-            BufferedWriter writer = new BufferedWriter(new FileWriter(path));
+            BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
 
             for (TermPosting termPosting : postings)
                 writer.append(termPosting.toString());
@@ -90,109 +90,163 @@ public final class PostingCache {
 
     /**
      * Merges all the posting files into an inverted file.
+     * The posting lines are streamed from the posting files into the inverted file
+     * in bounded chunks, so the memory used does not depend on the length of a posting line.
+     * <p> The dictionary file is written alongside the inverted file, as soon as a terms
+     * line is written its dictionary entry is written and the term is released from the dictionary,
+     * so the dictionary shrinks while the merge progresses.
+     * <p> The postings of every line are decoded as they are written in order to compute
+     * the score bound of the term and the block maxima of the line, which are written into the block max file.
+     * If the impact ordered layout is enabled by the {@link Configuration} the segments of every line
+     * are written into the impact file as well.
      * @param dictionary the dictionary that will map into the newly created
-     *                   inverted file.
+     *                   inverted file, it is emptied by the merge.
+     * @param documentMap the document map that will hold the dominant entities of the documents.
+     * @return the number of terms written into the dictionary file.
      */
-    static void merge(Dictionary dictionary, DocumentMap documentMap) {
-        try {
-            int postingFileCount = runningID.get();
-            BufferedWriter invertedFileWriter = new BufferedWriter(new FileWriter(getInvertedFilePath()));
-            BufferedReader[] postingReaders = new BufferedReader[postingFileCount];
-            boolean isFirstRead = true;
-
-            //line number of the inverted file.
-            long linePointer = 0;
-            // number of readers who have finished reading their files.
-            int countNull = 0;
-
-            //the latest line each reader read.
-            ArrayList<String> lines = new ArrayList<>();
-            // the alphabetically minimal lines of the above lines.
-            LinkedList<Integer> minLines = new LinkedList<>();
-
-            // create task group to execute the entity updates in parallel.
-            TaskGroup entityUpdate = TaskManager.getTaskGroup(TaskManager.TaskType.COMPUTE);
-            entityUpdate.openGroup();
-
-            // while there are readers who haven't finished reading their file.
-            while (countNull < postingFileCount) {
-                //the minimal term of terms this iteration.
-                String minTerm = null;
-                //reset number of null readers.
-                countNull = 0;
-
-                //for each reader
-                for (int i = 0; i < postingFileCount; i++) {
-                    if (isFirstRead) { // initialize the reader if this is the first read.
-                        postingReaders[i] = new BufferedReader(new FileReader(getPostingFilePath(i)));
-                        lines.add(i, postingReaders[i].readLine());
-                    }
-                    String line = lines.get(i);
-
-                    if (line != null) { // if the reader could read a new line.
-                        String term = line.substring(0, line.indexOf("|"));
-                        if (minTerm == null) { // the min term hasn't been updated this iteration yet.
-                            minTerm = term;
-                            minLines.addLast(i);
-                        } else if (term.compareTo(minTerm) < 0) { // we found a new min term.
-                            minTerm = term;
-                            minLines.clear();
-                            minLines.addLast(i);
-                        } else if (term.compareTo(minTerm) == 0) // we found a new term equal to the min.
-                            minLines.addLast(i);
-                    }
-                    else countNull++; // the reader couldn't read another line, meaning it finished reading it's file.
-                }
-
-                // if non of the readers read a new line we are finished.
-                if (countNull >= postingFileCount)
-                    break;
-
-                isFirstRead = false;
-
-                // merge all the min lines from the files into one line and read the next line.
-                int firstMinLine = minLines.removeFirst();
-                StringBuilder termPostingStr = new StringBuilder(lines.get(firstMinLine));
-                for (int line : minLines) {
-                    String lineStr = lines.get(line); // line of the format t(|d,f)+
-                    termPostingStr.append(lineStr.substring(lineStr.indexOf("|"))); // get only the (|d,f)+ part
-                    lines.set(line, postingReaders[line].readLine()); // read the next line
-                }
-                lines.set(firstMinLine, postingReaders[firstMinLine].readLine());
-
-                // get term for minTerm from dictionary.
-                Optional<Term> optionalTerm = dictionary.lookupTerm(minTerm);
-                if (!optionalTerm.isPresent())
-                    throw new IllegalStateException("term does not exist in dictionary");
-
-                // update pointer.
-                optionalTerm.get().pointer = linePointer;
-                if(dictionary.isEntity(minTerm)) {
-                    // if the term we added is an entity update the document map.
-                    String postingString = termPostingStr.toString();
-                    entityUpdate.add(() -> documentMap.updateEntity(postingString, entityUpdate::complete));
-                }
-
-                termPostingStr.append("\n"); // append line ending.
-                invertedFileWriter.append(termPostingStr); // write the merged line.
-
-                minLines.clear();
-                linePointer += termPostingStr.length();
+    static int merge(Dictionary dictionary, DocumentMap documentMap) {
+        int postingFileCount = runningID.get();
+        int termCount = 0;
+        PostingRunReader[] postingReaders = new PostingRunReader[postingFileCount];
+        dictionary.releaseEntityCandidates();
+        Configuration config = Configuration.getInstance();
+        double[] lengthNormalization = documentMap.getLengthNormalization(config.getBM25K(), config.getBM25B());
+        try (InvertedFileWriter invertedFileWriter = new InvertedFileWriter(getInvertedFilePath());
+             BufferedWriter dictionaryWriter = Dictionary.newDictionaryWriter();
+             BlockMaxWriter blockMaxWriter = new BlockMaxWriter(
+                     config.getBlockMaxPath(), config.getBM25K(), lengthNormalization);
+             ImpactWriter impactWriter = config.getUseImpactOrder() ?
+                     new ImpactWriter(config.getImpactPath(), config.getBM25K(), lengthNormalization) : null) {
+            for (int i = 0; i < postingFileCount; i++)
+                postingReaders[i] = new PostingRunReader(getPostingFilePath(i));
+
+            // the dominant entities of each document are computed as the entity postings are merged.
+            DominantEntities dominantEntities = new DominantEntities(documentMap.size());
+            termCount = merge(postingReaders, dictionary, invertedFileWriter, dictionaryWriter,
+                    blockMaxWriter, impactWriter, dominantEntities);
+
+            documentMap.setDominantEntities(dominantEntities);
+
+        } catch (IOException e) {
+            Logger.getInstance().error(e);
+        }
+        finally {
+            // release all the files held by the readers.
+            for (PostingRunReader postingReader : postingReaders) {
+                try { if (postingReader != null) postingReader.close(); }
+                catch (IOException e) { Logger.getInstance().warn(e); }
             }
+        }
 
-            // all entity updates have been sent.
-            entityUpdate.closeGroup();
+        return termCount;
+    }
 
-            // release all the files held by the readers and writers.
-            invertedFileWriter.close();
-            for (BufferedReader postingReader : postingReaders)
-                postingReader.close();
+    /**
+     * Merges the posting runs read by the given readers into the inverted file, writing the
+     * dictionary entry of every term as soon as its line is written.
+     * @param postingReaders readers of the posting files in posting file order, none of them has read a term yet.
+     * @param dictionary the dictionary of the terms in the posting files, it is emptied by the merge.
+     * @param invertedFileWriter writer of the inverted file.
+     * @param dictionaryWriter writer of the dictionary file.
+     * @param blockMaxWriter writer of the block max file.
+     * @param impactWriter writer of the impact file, null if the impact ordered layout is not written.
+     * @param dominantEntities receives the entity postings of the documents.
+     * @return the number of terms written into the dictionary file.
+     * @throws IOException if there was an error reading a posting file or writing one of the files.
+     */
+    static int merge(PostingRunReader[] postingReaders, Dictionary dictionary, InvertedFileWriter invertedFileWriter,
+                     Writer dictionaryWriter, BlockMaxWriter blockMaxWriter, ImpactWriter impactWriter,
+                     DominantEntities dominantEntities) throws IOException {
+        int termCount = 0;
+        // readers that have a term to merge.
+        ArrayList<PostingRunReader> activeReaders = new ArrayList<>(postingReaders.length);
+        for (PostingRunReader postingReader : postingReaders) {
+            if (postingReader.next())
+                activeReaders.add(postingReader);
+        }
 
-            // wait for all the entity updates to complete.
-            entityUpdate.awaitCompletion();
+        // the readers whose term is the alphabetically minimal term, in posting file order.
+        ArrayList<PostingRunReader> minReaders = new ArrayList<>(postingReaders.length);
+
+        PostingConsumer postingConsumer = new PostingConsumer(blockMaxWriter, impactWriter, dominantEntities);
+        PostingDecoder decoder = new PostingDecoder(postingConsumer);
+
+        // while there are readers who haven't finished reading their file.
+        while (!activeReaders.isEmpty()) {
+            //the minimal term of terms this iteration.
+            String minTerm = null;
+            for (PostingRunReader reader : activeReaders) {
+                String term = reader.getTerm();
+                if (minTerm == null || term.compareTo(minTerm) < 0) { // we found a new min term.
+                    minTerm = term;
+                    minReaders.clear();
+                    minReaders.add(reader);
+                } else if (term.compareTo(minTerm) == 0) // we found a new term equal to the min.
+                    minReaders.add(reader);
+            }
 
-        } catch (IOException e) {
-            Logger.getInstance().error(e);
+            // get term for minTerm from dictionary.
+            Optional<Term> optionalTerm = dictionary.lookupTerm(minTerm);
+            if (!optionalTerm.isPresent())
+                throw new IllegalStateException("term does not exist in dictionary");
+
+            // if the term is an entity its postings are offered to all the documents it appears in.
+            postingConsumer.entityID = -1;
+            if (dictionary.isEntity(minTerm))
+                postingConsumer.entityID = dominantEntities.addEntity(minTerm);
+
+            // stream the (|d,f)+ part of all the min lines into one line and read the next terms.
+            Term term = optionalTerm.get();
+            blockMaxWriter.begin();
+            if (impactWriter != null)
+                impactWriter.begin();
+            term.pointer = invertedFileWriter.beginPosting(minTerm, decoder);
+            for (PostingRunReader reader : minReaders) {
+                reader.transferPosting(invertedFileWriter);
+                if (!reader.next())
+                    activeReaders.remove(reader);
+            }
+            term.length = invertedFileWriter.endPosting();
+            blockMaxWriter.end(term);
+            if (impactWriter != null)
+                impactWriter.end(term);
+
+            // the term is complete, write it into the dictionary file and release it.
+            Dictionary.writeTerm(dictionaryWriter, term);
+            dictionary.release(term);
+            termCount++;
+
+            minReaders.clear();
+        }
+
+        return termCount;
+    }
+
+    // passes the decoded postings to the block max writer and the impact writer (if there is one),
+    // and if the line is of an entity offers the entity to the documents it appears in.
+    private static class PostingConsumer implements PostingDecoder.Consumer {
+
+        private final BlockMaxWriter blockMaxWriter;
+        private final ImpactWriter impactWriter;
+        private final DominantEntities dominantEntities;
+        // id of the entity of the current line, -1 if the line is not of an entity.
+        private int entityID;
+
+        private PostingConsumer(BlockMaxWriter blockMaxWriter, ImpactWriter impactWriter,
+                                DominantEntities dominantEntities) {
+            this.blockMaxWriter = blockMaxWriter;
+            this.impactWriter = impactWriter;
+            this.dominantEntities = dominantEntities;
+            this.entityID = -1;
+        }
+
+        @Override
+        public void accept(int docID, int frequency) {
+            blockMaxWriter.accept(docID, frequency);
+            if (impactWriter != null)
+                impactWriter.accept(docID, frequency);
+            if (entityID >= 0)
+                dominantEntities.offer(docID, entityID, frequency);
         }
     }
 
@@ -208,12 +262,14 @@ public final class PostingCache {
     }
 
     /**
-     * Deletes the inverted file.
+     * Deletes the inverted file, the block max file and the impact file.
      *
      * @throws IOException if there is a problem deleting the file.
      */
     public static void deleteInvertedFile() throws IOException {
         Files.deleteIfExists(Paths.get(getInvertedFilePath()));
+        Files.deleteIfExists(Paths.get(Configuration.getInstance().getBlockMaxPath()));
+        Files.deleteIfExists(Paths.get(Configuration.getInstance().getImpactPath()));
     }
 
     // get path to Posting file directory.
@@ -231,4 +287,4 @@ public final class PostingCache {
     private static String getPostingFilePath(int postingFileID) {
         return getPostingPath() + postingFileID + ".txt";
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
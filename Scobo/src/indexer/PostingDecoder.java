@@ -0,0 +1,81 @@
+package indexer;
+
+/**
+ * Incrementally decodes the (|docID,tf)+ part of a posting line,
+ * the line may be given in chunks of any size and each decoded
+ * posting is passed on to a {@link Consumer}.
+ */
+class PostingDecoder {
+
+    private final Consumer consumer;
+
+    // true while reading the docID, false while reading the frequency.
+    private boolean readingDocID;
+    // true if a posting has been started and not yet passed on.
+    private boolean hasPosting;
+    private int docID;
+    private int frequency;
+
+    /**
+     * Creates a decoder that passes the decoded postings to the given consumer.
+     * @param consumer receives the decoded postings.
+     */
+    PostingDecoder(Consumer consumer) {
+        this.consumer = consumer;
+        reset();
+    }
+
+    /**
+     * Prepares the decoder for a new posting line.
+     */
+    void reset() {
+        readingDocID = false;
+        hasPosting = false;
+        docID = 0;
+        frequency = 0;
+    }
+
+    /**
+     * Decodes a chunk of the posting line.
+     * @param bytes array holding the chunk.
+     * @param offset start of the chunk in the array.
+     * @param length length of the chunk.
+     */
+    void decode(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '|') {
+                // a new posting starts, pass on the previous one.
+                finish();
+                readingDocID = true;
+                hasPosting = true;
+            }
+            else if (b == ',')
+                readingDocID = false;
+            else if (readingDocID)
+                docID = docID * 10 + (b - '0');
+            else
+                frequency = frequency * 10 + (b - '0');
+        }
+    }
+
+    /**
+     * Passes on the last posting of the line, should be called when the line ends.
+     */
+    void finish() {
+        if (hasPosting)
+            consumer.accept(docID, frequency);
+
+        hasPosting = false;
+        docID = 0;
+        frequency = 0;
+    }
+
+    /**
+     * Receives the decoded postings.
+     */
+    interface Consumer {
+        void accept(int docID, int frequency);
+    }
+}
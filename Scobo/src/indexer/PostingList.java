@@ -0,0 +1,128 @@
+package indexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A decoded posting line of the inverted file, holds the documents the
+ * term appears in and the frequency of the term in each of them.
+ */
+public final class PostingList {
+
+    /**
+     * the term of the posting, as it appears in the inverted file.
+     */
+    public final String term;
+
+    // documents and frequencies of the posting.
+    private final int[] documents;
+    private final int[] frequencies;
+    private final int size;
+
+    private PostingList(String term, int[] documents, int[] frequencies, int size) {
+        this.term = term;
+        this.documents = documents;
+        this.frequencies = frequencies;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of documents in the posting.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index index of a posting, between 0 and {@link #size()}.
+     * @return the docID of the posting at the given index.
+     */
+    public int documentAt(int index) {
+        return documents[index];
+    }
+
+    /**
+     * @param index index of a posting, between 0 and {@link #size()}.
+     * @return the frequency of the term in the document of the posting at the given index.
+     */
+    public int frequencyAt(int index) {
+        return frequencies[index];
+    }
+
+    /**
+     * @return the number of bytes the posting list takes on the heap, assuming the layout of a 64 bit
+     * JVM with compressed references (12 byte object headers, 16 byte array headers, 8 byte alignment),
+     * including the arrays and the term.
+     */
+    public long sizeInBytes() {
+        return sizeInBytes(term.length(), documents.length);
+    }
+
+    /**
+     * Estimates the size of a posting list before it is read, see {@link #sizeInBytes()}.
+     * @param termLength the number of chars in the term of the list.
+     * @param size the number of documents in the list (its document frequency).
+     * @return the number of bytes a posting list of the given size takes on the heap.
+     */
+    public static long sizeInBytes(int termLength, int size) {
+        // header, the term and array references and the size.
+        long bytes = align(12 + 4 + 4 + 4 + 4);
+        bytes += align(16 + (long) Integer.BYTES * size);
+        bytes += align(16 + (long) Integer.BYTES * size);
+        // the string object (header, value reference, hash, coder) and its value array (at most 2 bytes a char).
+        bytes += align(12 + 4 + 4 + 1) + align(16 + 2L * termLength);
+        return bytes;
+    }
+
+    // rounds the size of an object up to the 8 byte alignment of the heap.
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Decodes a posting line in the format term(|docID,tf)+
+     * @param posting buffer holding the posting line, as returned by {@link PostingReader#read(Term)}.
+     * @return the decoded posting list.
+     */
+    public static PostingList decode(ByteBuffer posting) {
+        int start = posting.position();
+        int end = posting.limit();
+
+        int index = start;
+        while (index < end && posting.get(index) != '|')
+            index++;
+
+        byte[] termBytes = new byte[index - start];
+        for (int i = 0; i < termBytes.length; i++)
+            termBytes[i] = posting.get(start + i);
+        String term = new String(termBytes, StandardCharsets.UTF_8);
+
+        // each posting starts with a '|' so counting them gives the number of postings.
+        int count = 0;
+        for (int i = index; i < end; i++) {
+            if (posting.get(i) == '|')
+                count++;
+        }
+
+        int[] documents = new int[count];
+        int[] frequencies = new int[count];
+        int size = 0;
+        while (index < end) {
+            int docID = 0;
+            // skip the '|' and read the docID up to the ','
+            for (index++; posting.get(index) != ','; index++)
+                docID = docID * 10 + (posting.get(index) - '0');
+
+            int frequency = 0;
+            // skip the ',' and read the frequency up to the next '|'
+            for (index++; index < end && posting.get(index) != '|'; index++)
+                frequency = frequency * 10 + (posting.get(index) - '0');
+
+            documents[size] = docID;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        return new PostingList(term, documents, frequencies, size);
+    }
+}
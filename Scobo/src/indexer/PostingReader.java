@@ -0,0 +1,141 @@
+package indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Reads posting lines from the inverted file.
+ *
+ * <p> The reader holds a single channel to the inverted file and only uses positional
+ * reads, so one reader can be shared by any number of threads without them
+ * fighting over a file handle or a file position.
+ * Each line is read with as few system calls as possible using the pointer and length
+ * kept by the {@link Term}, and is returned as a byte slice that can be decoded using
+ * {@link PostingList#decode(ByteBuffer)}.
+ * The reader also reads the block maxima of the terms from the block max file and the
+ * impact ordered segments of the terms from the impact file, if they exist.
+ */
+public final class PostingReader implements Closeable {
+
+    private final FileChannel channel;
+    // channel to the block max file, null if the index has no block max file.
+    private final FileChannel blockMaxChannel;
+    // channel to the impact file, null if the index has no impact file.
+    private final FileChannel impactChannel;
+
+    /**
+     * Opens the inverted file, the block max file and the impact file at the given paths for reading.
+     * @param invertedFilePath path to the inverted file.
+     * @param blockMaxPath path to the block max file, if the file does not exist
+     *                     the reader will not provide block maxima.
+     * @param impactPath path to the impact file, if the file does not exist
+     *                   the reader will not provide impact ordered segments.
+     * @throws IOException if the inverted file cannot be opened.
+     */
+    public PostingReader(String invertedFilePath, String blockMaxPath, String impactPath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(invertedFilePath), StandardOpenOption.READ);
+        this.blockMaxChannel = openIfExists(blockMaxPath);
+        this.impactChannel = openIfExists(impactPath);
+    }
+
+    /**
+     * Reads the posting line of the given term.
+     * @param term a term from the dictionary of the inverted file.
+     * @return buffer holding the bytes of the line in the format term(|docID,tf)+
+     * (without the line break) positioned at the start of the line.
+     * @throws IOException if there was an error reading the inverted file.
+     */
+    public ByteBuffer read(Term term) throws IOException {
+        ByteBuffer posting = ByteBuffer.allocate(term.length);
+        readFully(channel, posting, term.pointer, "posting of " + term.term);
+        return posting;
+    }
+
+    /**
+     * Reads a range of the inverted file, used to read many consecutive lines with a single read.
+     * @param position byte offset of the range in the inverted file.
+     * @param length length in bytes of the range.
+     * @return buffer holding the bytes of the range, positioned at the start of the range.
+     * @throws IOException if there was an error reading the inverted file.
+     */
+    public ByteBuffer readRange(long position, int length) throws IOException {
+        ByteBuffer range = ByteBuffer.allocate(length);
+        readFully(channel, range, position, "range at " + position);
+        return range;
+    }
+
+    /**
+     * Reads the block maxima of the given term.
+     * @param term a term from the dictionary of the inverted file.
+     * @return the block maxima of the term, or empty if the term's posting
+     * line is a single block or the index has no block max file.
+     * @throws IOException if there was an error reading the block max file.
+     */
+    public Optional<BlockMaxList> readBlockMax(Term term) throws IOException {
+        if (blockMaxChannel == null || term.blockPointer < 0)
+            return Optional.empty();
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        readFully(blockMaxChannel, header, term.blockPointer, "block maxima of " + term.term);
+        int blockCount = header.getInt();
+
+        ByteBuffer blocks = ByteBuffer.allocate(blockCount * (Integer.BYTES + Float.BYTES));
+        readFully(blockMaxChannel, blocks, term.blockPointer + Integer.BYTES, "block maxima of " + term.term);
+        return Optional.of(BlockMaxList.decode(blocks));
+    }
+
+    /**
+     * Reads the impact ordered segments of the given term.
+     * @param term a term from the dictionary of the inverted file.
+     * @return the segments of the term, or empty if the index has no impact ordered layout.
+     * @throws IOException if there was an error reading the impact file.
+     */
+    public Optional<ImpactList> readImpacts(Term term) throws IOException {
+        if (impactChannel == null || term.impactPointer < 0)
+            return Optional.empty();
+
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        readFully(impactChannel, header, term.impactPointer, "segments of " + term.term);
+        int segmentCount = header.getInt();
+        int postingCount = header.getInt();
+
+        ByteBuffer segments = ByteBuffer.allocate((2 * segmentCount + postingCount) * Integer.BYTES);
+        readFully(impactChannel, segments, term.impactPointer + header.capacity(), "segments of " + term.term);
+        return Optional.of(ImpactList.decode(segments, segmentCount, postingCount));
+    }
+
+    // opens the file at the given path for reading, returns null if the file does not exist.
+    private static FileChannel openIfExists(String path) throws IOException {
+        if (!Files.exists(Paths.get(path)))
+            return null;
+
+        return FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    }
+
+    // fills the buffer from the given position of the channel and flips it.
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, String data) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Index is corrupted, " + data + " is out of bounds.");
+            position += read;
+        }
+
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (blockMaxChannel != null)
+            blockMaxChannel.close();
+        if (impactChannel != null)
+            impactChannel.close();
+    }
+}
@@ -0,0 +1,116 @@
+package indexer;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a posting file (a run) one term posting at a time without ever
+ * holding a whole posting line in memory.
+ *
+ * <p> A posting file line has the format term(|docID,tf)+\n, the reader reads
+ * the term of the next line with {@link #next()} and the rest of the line
+ * is then copied in bounded chunks into an {@link InvertedFileWriter}
+ * using {@link #transferPosting(InvertedFileWriter)}.
+ */
+class PostingRunReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536; // 2^16
+
+    private final InputStream input;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    // bytes of the current term, grows when a longer term is read.
+    private byte[] termBytes;
+    private String term;
+
+    /**
+     * Opens the posting file at the given path.
+     * @param path path to a posting file.
+     * @throws IOException if the file cannot be opened.
+     */
+    PostingRunReader(String path) throws IOException {
+        this.input = new FileInputStream(path);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.termBytes = new byte[64];
+        this.position = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Reads the term of the next posting line.
+     * @return true if a term was read, false if the file has ended.
+     * @throws IOException if there was an error reading the file.
+     */
+    boolean next() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                term = null;
+                return false;
+            }
+
+            byte b = buffer[position];
+            if (b == '|')
+                break;
+
+            if (length == termBytes.length)
+                termBytes = Arrays.copyOf(termBytes, length * 2);
+            termBytes[length++] = b;
+            position++;
+        }
+
+        term = new String(termBytes, 0, length, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    /**
+     * @return the term of the current posting line, null if the file has ended.
+     */
+    String getTerm() {
+        return term;
+    }
+
+    /**
+     * Copies the (|docID,tf)+ part of the current posting line into the writer,
+     * after this method returns the reader is positioned at the start of the next line.
+     * @param writer the writer of the inverted file.
+     * @throws IOException if there was an error reading the file or writing into the writer.
+     */
+    void transferPosting(InvertedFileWriter writer) throws IOException {
+        while (position < limit || fill()) {
+            int end = position;
+            while (end < limit && buffer[end] != '\n')
+                end++;
+
+            writer.write(buffer, position, end - position);
+            if (end < limit) {
+                // skip the line break.
+                position = end + 1;
+                return;
+            }
+            position = end;
+        }
+    }
+
+    // reads the next chunk of the file into the buffer, returns false if the file has ended.
+    private boolean fill() throws IOException {
+        int read = input.read(buffer, 0, buffer.length);
+        if (read <= 0)
+            return false;
+
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -25,10 +25,48 @@ public class Term {
      */
     public long pointer;
 
+    /**
+     * length in bytes of the terms line in the inverted file (not including the line break).
+     */
+    public int length;
+
+    /**
+     * upper bound of the document dependant part of the terms bm25 score
+     * {@code (k + 1) * tf / (tf + k * (1 - b + b * (length / avgLength)))} over all the documents
+     * the term appears in, computed with the bm25 parameters of the index,
+     * -1 if the bound is unknown.
+     */
+    public float scoreBound;
+
+    /**
+     * pointer to the terms block maxima in the block max file,
+     * -1 if the term's posting line is a single block.
+     */
+    public long blockPointer;
+
+    /**
+     * pointer to the terms segments in the impact file,
+     * -1 if the index was built without the impact ordered layout.
+     */
+    public long impactPointer;
+
     public Term(String term,int termFrequency, int termDocumentFrequency, long pointer) {
+        this(term, termFrequency, termDocumentFrequency, pointer, 0);
+    }
+
+    public Term(String term,int termFrequency, int termDocumentFrequency, long pointer, int length) {
+        this(term, termFrequency, termDocumentFrequency, pointer, length, -1, -1, -1);
+    }
+
+    public Term(String term,int termFrequency, int termDocumentFrequency, long pointer, int length,
+                float scoreBound, long blockPointer, long impactPointer) {
         this.term = term;
         this.termFrequency = termFrequency;
         this.termDocumentFrequency = termDocumentFrequency;
         this.pointer = pointer;
+        this.length = length;
+        this.scoreBound = scoreBound;
+        this.blockPointer = blockPointer;
+        this.impactPointer = impactPointer;
     }
 }
@@ -1,6 +1,6 @@
 package indexer;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -10,7 +10,8 @@ class TermPosting {
 
     private String term;
 
-    // maps documents ids to document frequency.
+    // maps documents ids to document frequency, the documents are
+    // added in increasing id order and the map keeps that order.
     private Map<Integer, Integer> documents;
 
     /**
@@ -19,7 +20,7 @@ class TermPosting {
      */
     public TermPosting(String term) {
         this.term = term;
-        this.documents = new HashMap<>();
+        this.documents = new LinkedHashMap<>();
     }
 
     /**
@@ -22,7 +22,7 @@ public class Parser {
     private static final int BATCH_SIZE = Configuration.getInstance().getParserBatchSize();
 
     private String corpusPath;
-    private HashSet<String> stopWords; // List of all the stop words- the words we ignore while parsing documents
+    private Set<String> stopWords; // List of all the stop words- the words we ignore while parsing documents
 
     TaskGroup IOTasks;  // Group all the IO tasks
     TaskGroup CPUTasks; // Group all the CPU tasks
@@ -47,13 +47,17 @@ public class Parser {
      *                 parsed documents.
      */
     public Parser(String path, Consumer consumer) {
+        this(path, loadStopWords(path), consumer);
+    }
+
+    // constructs a parser of the corpus in the given path with the given stop words.
+    private Parser(String path, Set<String> stopWords, Consumer consumer) {
         IOTasks = TaskManager.getTaskGroup(TaskManager.TaskType.IO);
         CPUTasks = TaskManager.getTaskGroup(TaskManager.TaskType.COMPUTE);
         this.corpusPath = path + "/corpus";
         this.consumer = consumer;
         this.documentCount = new AtomicInteger(0);
-
-        loadStopWords(path);
+        this.stopWords = stopWords;
     }
 
     /**
@@ -69,13 +73,35 @@ public class Parser {
         this.provider = provider;
     }
 
-    //loads the stop words list- all the words that need to be ignored
-    private void loadStopWords(String path) {
-        try {
-            Stream<String> lines = Files.lines(Paths.get(path + "/stop_words.txt"));
-            stopWords = lines.collect(HashSet::new, HashSet::add, HashSet::addAll);
+    /**
+     * Constructs a parser using a DocumentProvider and stop words that were
+     * already loaded, whose tasks are executed with the given priority.
+     * @param stopWords the stop words, as loaded by {@link #loadStopWords(String)}.
+     * @param consumer the consumer that will use the parsers output.
+     * @param provider provides the documents for parsing.
+     * @param priority the priority of the parsing tasks.
+     */
+    public Parser(Set<String> stopWords, Consumer consumer, DocumentProvider provider, TaskManager.TaskPriority priority) {
+        this("", stopWords, consumer);
+        this.provider = provider;
+        IOTasks = TaskManager.getTaskGroup(TaskManager.TaskType.IO, priority);
+        CPUTasks = TaskManager.getTaskGroup(TaskManager.TaskType.COMPUTE, priority);
+    }
+
+    /**
+     * Loads the stop words list- all the words that need to be ignored,
+     * the list may be shared by any number of parsers.
+     * @param path path to where a stop words file will reside.
+     * @return the stop words, empty if the file could not be read.
+     */
+    public static Set<String> loadStopWords(String path) {
+        try (Stream<String> lines = Files.lines(Paths.get(path + "/stop_words.txt"))) {
+            return Collections.unmodifiableSet(lines.collect(HashSet::new, HashSet::add, HashSet::addAll));
+        }
+        catch (IOException e) {
+            Logger.getInstance().error(e);
+            return Collections.emptySet();
         }
-        catch (IOException e) { LOG.error(e); }
     }
 
     /**
@@ -115,6 +141,10 @@ public class Parser {
     /**
      * Start the parsing process, if no DocumentProvider was set
      * then read files from the corpus path.
+     * <p> The documents of a DocumentProvider are parsed without blocking, the consumer is notified
+     * that parsing is done by the thread that completes the last parse task, so its
+     * {@link Consumer#onFinishParser()} should be short. When reading the corpus the consumer is
+     * notified from a thread of its own, since it may wait there for the indexing to finish.
      */
     public void start() {
         CPUTasks.openGroup();
@@ -123,10 +153,11 @@ public class Parser {
                 CPUTasks.add(new Parse(document, this));
 
             CPUTasks.closeGroup();
+            CPUTasks.onCompletion().thenRun(consumer::onFinishParser);
+            return;
         }
-        else
-            new ReadFile(corpusPath, this); //Start reading files
 
+        new ReadFile(corpusPath, this); //Start reading files
         new Thread(this::finish, "parse waiter").start(); // Start new thread to wait for parsing to finish
     }
 
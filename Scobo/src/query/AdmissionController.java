@@ -0,0 +1,87 @@
+package query;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of query requests a query processor processes at the same time.
+ *
+ * <p> Up to {@code maxConcurrent} requests are processed at the same time, requests that arrive
+ * while the limit is reached wait in a queue of up to {@code maxQueued} requests and are started in
+ * the order they arrived as running requests finish. Requests that arrive while the queue is full
+ * are rejected, so under overload the work in progress and the memory it holds stay bounded and
+ * the excess requests are shed immediately instead of piling up.
+ * Waiting requests do not hold a thread, a request is started by the thread that finished the request before it.
+ */
+final class AdmissionController {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+
+    private int running;
+    // the start actions of the requests waiting for their turn.
+    private final ArrayDeque<Runnable> queue;
+
+    private final AtomicLong rejected;
+
+    /**
+     * Creates an admission controller.
+     * @param maxConcurrent the number of requests processed at the same time, 0 or less for no limit.
+     * @param maxQueued the number of requests that may wait for their turn.
+     */
+    AdmissionController(int maxConcurrent, int maxQueued) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.running = 0;
+        this.queue = new ArrayDeque<>();
+        this.rejected = new AtomicLong(0);
+    }
+
+    /**
+     * Admits a request, the request is started now if there is room for it, later if it can wait
+     * in the queue, or rejected if the queue is full. Every request that was started must call
+     * {@link #release()} once it finishes.
+     * @param start starts the request.
+     * @return true if the request was started or queued, false if it was rejected.
+     */
+    boolean admit(Runnable start) {
+        synchronized (this) {
+            if (maxConcurrent > 0 && running >= maxConcurrent) {
+                if (queue.size() >= maxQueued) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+
+                queue.add(start);
+                return true;
+            }
+
+            running++;
+        }
+
+        start.run();
+        return true;
+    }
+
+    /**
+     * Notifies the controller that a request finished, the first waiting request is started in its place.
+     */
+    void release() {
+        Runnable next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null)
+                running--;
+        }
+
+        if (next != null)
+            next.run();
+    }
+
+    /**
+     * @return the number of requests that were rejected.
+     */
+    long getRejected() {
+        return rejected.get();
+    }
+}
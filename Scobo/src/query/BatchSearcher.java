@@ -0,0 +1,250 @@
+package query;
+
+import indexer.PostingList;
+import indexer.Term;
+import util.Configuration;
+import util.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the retrieval of results for a batch of queries, sharing the
+ * reads of the posting lines between the queries.
+ *
+ * <p> All the queries of the batch are prepared first, then the distinct posting lines of all the
+ * queries are read once, in the order they appear in the inverted file. Lines that are close to each
+ * other are read together with a single read, so reading the lines of the batch costs close to one
+ * sequential scan of the parts of the inverted file the batch uses. Once all the lines are decoded
+ * every query is ranked from the shared lines by its own {@link Searcher}. The lines are only read
+ * together if the {@link QueryPlanner} estimates it reads less than the queries would read on their own,
+ * otherwise every query reads its own lines.
+ *
+ * <p> The decoded lines are held until every query that shares them is ranked, so a batch whose lines
+ * take more than the batch byte budget of the configuration is searched in waves - the queries are split
+ * in their order into waves whose lines fit in the budget, and a wave is started by the thread that
+ * ranked the last query of the wave before it, once the lines of that wave were released.
+ */
+class BatchSearcher implements Runnable {
+
+    // the largest gap between two lines that are still read together.
+    private static final int MAX_GAP = 256 * 1024;
+    // the largest number of bytes read with a single read.
+    private static final int MAX_RANGE = 16 * 1024 * 1024;
+
+    private final QueryProcessor manager;
+    private final QueryRequest request;
+    private final Collection<Query> queries;
+
+    /**
+     * Constructs a batch searcher for the given queries of the given request.
+     * @param queries the queries of the batch.
+     * @param request the request the batch belongs to.
+     */
+    BatchSearcher(Collection<Query> queries, QueryRequest request) {
+        this.manager = request.processor;
+        this.request = request;
+        this.queries = queries;
+    }
+
+    @Override
+    public void run() {
+        try {
+            ArrayList<Searcher> searchers = new ArrayList<>(queries.size());
+            for (Query query : queries) {
+                Searcher searcher = new Searcher(query, request);
+                try {
+                    if (searcher.prepare())
+                        searchers.add(searcher);
+                }
+                catch (RuntimeException e) {
+                    fail(searcher, e);
+                }
+            }
+
+            List<List<Searcher>> waves = planWaves(searchers);
+            if (waves.size() > 1)
+                Logger.getInstance().message("batch of " + searchers.size() + " queries exceeds its budget, searching it in "
+                        + waves.size() + " waves");
+
+            startWave(waves, 0);
+        }
+        finally {
+            request.searchTasks.complete();
+        }
+    }
+
+    // reads the lines of the given wave and queues a search task for every query of the wave,
+    // the last query of the wave to be ranked releases the lines of the wave and starts the next one.
+    private void startWave(List<List<Searcher>> waves, int wave) {
+        if (wave >= waves.size())
+            return;
+
+        List<Searcher> searchers = waves.get(wave);
+        long startTime = System.nanoTime();
+        HashMap<Long, PostingList> postingLists = new HashMap<>();
+        List<List<Term>> reads = planReads(searchers, postingLists);
+
+        ArrayList<QueryPlan> plans = new ArrayList<>(searchers.size());
+        for (Searcher searcher : searchers) {
+            if (searcher.usesPostingLines())
+                plans.add(searcher.plan);
+        }
+
+        QueryPlanner.Choice choice = manager.planner.batch(plans, reads);
+        if (choice.strategy == QueryPlanner.Strategy.BATCH) {
+            for (List<Term> read : reads)
+                readRange(read, postingLists);
+        }
+
+        Logger.getInstance().message("batch of " + searchers.size() + " queries"
+                + (waves.size() > 1 ? " (wave " + (wave + 1) + " of " + waves.size() + ")" : "")
+                + " planned as " + choice.describe(System.nanoTime() - startTime));
+
+        // the queries are ranked concurrently, each from the shared lists.
+        AtomicInteger remaining = new AtomicInteger(searchers.size());
+        for (Searcher searcher : searchers) {
+            searcher.setPrefetched(postingLists);
+            request.searchTasks.add(() -> {
+                try {
+                    searcher.execute();
+                }
+                catch (RuntimeException e) {
+                    fail(searcher, e);
+                }
+                finally {
+                    searcher.setPrefetched(null);
+                    try {
+                        // the next wave is queued before this task completes, so the request does not complete in between.
+                        if (remaining.decrementAndGet() == 0)
+                            startWave(waves, wave + 1);
+                    }
+                    finally {
+                        request.searchTasks.complete();
+                    }
+                }
+            });
+        }
+    }
+
+    // splits the searchers in their order into waves whose distinct posting lines fit in the byte budget of a
+    // batch, cached lines are not counted. a query whose lines do not fit in the budget on their own is a wave by itself.
+    private List<List<Searcher>> planWaves(List<Searcher> searchers) {
+        long budget = Configuration.getInstance().getBatchByteBudget();
+        ArrayList<List<Searcher>> waves = new ArrayList<>();
+        ArrayList<Searcher> wave = new ArrayList<>();
+        HashSet<Long> lines = new HashSet<>();
+        long bytes = 0;
+        for (Searcher searcher : searchers) {
+            long added = addedBytes(searcher, lines);
+            if (budget > 0 && !wave.isEmpty() && bytes + added > budget) {
+                waves.add(wave);
+                wave = new ArrayList<>();
+                lines.clear();
+                bytes = 0;
+                added = addedBytes(searcher, lines);
+            }
+
+            wave.add(searcher);
+            bytes += added;
+            if (searcher.usesPostingLines()) {
+                for (int i = 0; i < searcher.plan.size(); i++)
+                    lines.add(searcher.plan.termAt(i).pointer);
+            }
+        }
+
+        if (!wave.isEmpty())
+            waves.add(wave);
+
+        return waves;
+    }
+
+    // the bytes of the lines of the searcher that are not among the given lines and are not cached.
+    private long addedBytes(Searcher searcher, Set<Long> lines) {
+        if (!searcher.usesPostingLines())
+            return 0;
+
+        long bytes = 0;
+        for (int i = 0; i < searcher.plan.size(); i++) {
+            Term term = searcher.plan.termAt(i);
+            if (!lines.contains(term.pointer) && !manager.postingCache.contains(term))
+                bytes += term.length;
+        }
+
+        return bytes;
+    }
+
+    // the query of the searcher could not be searched, it is left unranked and marked partial.
+    private void fail(Searcher searcher, RuntimeException e) {
+        Logger.getInstance().error(e);
+        request.result.markPartial(searcher.query.id);
+    }
+
+    // groups the distinct posting lines of the searchers that use them in file order into the reads they would be
+    // read with, the lines that are cached are taken from the cache into the given posting lists instead.
+    private List<List<Term>> planReads(List<Searcher> searchers, Map<Long, PostingList> postingLists) {
+        TreeMap<Long, Term> lines = new TreeMap<>();
+        for (Searcher searcher : searchers) {
+            if (!searcher.usesPostingLines())
+                continue;
+
+            for (int i = 0; i < searcher.plan.size(); i++) {
+                Term term = searcher.plan.termAt(i);
+                lines.putIfAbsent(term.pointer, term);
+            }
+        }
+
+        ArrayList<List<Term>> reads = new ArrayList<>();
+        ArrayList<Term> range = new ArrayList<>();
+        for (Term term : lines.values()) {
+            Optional<PostingList> cached = manager.postingCache.get(term);
+            if (cached.isPresent()) {
+                postingLists.put(term.pointer, cached.get());
+                continue;
+            }
+
+            if (!range.isEmpty() && !canExtend(range, term)) {
+                reads.add(range);
+                range = new ArrayList<>();
+            }
+            range.add(term);
+        }
+
+        if (!range.isEmpty())
+            reads.add(range);
+
+        return reads;
+    }
+
+    // true if the term's line is close enough to the range to be read together with it.
+    private static boolean canExtend(List<Term> range, Term term) {
+        Term first = range.get(0);
+        Term last = range.get(range.size() - 1);
+        long gap = term.pointer - (last.pointer + last.length);
+        return gap <= MAX_GAP && term.pointer + term.length - first.pointer <= MAX_RANGE;
+    }
+
+    // reads the lines of the range with a single read and decodes them.
+    private void readRange(List<Term> range, Map<Long, PostingList> postingLists) {
+        Term first = range.get(0);
+        Term last = range.get(range.size() - 1);
+        try {
+            ByteBuffer buffer = manager.postingReader.readRange(
+                    first.pointer, (int) (last.pointer + last.length - first.pointer));
+            for (Term term : range) {
+                ByteBuffer line = buffer.duplicate();
+                line.position((int) (term.pointer - first.pointer));
+                line.limit((int) (term.pointer - first.pointer) + term.length);
+
+                PostingList postingList = PostingList.decode(line);
+                postingLists.put(term.pointer, postingList);
+                manager.postingCache.offer(term, postingList);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the searchers will read the lines of the range themselves.
+            Logger.getInstance().error(e);
+        }
+    }
+}
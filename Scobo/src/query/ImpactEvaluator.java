@@ -0,0 +1,140 @@
+package query;
+
+import indexer.ImpactList;
+import util.Configuration;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates a query score at a time over the impact ordered layout of the index.
+ *
+ * <p> The segments of all the query terms are ordered by their contribution to the score of
+ * a document (the weight of the term multiplied by the impact of the segment) and are added into
+ * an accumulator from the highest contribution to the lowest, so the documents that are most
+ * likely to be ranked high are scored first. The evaluation is anytime - it may be stopped once a
+ * time budget or a posting budget runs out, and the ranking is then made of the best results found
+ * so far, which trades a slightly approximate ranking for a bounded query time.
+ *
+ * <p> Since the impacts are quantized the scores are an approximation of the bm25 scores
+ * even when the whole query is evaluated.
+ */
+final class ImpactEvaluator {
+
+    private final Ranker ranker;
+    private final ImpactList[] impactLists;
+    private final double[] weights;
+
+    /**
+     * Creates an evaluator for a query.
+     * @param ranker the ranker of the query, the documents are ranked through it.
+     * @param plan the plan of the query.
+     * @param impactLists the impact ordered segments of the plan (by plan index), may contain nulls.
+     */
+    ImpactEvaluator(Ranker ranker, QueryPlan plan, ImpactList[] impactLists) {
+        this.ranker = ranker;
+        this.impactLists = impactLists;
+        this.weights = new double[plan.size()];
+        for (int i = 0; i < plan.size(); i++)
+            weights[i] = plan.weightAt(i);
+    }
+
+    /**
+     * @param plan the plan of a query.
+     * @param ranker the ranker of the query.
+     * @return true if the query can be evaluated on the impact ordered layout, that is if the layout
+     * is enabled, the index has it for all the terms in the plan and its impacts fit the ranker.
+     */
+    static boolean canEvaluate(QueryPlan plan, Ranker ranker) {
+        if (!Configuration.getInstance().getUseImpactOrder() || !ranker.hasIndexBounds())
+            return false;
+
+        for (int i = 0; i < plan.size(); i++) {
+            double weight = plan.weightAt(i);
+            if (plan.termAt(i).impactPointer < 0 || weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Scores the segments of the query into the accumulator from the highest contribution
+     * to the lowest, until all the segments are scored, one of the budgets runs out or the evaluation is cancelled.
+     * The budgets and the cancellation are checked between segments, so the first segment is always scored
+     * and a budget is exceeded by at most one segment.
+     * @param accumulator accumulator the scores are added into.
+     * @param startTime the time the query started (as given by {@link System#nanoTime()}).
+     * @param timeBudget the time in milliseconds the query may take, 0 for no limit.
+     * @param postingBudget the number of postings the query may score, 0 for no limit.
+     * @param isCancelled the evaluation stops once it is true.
+     * @return true if all the segments were scored, false if a budget ran out or the evaluation was cancelled.
+     */
+    boolean evaluate(ScoreAccumulator accumulator, long startTime, long timeBudget, long postingBudget,
+                     BooleanSupplier isCancelled) {
+        long timeBudgetNanos = timeBudget * 1_000_000;
+        long scored = 0;
+        for (Segment segment : orderSegments()) {
+            if (scored > 0) {
+                if (postingBudget > 0 && scored >= postingBudget)
+                    return false;
+                if (timeBudget > 0 && System.nanoTime() - startTime > timeBudgetNanos)
+                    return false;
+                if (isCancelled.getAsBoolean())
+                    return false;
+            }
+
+            ImpactList impactList = impactLists[segment.term];
+            int end = impactList.segmentEnd(segment.index);
+            for (int i = impactList.segmentStart(segment.index); i < end; i++)
+                accumulator.add(impactList.documentAt(i), segment.contribution);
+
+            scored += end - impactList.segmentStart(segment.index);
+        }
+
+        return true;
+    }
+
+    // the segments of all the terms, ordered from the highest contribution to the lowest.
+    private Segment[] orderSegments() {
+        int count = 0;
+        for (ImpactList impactList : impactLists) {
+            if (impactList != null)
+                count += impactList.segmentCount();
+        }
+
+        Segment[] segments = new Segment[count];
+        int segment = 0;
+        for (int term = 0; term < impactLists.length; term++) {
+            if (impactLists[term] == null)
+                continue;
+
+            for (int i = 0; i < impactLists[term].segmentCount(); i++) {
+                double contribution = weights[term] * ImpactList.scoreOf(impactLists[term].impactAt(i), ranker.k);
+                segments[segment++] = new Segment(term, i, contribution);
+            }
+        }
+
+        // ties are broken by plan order, so the order does not depend on the sort.
+        Arrays.sort(segments, Comparator.comparingDouble((Segment s) -> -s.contribution).thenComparingInt(s -> s.term));
+        return segments;
+    }
+
+    // a segment of the impact ordered segments of a term.
+    private static final class Segment {
+
+        // index of the term in the plan.
+        private final int term;
+        // index of the segment in the term's segments.
+        private final int index;
+        // the score added to every document in the segment.
+        private final double contribution;
+
+        private Segment(int term, int index, double contribution) {
+            this.term = term;
+            this.index = index;
+            this.contribution = contribution;
+        }
+    }
+}
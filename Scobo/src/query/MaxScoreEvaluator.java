@@ -0,0 +1,193 @@
+package query;
+
+import indexer.PostingList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates a query document at a time using the MaxScore algorithm.
+ *
+ * <p> The terms of the query are ordered by the upper bound of their score in any document,
+ * and split into non-essential terms - the terms with the lowest bounds whose bounds sum up to
+ * no more than the lowest score in the ranking, and essential terms - all the others.
+ * A document that contains none of the essential terms cannot enter the ranking, so only the
+ * posting lists of the essential terms are traversed, and the lists of the non-essential terms
+ * are only probed for the documents that can still enter the ranking after adding the bounds of
+ * the terms that were not probed yet. As the ranking improves more terms become non-essential.
+ *
+ * <p> Unlike WAND the evaluator does not keep the cursors sorted, which makes it better suited for
+ * long queries (such as semantically expanded queries) where many terms have low bounds.
+ * The ranking produced is the same as the one produced by scoring every document.
+ */
+final class MaxScoreEvaluator {
+
+    /**
+     * the number of posting lines from which a query is considered long,
+     * long queries are evaluated with MaxScore rather than WAND.
+     */
+    static final int LONG_QUERY_SIZE = 16;
+
+    private static final int END = PostingCursor.END;
+
+    private final Ranker ranker;
+    // cursors of the query terms, sorted by their bound.
+    private final PostingCursor[] cursors;
+    // boundSums[i] is the sum of the bounds of cursors 0 to i.
+    private final double[] boundSums;
+    // slots[i] is the position of cursor i among the cursors in plan order.
+    private final int[] slots;
+    // the score of the cursor in slot j in the document scoredDocuments[j], the score of a document is
+    // summed from them in plan order so it does not depend on the bounds or on which terms were essential.
+    private final double[] termScores;
+    private final int[] scoredDocuments;
+
+    /**
+     * Creates an evaluator for a query.
+     * @param ranker the ranker of the query, the documents are ranked through it.
+     * @param plan the plan of the query.
+     * @param postingLists the posting lists of the plan (by plan index), may contain nulls.
+     */
+    MaxScoreEvaluator(Ranker ranker, QueryPlan plan, PostingList[] postingLists) {
+        this(ranker, plan, postingLists, 0, END);
+    }
+
+    /**
+     * Creates an evaluator for the documents of a query in a range of docIDs.
+     * @param ranker the ranker of the query, the documents are ranked through it.
+     * @param plan the plan of the query.
+     * @param postingLists the posting lists of the plan (by plan index), may contain nulls.
+     * @param from the first docID of the range.
+     * @param to the docID past the end of the range.
+     */
+    MaxScoreEvaluator(Ranker ranker, QueryPlan plan, PostingList[] postingLists, int from, int to) {
+        this.ranker = ranker;
+
+        PostingCursor[] cursors = new PostingCursor[plan.size()];
+        int count = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (postingLists[i] == null)
+                continue;
+
+            int start = PostingCursor.positionOf(postingLists[i], from);
+            int end = PostingCursor.positionOf(postingLists[i], to);
+            if (start == end)
+                continue;
+
+            double weight = plan.weightAt(i);
+            double bound = weight * ranker.maxDocumentScore(plan.termAt(i)) * (1 + WandEvaluator.BOUND_MARGIN);
+            cursors[count++] = new PostingCursor(i, postingLists[i], start, end, weight, bound, null);
+        }
+
+        this.cursors = Arrays.copyOf(cursors, count);
+        // the cursors were created in plan order, so their plan indexes are sorted.
+        int[] orders = new int[count];
+        for (int i = 0; i < count; i++)
+            orders[i] = cursors[i].order;
+        Arrays.sort(this.cursors, Comparator.comparingDouble((PostingCursor c) -> c.bound).thenComparingInt(c -> c.order));
+        boundSums = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += this.cursors[i].bound;
+            boundSums[i] = sum;
+        }
+
+        slots = new int[count];
+        for (int i = 0; i < count; i++)
+            slots[i] = Arrays.binarySearch(orders, this.cursors[i].order);
+
+        termScores = new double[count];
+        scoredDocuments = new int[count];
+        Arrays.fill(scoredDocuments, -1);
+    }
+
+    /**
+     * @param plan the plan of a query.
+     * @return true if the query can be evaluated with MaxScore, that is if the weights of all
+     * the terms are positive so the bounds of the terms bound the scores of the documents.
+     */
+    static boolean canEvaluate(QueryPlan plan) {
+        for (int i = 0; i < plan.size(); i++) {
+            double weight = plan.weightAt(i);
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Ranks all the documents that can enter the ranking of the ranker, unless the evaluation is
+     * cancelled in which case the ranking holds the documents that were scored before it was cancelled.
+     * @param isCancelled checked every {@link WandEvaluator#CANCEL_CHECK_INTERVAL} documents, the evaluation stops once it is true.
+     * @return true if the evaluation completed, false if it was cancelled.
+     */
+    boolean evaluate(BooleanSupplier isCancelled) {
+        // cursors before firstEssential are non-essential.
+        int firstEssential = 0;
+        double threshold = ranker.threshold();
+        for (int step = 1; ; step++) {
+            if (step % WandEvaluator.CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean())
+                return false;
+
+            while (firstEssential < cursors.length && boundSums[firstEssential] <= threshold)
+                firstEssential++;
+
+            if (firstEssential == cursors.length)
+                return true;
+
+            int document = END;
+            for (int i = firstEssential; i < cursors.length; i++)
+                document = Math.min(document, cursors[i].document);
+
+            if (document == END)
+                return true;
+
+            double score = 0;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                if (cursors[i].document == document) {
+                    score += scoreTerm(i, document);
+                    cursors[i].next();
+                }
+            }
+
+            // probe the non-essential lists from the highest bound, as long as the document can enter the ranking.
+            boolean canEnter = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + boundSums[i] <= threshold) {
+                    canEnter = false;
+                    break;
+                }
+
+                cursors[i].advance(document);
+                if (cursors[i].document == document)
+                    score += scoreTerm(i, document);
+            }
+
+            if (canEnter) {
+                ranker.updateRanking(document, documentScore(document));
+                threshold = ranker.threshold();
+            }
+        }
+    }
+
+    // scores the term of cursor i in the document the cursor is on.
+    private double scoreTerm(int i, int document) {
+        int slot = slots[i];
+        termScores[slot] = cursors[i].weight * ranker.documentScore(document, cursors[i].frequency());
+        scoredDocuments[slot] = document;
+        return termScores[slot];
+    }
+
+    // the score of a document whose terms were scored, summed in plan order like the other evaluators sum it.
+    private double documentScore(int document) {
+        double score = 0;
+        for (int j = 0; j < termScores.length; j++) {
+            if (scoredDocuments[j] == document)
+                score += termScores[j];
+        }
+
+        return score;
+    }
+}
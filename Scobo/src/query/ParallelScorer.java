@@ -0,0 +1,143 @@
+package query;
+
+import indexer.PostingList;
+import util.Configuration;
+import util.CountLatch;
+import util.TaskManager;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores a single query on several threads by splitting the docID space into ranges.
+ *
+ * <p> Every range is scored into its own part of the ranker of the query (see {@link Ranker#part()}),
+ * so the ranges share nothing but the posting lists which are only read, and once all the ranges are
+ * scored the parts are merged into the ranking of the query. Since documents with equal scores are
+ * ranked by their docID the merged ranking is the same as the ranking of the whole docID space.
+ *
+ * <p> The ranges hold about the same number of postings of the longest posting list of the query.
+ * The thread scoring the query scores ranges as well and the rest of the ranges are scored by CPU tasks,
+ * each range is taken by the first thread that gets to it, so the scoring thread never waits for a task
+ * that has not started and the query is scored even when no CPU thread is free.
+ */
+final class ParallelScorer {
+
+    /**
+     * Scores the documents of a query in a range of docIDs.
+     */
+    interface RangeTask {
+
+        /**
+         * @param part the ranker the documents of the range are ranked through.
+         * @param from the first docID of the range.
+         * @param to the docID past the end of the range.
+         * @return true if the range was scored, false if the scoring was cancelled.
+         */
+        boolean score(Ranker part, int from, int to);
+    }
+
+    private final Ranker ranker;
+    // range i holds the docIDs from bounds[i] up to bounds[i + 1].
+    private final int[] bounds;
+    private final Ranker[] parts;
+
+    private final AtomicInteger nextRange;
+    private final CountLatch remaining;
+    private volatile boolean isCancelled;
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates a scorer for a query.
+     * @param ranker the ranker of the query.
+     * @param postingLists the posting lists of the query, may contain nulls.
+     * @param ranges the number of ranges to split the docID space into.
+     */
+    ParallelScorer(Ranker ranker, PostingList[] postingLists, int ranges) {
+        this.ranker = ranker;
+
+        PostingList longest = null;
+        for (PostingList postingList : postingLists) {
+            if (postingList != null && (longest == null || postingList.size() > longest.size()))
+                longest = postingList;
+        }
+
+        bounds = new int[ranges + 1];
+        for (int i = 1; i < ranges; i++)
+            bounds[i] = longest != null ? longest.documentAt((int) ((long) longest.size() * i / ranges)) : 0;
+        bounds[ranges] = PostingCursor.END;
+
+        parts = new Ranker[ranges];
+        for (int i = 0; i < ranges; i++)
+            parts[i] = ranker.part();
+
+        nextRange = new AtomicInteger(0);
+        remaining = new CountLatch(ranges);
+    }
+
+    /**
+     * @param plan the plan of a query.
+     * @return the number of ranges the query should be scored in, 1 if the query should be scored
+     * by a single thread. A query is split only if it has at least {@code ParallelScoringPostings}
+     * postings, into as many ranges as there are CPU threads free to score them.
+     */
+    static int rangesFor(QueryPlan plan) {
+        long threshold = Configuration.getInstance().getParallelScoringPostings();
+        if (threshold <= 0)
+            return 1;
+
+        long postings = 0;
+        for (int i = 0; i < plan.size(); i++)
+            postings += plan.termAt(i).termDocumentFrequency;
+
+        if (postings < threshold)
+            return 1;
+
+        // the thread scoring the query scores a range as well.
+        return 1 + TaskManager.getInstance().getIdleCPUThreads();
+    }
+
+    /**
+     * Scores all the ranges and merges their rankings into the ranking of the query,
+     * the calling thread blocks until all the ranges are scored.
+     * @param task scores a single range.
+     * @param priority the priority of the tasks scoring the ranges.
+     * @return true if all the ranges were scored, false if the scoring of any of them was cancelled.
+     * @throws IOException if the thread was interrupted while waiting for the ranges.
+     */
+    boolean score(RangeTask task, TaskManager.TaskPriority priority) throws IOException {
+        for (int i = 1; i < parts.length; i++)
+            TaskManager.getInstance().executeCPU(() -> scoreRanges(task), priority.getVal());
+
+        scoreRanges(task);
+        try { remaining.await(); }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while scoring a query", e);
+        }
+
+        if (failure != null)
+            throw failure;
+
+        for (Ranker part : parts)
+            ranker.merge(part);
+
+        return !isCancelled;
+    }
+
+    // scores ranges until no range is left.
+    private void scoreRanges(RangeTask task) {
+        for (int range = nextRange.getAndIncrement(); range < parts.length; range = nextRange.getAndIncrement()) {
+            try {
+                if (!task.score(parts[range], bounds[range], bounds[range + 1]))
+                    isCancelled = true;
+            }
+            catch (RuntimeException e) {
+                failure = e;
+            }
+            finally {
+                remaining.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package query;
+
+import indexer.BlockMaxList;
+import indexer.PostingList;
+
+/**
+ * Traverses the posting list of a single query term in increasing docID order,
+ * used by the evaluators that rank a query document at a time.
+ * A cursor may be limited to a range of docIDs, in which case it only traverses
+ * the postings of the documents in the range.
+ */
+final class PostingCursor {
+
+    /**
+     * docID of a cursor that has passed the end of its posting list.
+     */
+    static final int END = Integer.MAX_VALUE;
+
+    // index of the term in the query plan.
+    final int order;
+    // the weight of the term in the query.
+    final double weight;
+    // upper bound of the score of the term in any document.
+    final double bound;
+
+    private final PostingList postings;
+    private final BlockMaxList blocks;
+    // index of the first posting past the range of the cursor.
+    private final int end;
+
+    // position in the posting list and the document at that position.
+    private int index;
+    int document;
+
+    // the current block and the last document in it, as computed by the last call to blockBound.
+    private int block;
+    int blockEnd;
+
+    /**
+     * Creates a cursor positioned at the first posting of the list.
+     * @param order index of the term in the query plan.
+     * @param postings the posting list of the term, must not be empty.
+     * @param weight the weight of the term in the query.
+     * @param bound upper bound of the score of the term in any document.
+     * @param blocks the block maxima of the term, may be null.
+     */
+    PostingCursor(int order, PostingList postings, double weight, double bound, BlockMaxList blocks) {
+        this(order, postings, 0, postings.size(), weight, bound, blocks);
+    }
+
+    /**
+     * Creates a cursor limited to the postings between start and end, positioned at the first of them.
+     * @param order index of the term in the query plan.
+     * @param postings the posting list of the term.
+     * @param start index of the first posting of the cursor.
+     * @param end index of the first posting past the cursor, must be greater than start.
+     * @param weight the weight of the term in the query.
+     * @param bound upper bound of the score of the term in any document.
+     * @param blocks the block maxima of the term, may be null.
+     * @see #positionOf(PostingList, int)
+     */
+    PostingCursor(int order, PostingList postings, int start, int end, double weight, double bound, BlockMaxList blocks) {
+        this.order = order;
+        this.postings = postings;
+        this.end = end;
+        this.weight = weight;
+        this.bound = bound;
+        this.blocks = blocks;
+        this.index = start;
+        this.document = postings.documentAt(start);
+        this.block = start / BlockMaxList.BLOCK_SIZE;
+    }
+
+    /**
+     * @param postings a posting list.
+     * @param docID a docID.
+     * @return the index of the first posting in the list whose document is not lower
+     * than the given docID, or the size of the list if there is no such posting.
+     */
+    static int positionOf(PostingList postings, int docID) {
+        int low = 0;
+        int high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.documentAt(mid) < docID)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * @return the frequency of the term in the current document.
+     */
+    int frequency() {
+        return postings.frequencyAt(index);
+    }
+
+    /**
+     * @param other another cursor.
+     * @return true if this cursor is on a later document than the other cursor,
+     * or on the same document and later in the query plan.
+     */
+    boolean isAfter(PostingCursor other) {
+        return document > other.document || (document == other.document && order > other.order);
+    }
+
+    /**
+     * Moves the cursor to the next posting.
+     */
+    void next() {
+        index++;
+        document = index < end ? postings.documentAt(index) : END;
+    }
+
+    /**
+     * Moves the cursor to the first document that is not lower than the target.
+     * @param target docID to move to.
+     */
+    void advance(int target) {
+        if (document >= target)
+            return;
+
+        // gallop until the target is passed and then binary search the last step.
+        int low = index;
+        int high = low + 1;
+        int step = 1;
+        while (high < end && postings.documentAt(high) < target) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        high = Math.min(high, end);
+
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (postings.documentAt(mid) < target)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        index = high;
+        document = index < end ? postings.documentAt(index) : END;
+    }
+
+    /**
+     * Finds the block the target falls in, and sets {@link #blockEnd} to the last document of the block.
+     * The target must not be lower than the target of the previous call.
+     * @param target a docID that is not lower than the current document.
+     * @param margin relative margin added to the bound of the block.
+     * @return upper bound of the score of the term in the documents of the block,
+     * if the cursor has no block maxima the whole range of the cursor is a single block.
+     */
+    double blockBound(int target, double margin) {
+        int lastDocument = postings.documentAt(end - 1);
+        if (target > lastDocument) {
+            blockEnd = END;
+            return 0;
+        }
+
+        if (blocks == null) {
+            blockEnd = lastDocument;
+            return bound;
+        }
+
+        while (blocks.lastDocumentAt(block) < target)
+            block++;
+
+        blockEnd = blocks.lastDocumentAt(block);
+        return weight * blocks.scoreBoundAt(block) * (1 + margin);
+    }
+}
@@ -0,0 +1,160 @@
+package query;
+
+import indexer.Dictionary;
+import indexer.PostingList;
+import indexer.PostingReader;
+import indexer.Term;
+import util.Logger;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A byte budgeted cache of decoded posting lists, keyed by the pointer of their
+ * line in the inverted file (which identifies the line regardless of the case of the term).
+ *
+ * <p> The budget is split between two regions:
+ * <ul>
+ *     <li>a static region holding the lists of the terms with the highest document frequency,
+ *     it is populated once when the index is loaded and never evicts.</li>
+ *     <li>a dynamic region holding lists that were read by queries, it evicts the least
+ *     recently used list when it is full, and does not admit lists that would take more than
+ *     a quarter of it so a single long list cannot flush the whole region.</li>
+ * </ul>
+ * The memory used is accounted in bytes using {@link PostingList#sizeInBytes()}.
+ */
+final class PostingListCache {
+
+    // the part of the dynamic region a single list may take.
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    private final long byteBudget;
+
+    // the static region, read only once it is populated.
+    private final HashMap<Long, PostingList> hotLists;
+    private long hotBytes;
+
+    // the dynamic region in access order, the eldest list is the least recently used.
+    private final LinkedHashMap<Long, PostingList> recentLists;
+    private long recentBytes;
+
+    /**
+     * Creates an empty cache.
+     * @param byteBudget the number of bytes the cached lists may take, 0 disables the cache.
+     */
+    PostingListCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+        this.hotLists = new HashMap<>();
+        this.hotBytes = 0;
+        this.recentLists = new LinkedHashMap<>(16, 0.75f, true);
+        this.recentBytes = 0;
+    }
+
+    /**
+     * Populates the static region with the lists of the terms with the highest document frequency
+     * that fit in half of the byte budget. The size of a list is estimated from its document frequency
+     * before it is read, so a list that does not fit is skipped without reading it and the smaller
+     * lists after it may still fit. A line that cannot be read or decoded is skipped.
+     * @param dictionary the dictionary of the inverted file.
+     * @param reader reader of the inverted file.
+     * @param termCount the maximum number of lists to populate.
+     */
+    void populate(Dictionary dictionary, PostingReader reader, int termCount) {
+        // the dictionary may hold a line under different cases of its term, each line is taken once.
+        HashMap<Long, Term> lines = new HashMap<>();
+        for (Term term : dictionary.getTerms())
+            lines.merge(term.pointer, term, (a, b) -> a.termDocumentFrequency >= b.termDocumentFrequency ? a : b);
+
+        ArrayList<Term> terms = new ArrayList<>(lines.values());
+        terms.sort(Comparator.comparingInt((Term term) -> term.termDocumentFrequency).reversed());
+
+        long staticBudget = byteBudget / 2;
+        HashMap<Long, PostingList> populated = new HashMap<>();
+        long populatedBytes = 0;
+        for (Term term : terms.subList(0, Math.min(termCount, terms.size()))) {
+            if (populatedBytes + PostingList.sizeInBytes(term.term.length(), term.termDocumentFrequency) > staticBudget)
+                continue;
+
+            try {
+                // the estimate is checked against the decoded list in case the dictionary does not match the line.
+                PostingList postingList = PostingList.decode(reader.read(term));
+                if (populatedBytes + postingList.sizeInBytes() > staticBudget)
+                    continue;
+
+                populated.put(term.pointer, postingList);
+                populatedBytes += postingList.sizeInBytes();
+            } catch (IOException | RuntimeException e) {
+                Logger.getInstance().warn(e);
+            }
+        }
+
+        synchronized (this) {
+            hotLists.putAll(populated);
+            hotBytes += populatedBytes;
+            evict();
+        }
+    }
+
+    /**
+     * @param term a term from the dictionary of the inverted file.
+     * @return the decoded posting list of the term if it is cached.
+     */
+    synchronized Optional<PostingList> get(Term term) {
+        PostingList postingList = hotLists.get(term.pointer);
+        if (postingList == null)
+            postingList = recentLists.get(term.pointer);
+
+        return Optional.ofNullable(postingList);
+    }
+
+    /**
+     * @param term a term from the dictionary of the inverted file.
+     * @return true if the posting list of the term is cached.
+     */
+    synchronized boolean contains(Term term) {
+        return hotLists.containsKey(term.pointer) || recentLists.containsKey(term.pointer);
+    }
+
+    /**
+     * Offers a list that was read by a query to the dynamic region of the cache.
+     * @param term the term of the list.
+     * @param postingList the decoded posting list of the term.
+     */
+    synchronized void offer(Term term, PostingList postingList) {
+        long size = postingList.sizeInBytes();
+        if (size > (byteBudget - hotBytes) / MAX_ENTRY_FRACTION || hotLists.containsKey(term.pointer))
+            return;
+
+        PostingList previous = recentLists.put(term.pointer, postingList);
+        if (previous != null)
+            recentBytes -= previous.sizeInBytes();
+        recentBytes += size;
+        evict();
+    }
+
+    /**
+     * @return the number of bytes taken by the cached lists.
+     */
+    synchronized long sizeInBytes() {
+        return hotBytes + recentBytes;
+    }
+
+    /**
+     * Removes all the lists from the cache.
+     */
+    synchronized void clear() {
+        hotLists.clear();
+        recentLists.clear();
+        hotBytes = 0;
+        recentBytes = 0;
+    }
+
+    // evicts the least recently used lists of the dynamic region until the cache fits its budget.
+    private void evict() {
+        Iterator<PostingList> eldest = recentLists.values().iterator();
+        while (hotBytes + recentBytes > byteBudget && eldest.hasNext()) {
+            recentBytes -= eldest.next().sizeInBytes();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package query;
+
+import indexer.Dictionary;
+import indexer.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A query compiled against the dictionary, holds the terms of the query that
+ * have a posting line in the inverted file along with their weight in the query.
+ *
+ * <p> The plan is built once per query, so every dictionary lookup and every
+ * computation that does not depend on the document is done once per term and
+ * scoring a posting is left with only the document dependant arithmetic.
+ * The terms are ordered by their position in the inverted file and every posting line
+ * appears in the plan once, even if multiple query terms resolve to it.
+ */
+final class QueryPlan {
+
+    // terms of the plan ordered by their pointer to the inverted file.
+    private final Term[] terms;
+    // the number of documents every term appears in.
+    private final int[] documentFrequencies;
+    // the weight of every term in the query.
+    private final double[] weights;
+
+    // creates a plan of the given terms ordered by their pointer, plans are compiled from queries by compile.
+    QueryPlan(Term[] terms, int[] documentFrequencies, double[] weights) {
+        this.terms = terms;
+        this.documentFrequencies = documentFrequencies;
+        this.weights = weights;
+    }
+
+    /**
+     * Compiles the query into a plan.
+     * @param query the query to compile.
+     * @param dictionary the dictionary of the inverted file.
+     * @param ranker the ranker that will score the query, used to compute the term weights.
+     * @return plan of the query.
+     */
+    static QueryPlan compile(Query query, Dictionary dictionary, Ranker ranker) {
+        ArrayList<Term> resolved = new ArrayList<>(query.length());
+        for (Map.Entry<String, Integer> term : query) {
+            Optional<Term> res = dictionary.lookupTerm(term.getKey());
+            res.ifPresent(resolved::add);
+        }
+
+        // different query terms may share a posting line, only the first of them is kept.
+        resolved.sort(Comparator.comparingLong(term -> term.pointer));
+        ArrayList<Term> unique = new ArrayList<>(resolved.size());
+        for (Term term : resolved) {
+            if (unique.isEmpty() || unique.get(unique.size() - 1).pointer != term.pointer)
+                unique.add(term);
+        }
+
+        int size = unique.size();
+        Term[] terms = unique.toArray(new Term[size]);
+        int[] documentFrequencies = new int[size];
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            // the inverted file holds the terms in lower case.
+            String postingTerm = terms[i].term.toLowerCase();
+            documentFrequencies[i] = dictionary.lookupTerm(postingTerm)
+                    .map(term -> term.termDocumentFrequency).orElse(0);
+            weights[i] = ranker.termWeight(postingTerm, documentFrequencies[i]);
+        }
+
+        return new QueryPlan(terms, documentFrequencies, weights);
+    }
+
+    /**
+     * Limits the plan to the posting lines of its most important terms (the terms with the highest
+     * weight in the query) that fit in the given budgets, the line of the most important term is always kept.
+     * @param postingBudget the number of postings the lines of the plan may hold, 0 for no limit.
+     * @param byteBudget the number of bytes the lines of the plan may take in the inverted file, 0 for no limit.
+     * @return the limited plan, or this plan if all of its lines fit in the budgets.
+     */
+    QueryPlan limit(long postingBudget, long byteBudget) {
+        if (postingBudget <= 0 && byteBudget <= 0)
+            return this;
+
+        boolean[] isKept = new boolean[size()];
+        int count = 0;
+        long postings = 0;
+        long bytes = 0;
+        for (int index : byWeight()) {
+            boolean fits = (postingBudget <= 0 || postings + documentFrequencies[index] <= postingBudget)
+                    && (byteBudget <= 0 || bytes + terms[index].length <= byteBudget);
+            if (count == 0 || fits) {
+                isKept[index] = true;
+                count++;
+                postings += documentFrequencies[index];
+                bytes += terms[index].length;
+            }
+        }
+
+        return keep(isKept, count);
+    }
+
+    /**
+     * Reduces the plan to its most important terms, the terms with the highest estimated contribution to
+     * the score of a document, which is their weight in the query - the idf of the term multiplied by its
+     * frequency in the query (and by the weight of the part of the query it appears in).
+     * @param termBudget the number of terms to keep, 0 for no limit.
+     * @return the reduced plan, or this plan if it has no more terms than the budget.
+     */
+    QueryPlan reduce(int termBudget) {
+        if (termBudget <= 0 || size() <= termBudget)
+            return this;
+
+        boolean[] isKept = new boolean[size()];
+        Integer[] order = byWeight();
+        for (int i = 0; i < termBudget; i++)
+            isKept[order[i]] = true;
+
+        return keep(isKept, termBudget);
+    }
+
+    // the indices of the terms from the highest weight to the lowest, terms with equal weights stay in file order.
+    private Integer[] byWeight() {
+        Integer[] order = new Integer[size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (i, j) -> Double.compare(weights[j], weights[i]));
+        return order;
+    }
+
+    // the plan of the kept lines, or this plan if all the lines are kept.
+    private QueryPlan keep(boolean[] isKept, int count) {
+        if (count == size())
+            return this;
+
+        // the kept lines stay in the order of the inverted file.
+        Term[] keptTerms = new Term[count];
+        int[] keptFrequencies = new int[count];
+        double[] keptWeights = new double[count];
+        int kept = 0;
+        for (int i = 0; i < size(); i++) {
+            if (!isKept[i])
+                continue;
+
+            keptTerms[kept] = terms[i];
+            keptFrequencies[kept] = documentFrequencies[i];
+            keptWeights[kept] = weights[i];
+            kept++;
+        }
+
+        return new QueryPlan(keptTerms, keptFrequencies, keptWeights);
+    }
+
+    /**
+     * @return number of posting lines in the plan.
+     */
+    int size() {
+        return terms.length;
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()}.
+     * @return the dictionary term of the posting line at the given index.
+     */
+    Term termAt(int index) {
+        return terms[index];
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()}.
+     * @return the number of documents the term at the given index appears in.
+     */
+    int documentFrequencyAt(int index) {
+        return documentFrequencies[index];
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()}.
+     * @return the weight in the query of the term at the given index.
+     */
+    double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()}.
+     * @return upper bound of the score of the term at the given index in any document,
+     * negative if the index has no bound for the term.
+     */
+    double scoreBoundAt(int index) {
+        if (terms[index].scoreBound < 0)
+            return -1;
+
+        return weights[index] * terms[index].scoreBound;
+    }
+}
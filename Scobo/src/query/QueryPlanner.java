@@ -0,0 +1,260 @@
+package query;
+
+import indexer.PostingList;
+import indexer.Term;
+import util.Configuration;
+import util.TaskManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses how every query is evaluated, by estimating the time each strategy that can evaluate
+ * the query would take and choosing the cheapest.
+ *
+ * <p> The estimates are made from the lengths of the posting lines of the query as given by the
+ * dictionary (the number of postings and the bytes they take in the inverted file), whether the lines
+ * are cached, and the current load - the backlog of the IO threads delays the lines that must be read
+ * and only idle CPU threads can score a query in parallel (see {@link ParallelScorer}). The costs of
+ * reading, decoding and scoring are rough estimates taken from the configuration (the {@code Planner*} settings),
+ * every searcher logs the estimate of its plan next to the time the evaluation actually took so they can be
+ * checked and tuned for the machine the engine runs on.
+ *
+ * <p> The strategies are:
+ * <ul>
+ *     <li>a cache lookup, which is always made first since it costs next to nothing.</li>
+ *     <li>term at a time, every posting is scored but the lines are scored as soon as they arrive, so the
+ *     scoring overlaps the reading of the lines. Cheaper for short queries and queries whose lines must be read.</li>
+ *     <li>document at a time with pruning (WAND or MaxScore), only part of the postings are scored but the
+ *     scoring starts once all the lines arrive. Cheaper for long queries whose lines are cached.</li>
+ *     <li>score at a time on the impact ordered layout, used whenever it is configured since its ranking may
+ *     differ from that of the other strategies (see {@link ImpactEvaluator}).</li>
+ *     <li>batch, the lines of a batch of queries are read together in file order before the queries are
+ *     evaluated, chosen when it reads less than the queries would read separately (see {@link BatchSearcher}),
+ *     otherwise the queries of the batch read their own lines and are evaluated query by query.</li>
+ * </ul>
+ */
+final class QueryPlanner {
+
+    /**
+     * The evaluation strategies of a query.
+     */
+    enum Strategy {
+        CACHE_LOOKUP("cache lookup"),
+        TERM_AT_A_TIME("term at a time"),
+        WAND("document at a time with WAND"),
+        MAX_SCORE("document at a time with MaxScore"),
+        SCORE_AT_A_TIME("score at a time"),
+        BATCH("batch"),
+        QUERY_BY_QUERY("query by query");
+
+        private final String description;
+
+        Strategy(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * The strategy chosen for a query and its estimated cost.
+     */
+    static final class Choice {
+
+        final Strategy strategy;
+        final long estimatedNanos;
+        // the number of postings in the lines of the query.
+        final long postings;
+
+        Choice(Strategy strategy, long estimatedNanos, long postings) {
+            this.strategy = strategy;
+            this.estimatedNanos = estimatedNanos;
+            this.postings = postings;
+        }
+
+        /**
+         * @param actualNanos the time the evaluation took.
+         * @return a description of the choice and its estimate next to the actual time.
+         */
+        String describe(long actualNanos) {
+            return strategy + (postings > 0 ? " over " + postings + " postings" : "") + ", estimated "
+                    + millis(estimatedNanos) + " ms, took " + millis(actualNanos) + " ms";
+        }
+    }
+
+    private final PostingListCache postingCache;
+    private final int numDocuments;
+
+    // the estimated costs in nanoseconds, as configured when the planner was created.
+    // passing a line of a query through the IO threads, even if it is cached.
+    private final long fetchNanos;
+    // reading a line from the inverted file, apart from the bytes of the line.
+    private final long readNanos;
+    private final double readNanosPerByte;
+    private final double decodeNanosPerPosting;
+    // adding a posting to the score accumulator.
+    private final double termAtATimeNanosPerPosting;
+    // moving a document from the score accumulator to the ranking.
+    private final double collectNanosPerDocument;
+    // scoring a posting through the cursors of the pruning evaluators.
+    private final double documentAtATimeNanosPerPosting;
+    private final double scoreAtATimeNanosPerPosting;
+    // scoring a candidate of the semantic cascade in a single line.
+    private final double candidateNanosPerLine;
+    // the part of the postings of a query with more than one line the pruning evaluators score.
+    private final double prunedFraction;
+
+    /**
+     * Creates a planner with the costs of the configuration.
+     * @param postingCache the posting list cache of the query processor, cached lines are not read.
+     * @param numDocuments the number of documents in the index.
+     */
+    QueryPlanner(PostingListCache postingCache, int numDocuments) {
+        this.postingCache = postingCache;
+        this.numDocuments = numDocuments;
+
+        Configuration config = Configuration.getInstance();
+        this.fetchNanos = config.getPlannerFetchNanos();
+        this.readNanos = config.getPlannerReadNanos();
+        this.readNanosPerByte = config.getPlannerReadNanosPerByte();
+        this.decodeNanosPerPosting = config.getPlannerDecodeNanosPerPosting();
+        this.termAtATimeNanosPerPosting = config.getPlannerTermAtATimeNanosPerPosting();
+        this.collectNanosPerDocument = config.getPlannerCollectNanosPerDocument();
+        this.documentAtATimeNanosPerPosting = config.getPlannerDocumentAtATimeNanosPerPosting();
+        this.scoreAtATimeNanosPerPosting = config.getPlannerScoreAtATimeNanosPerPosting();
+        this.candidateNanosPerLine = config.getPlannerCandidateNanosPerLine();
+        this.prunedFraction = config.getPlannerPrunedFraction();
+    }
+
+    /**
+     * Chooses between evaluating the query term at a time and document at a time with pruning.
+     * @param plan the plan of the query.
+     * @param ranker the ranker of the query.
+     * @param resultSize the number of documents the query ranks.
+     * @param prefetched posting lists that were read for the query in advance, null if there are none.
+     * @return the cheapest strategy for the query.
+     */
+    Choice choose(QueryPlan plan, Ranker ranker, int resultSize, Map<Long, PostingList> prefetched) {
+        long postings = 0;
+        long maxPostings = 0;
+        double read = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            Term term = plan.termAt(i);
+            postings += plan.documentFrequencyAt(i);
+            maxPostings = Math.max(maxPostings, plan.documentFrequencyAt(i));
+            read += fetchNanos;
+            if (prefetched == null || !prefetched.containsKey(term.pointer))
+                read += readCost(term, plan.documentFrequencyAt(i));
+        }
+
+        double backlog = 1 + TaskManager.getInstance().getIOBacklog();
+        read *= backlog;
+        int ranges = ParallelScorer.rangesFor(plan);
+
+        // the lines are scored while the rest are read, unless they are scored in parallel once all of them arrive.
+        double scoring = postings * termAtATimeNanosPerPosting
+                + Math.min(postings, numDocuments) * collectNanosPerDocument;
+        double termAtATime = ranges > 1 ? read + scoring / ranges :
+                Math.max(read, scoring) + scoring / Math.max(1, plan.size());
+        Choice choice = new Choice(Strategy.TERM_AT_A_TIME, (long) termAtATime, postings);
+
+        Strategy pruned = plan.size() < MaxScoreEvaluator.LONG_QUERY_SIZE && WandEvaluator.canEvaluate(plan, ranker) ?
+                Strategy.WAND : MaxScoreEvaluator.canEvaluate(plan) ? Strategy.MAX_SCORE : null;
+        if (pruned != null) {
+            // no document can be skipped before the ranking fills, and a single line is scored in full.
+            double scored = plan.size() > 1 && resultSize < maxPostings ?
+                    Math.max(resultSize, postings * prunedFraction) : postings;
+            // WAND reads the block maxima of every line as well.
+            double blockMax = pruned == Strategy.WAND ? plan.size() * readNanos * backlog : 0;
+            double documentAtATime = read + blockMax + scored * documentAtATimeNanosPerPosting / ranges;
+            if (documentAtATime < termAtATime)
+                choice = new Choice(pruned, (long) documentAtATime, postings);
+        }
+
+        return choice;
+    }
+
+    /**
+     * Estimates the cost of the semantic cascade of a query, whose candidates are chosen by the given choice.
+     * @param candidateChoice the choice of the plan the candidates are ranked by.
+     * @param plan the plan of the expanded query the candidates are scored by.
+     * @param candidates the number of candidates.
+     * @return the choice of the candidates with the cost of scoring them added.
+     */
+    Choice cascade(Choice candidateChoice, QueryPlan plan, int candidates) {
+        double scoring = (double) candidates * plan.size() * candidateNanosPerLine;
+        return new Choice(candidateChoice.strategy, candidateChoice.estimatedNanos + (long) scoring,
+                candidateChoice.postings);
+    }
+
+    /**
+     * Estimates the cost of evaluating the query score at a time on the impact ordered layout.
+     * @param plan the plan of the query.
+     * @param postingBudget the number of postings the query may score, 0 for no limit.
+     * @return the score at a time choice.
+     */
+    Choice scoreAtATime(QueryPlan plan, long postingBudget) {
+        long postings = 0;
+        for (int i = 0; i < plan.size(); i++)
+            postings += plan.documentFrequencyAt(i);
+
+        long scored = postingBudget > 0 ? Math.min(postings, postingBudget) : postings;
+        double read = plan.size() * readNanos * (1 + TaskManager.getInstance().getIOBacklog());
+        double cost = read + scored * (decodeNanosPerPosting + scoreAtATimeNanosPerPosting)
+                + Math.min(scored, numDocuments) * collectNanosPerDocument;
+        return new Choice(Strategy.SCORE_AT_A_TIME, (long) cost, postings);
+    }
+
+    /**
+     * Chooses whether the lines of a batch of queries are read together, or each query reads its own lines.
+     * @param plans the plans of the queries of the batch that use posting lines.
+     * @param reads the lines the batch would read, grouped by the reads they are read with.
+     * @return a batch choice with the cost of reading the lines together if it is cheaper, or
+     * a query by query choice with the cost of reading the lines separately if it is not.
+     */
+    Choice batch(List<QueryPlan> plans, List<List<Term>> reads) {
+        long postings = 0;
+        double separate = 0;
+        // the document frequency of every line as the plans count it, the lines are decoded by it like in choose.
+        HashMap<Long, Integer> documentFrequencies = new HashMap<>();
+        for (QueryPlan plan : plans) {
+            // a line shared by queries of the batch is read by each of them, since they read their lines at the same time.
+            for (int i = 0; i < plan.size(); i++) {
+                postings += plan.documentFrequencyAt(i);
+                separate += readCost(plan.termAt(i), plan.documentFrequencyAt(i));
+                documentFrequencies.merge(plan.termAt(i).pointer, plan.documentFrequencyAt(i), Math::max);
+            }
+        }
+
+        double together = 0;
+        for (List<Term> read : reads) {
+            Term first = read.get(0);
+            Term last = read.get(read.size() - 1);
+            together += readNanos + (last.pointer + last.length - first.pointer) * readNanosPerByte;
+            for (Term term : read)
+                together += documentFrequencies.getOrDefault(term.pointer, term.termDocumentFrequency) * decodeNanosPerPosting;
+        }
+
+        double backlog = 1 + TaskManager.getInstance().getIOBacklog();
+        return together <= separate ? new Choice(Strategy.BATCH, (long) (together * backlog), postings) :
+                new Choice(Strategy.QUERY_BY_QUERY, (long) (separate * backlog), postings);
+    }
+
+    // the cost of reading and decoding the line of the term with the given document frequency, 0 if it is cached.
+    private double readCost(Term term, int documentFrequency) {
+        if (postingCache.contains(term))
+            return 0;
+
+        return readNanos + term.length * readNanosPerByte + documentFrequency * decodeNanosPerPosting;
+    }
+
+    // nanoseconds as milliseconds with two decimal places.
+    private static String millis(long nanos) {
+        return String.valueOf(Math.round(nanos / 10_000.0) / 100.0);
+    }
+}
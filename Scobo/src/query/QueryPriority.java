@@ -0,0 +1,27 @@
+package query;
+
+import util.TaskManager;
+
+/**
+ * The class of a query request, determines the priority the work of the request is scheduled with
+ * on the executors that are shared by all the requests (and by the indexer).
+ */
+public enum QueryPriority {
+
+    /**
+     * queries a user is waiting on, their work is scheduled ahead of any other work.
+     */
+    INTERACTIVE(TaskManager.TaskPriority.INTERACTIVE),
+
+    /**
+     * bulk queries such as query files, their work is scheduled behind any other work,
+     * though it rises in priority while it waits so it is never starved.
+     */
+    BATCH(TaskManager.TaskPriority.LOW);
+
+    final TaskManager.TaskPriority taskPriority;
+
+    QueryPriority(TaskManager.TaskPriority taskPriority) {
+        this.taskPriority = taskPriority;
+    }
+}
@@ -2,34 +2,51 @@ package query;
 
 import indexer.Dictionary;
 import indexer.DocumentMap;
-import parser.Document;
+import indexer.PostingReader;
 import parser.Parser;
 import util.*;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Manages the querying process, may only process one request at a time,
- * though a request may consist of multiple queries.
+ * Manages the querying process, a request may consist of multiple queries.
+ *
+ * <p> The query processor is thread safe, every request is processed with its own
+ * {@link QueryRequest} so many threads may make requests at the same time against
+ * the same loaded dictionary and document map, and their queries are searched concurrently.
+ * The number of requests processed at the same time is limited by an {@link AdmissionController},
+ * requests beyond the limit wait in a bounded queue and requests that do not fit in it are rejected
+ * with an overloaded result (see {@link QueryResult#isOverloaded()}).
+ * Requests are {@link QueryPriority#INTERACTIVE} unless they are batches or are made with another priority.
+ * How every query is evaluated is chosen by a {@link QueryPlanner}.
  */
-public class QueryProcessor implements Parser.Consumer {
+public class QueryProcessor {
 
-    private String indexPath;
+    /**
+     * the number of documents returned for each query when no result size is requested.
+     */
+    public static final int DEFAULT_RESULT_SIZE = 50;
+
+    String indexPath;
 
     Dictionary dictionary;
     DocumentMap documentMap;
+    PostingReader postingReader;
+    ScoreAccumulator.Pool accumulators;
+    ResultCache resultCache;
+    PostingListCache postingCache;
+    AdmissionController admission;
+    QueryPlanner planner;
 
     HashMap<String, String[]> gloSim;
+    // the stop words are loaded once and shared by the parsers of all the requests.
+    Set<String> stopWords;
 
-    QueryResult currentResult;
-
-    TaskGroup searchTasks;
+    TaskGroup fetchTasks;
 
     /**
      * Initializes the query processor with the given dictionary and document map,
@@ -42,9 +59,82 @@ public class QueryProcessor implements Parser.Consumer {
         this.indexPath = indexPath;
         this.dictionary = dictionary;
         this.documentMap = documentMap;
-        searchTasks = TaskManager.getTaskGroup(TaskManager.TaskType.COMPUTE);
+        accumulators = new ScoreAccumulator.Pool(documentMap.size());
+        Configuration config = Configuration.getInstance();
+        resultCache = new ResultCache(config.getResultCacheSize());
+        admission = new AdmissionController(config.getMaxConcurrentQueries(), config.getMaxQueuedQueries());
+        fetchTasks = TaskManager.getTaskGroup(TaskManager.TaskType.IO, TaskManager.TaskPriority.HIGH);
 
+        openInvertedFile();
+        populatePostingCache();
+        planner = new QueryPlanner(postingCache, documentMap.size());
         loadGloSim();
+        stopWords = Parser.loadStopWords(indexPath);
+    }
+
+    // opens the posting reader that is shared by all the searchers.
+    private void openInvertedFile() {
+        try {
+            Configuration config = Configuration.getInstance();
+            postingReader = new PostingReader(config.getInvertedFilePath(), config.getBlockMaxPath(), config.getImpactPath());
+        } catch (IOException e) {
+            Logger.getInstance().error(e);
+        }
+    }
+
+    // creates the posting list cache and populates it with the lists of the most frequent terms in the background.
+    private void populatePostingCache() {
+        Configuration config = Configuration.getInstance();
+        postingCache = new PostingListCache(config.getPostingCacheBytes());
+        if (postingReader == null || config.getPostingCacheBytes() <= 0)
+            return;
+
+        fetchTasks.add(() -> {
+            try {
+                postingCache.populate(dictionary, postingReader, config.getPostingCacheHotTerms());
+            } finally {
+                fetchTasks.complete();
+            }
+        });
+    }
+
+    /**
+     * Releases the inverted file and the cached results and posting lists held by the query processor,
+     * after this method is called the query processor can no longer process queries, so it should
+     * only be called once no request is in progress.
+     */
+    public void close() {
+        resultCache.clear();
+        // wait for posting lists that are still being fetched before closing the file.
+        fetchTasks.awaitCompletion();
+        postingCache.clear();
+        try {
+            if (postingReader != null)
+                postingReader.close();
+        } catch (IOException e) {
+            Logger.getInstance().warn(e);
+        }
+    }
+
+    /**
+     * @return the number of queries whose result was found in the result cache.
+     */
+    public long getCacheHits() {
+        return resultCache.getHits();
+    }
+
+    /**
+     * @return the number of queries whose result was not found in the result cache.
+     */
+    public long getCacheMisses() {
+        return resultCache.getMisses();
+    }
+
+    /**
+     * @return the number of requests that were rejected because the query processor was overloaded.
+     */
+    public long getRejectedRequests() {
+        return admission.getRejected();
     }
 
     // loads the similarity vectors.
@@ -70,13 +160,22 @@ public class QueryProcessor implements Parser.Consumer {
      * @return QueryResult containing the results for all the queries.
      */
     public QueryResult query(String... queries) {
-        currentResult = new QueryResult(queries);
-        searchTasks.openGroup();
-        Parser parser = new Parser(indexPath, this, () -> asDocuments(queries));
-        parser.start();
+        return query(DEFAULT_RESULT_SIZE, queries);
+    }
 
-        searchTasks.awaitCompletion();
-        return currentResult;
+    /**
+     * Request for a group of queries to be processed, where the queries may be any
+     * free text, the query result can later be used to see the resultSize documents most
+     * similar to each of the queries. The queries of the request are planned together, their posting
+     * lines are read together like those of {@link #queryBatch(Pair[], int)} if that reads less.
+     * @param resultSize the number of documents to return for each query.
+     * @param queries set of queries to be processed.
+     * @return QueryResult containing the results for all the queries.
+     */
+    public QueryResult query(int resultSize, String... queries) {
+        QueryRequest request = new QueryRequest(this, new QueryResult(queries), resultSize, queries.length > 1, 0,
+                QueryPriority.INTERACTIVE, Configuration.getInstance().getQueryTermBudget());
+        return submit(request, () -> asDocuments(queries)).join();
     }
 
     /**
@@ -87,32 +186,163 @@ public class QueryProcessor implements Parser.Consumer {
      * @return QueryResult containing the results for all the queries.
      */
     public QueryResult query(Pair<Integer, String>[] queries) {
-        currentResult = new QueryResult(queries);
-        searchTasks.openGroup();
-        Parser parser = new Parser(indexPath, this, () -> asDocuments(queries));
-        parser.start();
+        return query(queries, DEFAULT_RESULT_SIZE);
+    }
+
+    /**
+     * Request for a group of queries to be processed, where the queries may be any
+     * free text, but are provided with a query id, the query result can later be used to see the
+     * resultSize documents most similar to each of the queries. The queries of the request are planned together,
+     * their posting lines are read together like those of {@link #queryBatch(Pair[], int)} if that reads less.
+     * @param queries set of queries to be processed.
+     * @param resultSize the number of documents to return for each query.
+     * @return QueryResult containing the results for all the queries.
+     */
+    public QueryResult query(Pair<Integer, String>[] queries, int resultSize) {
+        QueryRequest request = new QueryRequest(this, new QueryResult(queries), resultSize, queries.length > 1, 0,
+                QueryPriority.INTERACTIVE, Configuration.getInstance().getQueryTermBudget());
+        return submit(request, () -> asDocuments(queries)).join();
+    }
 
-        searchTasks.awaitCompletion();
-        return currentResult;
+    /**
+     * Request for a group of queries to be processed without blocking, where the queries may be any
+     * free text. If the results are not ready within the given timeout the searching of the queries is
+     * cancelled, including the posting lines that are still being fetched and the documents that are
+     * still being scored, and the queries are ranked from the documents scored so far
+     * (see {@link QueryResult#isPartial(int)}).
+     * @param resultSize the number of documents to return for each query.
+     * @param timeout the time in milliseconds the request may take, 0 for no deadline.
+     * @param queries set of queries to be processed.
+     * @return a future of the QueryResult containing the results for all the queries.
+     */
+    public CompletableFuture<QueryResult> queryAsync(int resultSize, long timeout, String... queries) {
+        return queryAsync(resultSize, timeout, QueryPriority.INTERACTIVE, queries);
     }
 
     /**
-     * initiates search using the given query.
-     * @param document document representing a query.
+     * Same as {@link #queryAsync(int, long, String...)} where the work of the request
+     * is scheduled with the given priority.
+     * @param resultSize the number of documents to return for each query.
+     * @param timeout the time in milliseconds the request may take, 0 for no deadline.
+     * @param priority the priority of the request.
+     * @param queries set of queries to be processed.
+     * @return a future of the QueryResult containing the results for all the queries.
      */
-    @Override
-    public void consume(Document document) {
-        if (document.length > 0)
-            searchTasks.add(new Searcher(new Query(document), this));
+    public CompletableFuture<QueryResult> queryAsync(int resultSize, long timeout, QueryPriority priority,
+                                                     String... queries) {
+        return queryAsync(resultSize, timeout, priority, Configuration.getInstance().getQueryTermBudget(), queries);
     }
 
     /**
-     * notifies the query processor that parsing of the queries is complete
-     * and no new consume calls will be made.
+     * Same as {@link #queryAsync(int, long, QueryPriority, String...)} where every query with more than
+     * termBudget terms is reduced to its termBudget terms with the highest estimated contribution
+     * (idf multiplied by the frequency in the query), the dropped terms are reported in the
+     * result (see {@link QueryResult#droppedTermsOf(int)}).
+     * @param resultSize the number of documents to return for each query.
+     * @param timeout the time in milliseconds the request may take, 0 for no deadline.
+     * @param priority the priority of the request.
+     * @param termBudget the number of terms a query is reduced to, 0 for no limit.
+     * @param queries set of queries to be processed.
+     * @return a future of the QueryResult containing the results for all the queries.
+     */
+    public CompletableFuture<QueryResult> queryAsync(int resultSize, long timeout, QueryPriority priority,
+                                                     int termBudget, String... queries) {
+        QueryRequest request = new QueryRequest(this, new QueryResult(queries), resultSize, false, timeout,
+                priority, termBudget);
+        return submit(request, () -> asDocuments(queries));
+    }
+
+    /**
+     * Request for a group of queries to be processed without blocking, where the queries may be any
+     * free text, but are provided with a query id. If the results are not ready within the given timeout
+     * the searching of the queries is cancelled, including the posting lines that are still being fetched
+     * and the documents that are still being scored, and the queries are ranked from the documents scored
+     * so far (see {@link QueryResult#isPartial(int)}).
+     * @param queries set of queries to be processed.
+     * @param resultSize the number of documents to return for each query.
+     * @param timeout the time in milliseconds the request may take, 0 for no deadline.
+     * @return a future of the QueryResult containing the results for all the queries.
      */
-    @Override
-    public void onFinishParser() {
-        searchTasks.closeGroup();
+    public CompletableFuture<QueryResult> queryAsync(Pair<Integer, String>[] queries, int resultSize, long timeout) {
+        return queryAsync(queries, resultSize, timeout, QueryPriority.INTERACTIVE);
+    }
+
+    /**
+     * Same as {@link #queryAsync(Pair[], int, long)} where the work of the request
+     * is scheduled with the given priority.
+     * @param queries set of queries to be processed.
+     * @param resultSize the number of documents to return for each query.
+     * @param timeout the time in milliseconds the request may take, 0 for no deadline.
+     * @param priority the priority of the request.
+     * @return a future of the QueryResult containing the results for all the queries.
+     */
+    public CompletableFuture<QueryResult> queryAsync(Pair<Integer, String>[] queries, int resultSize, long timeout,
+                                                     QueryPriority priority) {
+        QueryRequest request = new QueryRequest(this, new QueryResult(queries), resultSize, false, timeout,
+                priority, Configuration.getInstance().getQueryTermBudget());
+        return submit(request, () -> asDocuments(queries));
+    }
+
+    /**
+     * Request for a batch of queries to be processed together, where the queries may be any
+     * free text, but are provided with a query id. The posting lines of all the queries are read once in
+     * the order of the inverted file and are shared by the queries (see {@link BatchSearcher}), which is much
+     * cheaper for large batches such as query files, unless the planner estimates that reading them query by
+     * query is cheaper. The work of the batch is scheduled as {@link QueryPriority#BATCH} work, behind the interactive requests.
+     * @param queries set of queries to be processed.
+     * @param resultSize the number of documents to return for each query.
+     * @return QueryResult containing the results for all the queries.
+     */
+    public QueryResult queryBatch(Pair<Integer, String>[] queries, int resultSize) {
+        return queryBatch(queries, resultSize, Configuration.getInstance().getQueryTermBudget());
+    }
+
+    /**
+     * Same as {@link #queryBatch(Pair[], int)} where every query with more than termBudget terms is reduced
+     * to its termBudget terms with the highest estimated contribution (idf multiplied by the frequency in the query),
+     * which bounds the posting lines long queries (such as the narratives of query files) read.
+     * The dropped terms are reported in the result (see {@link QueryResult#droppedTermsOf(int)}).
+     * @param queries set of queries to be processed.
+     * @param resultSize the number of documents to return for each query.
+     * @param termBudget the number of terms a query is reduced to, 0 for no limit.
+     * @return QueryResult containing the results for all the queries.
+     */
+    public QueryResult queryBatch(Pair<Integer, String>[] queries, int resultSize, int termBudget) {
+        QueryRequest request = new QueryRequest(this, new QueryResult(queries), resultSize, true, 0,
+                QueryPriority.BATCH, termBudget);
+        return submit(request, () -> asDocuments(queries)).join();
+    }
+
+    // processes the request once the admission controller admits it, if the request
+    // is rejected its result is marked as overloaded and returned immediately.
+    // the deadline of the request is armed before it is admitted, so it bounds the time the request waits in the queue.
+    // the request holds its admission until its work is done, even if its deadline completed the future before.
+    private CompletableFuture<QueryResult> submit(QueryRequest request, Parser.DocumentProvider provider) {
+        CompletableFuture<QueryResult> future = new CompletableFuture<>();
+        request.armDeadline(future);
+        boolean isAdmitted = admission.admit(() -> {
+            try {
+                request.processAsync(provider).whenComplete((result, error) -> {
+                    if (error != null)
+                        future.completeExceptionally(error);
+                    else
+                        future.complete(result);
+
+                    admission.release();
+                });
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                admission.release();
+            }
+        });
+
+        if (!isAdmitted) {
+            Logger.getInstance().warn("the query processor is overloaded, a request was rejected");
+            request.result.markOverloaded();
+            future.complete(request.result);
+        }
+
+        return future;
     }
 
     // creates queries that fit the format our parser expects from the given free text queries.
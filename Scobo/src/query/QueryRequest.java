@@ -0,0 +1,167 @@
+package query;
+
+import parser.Document;
+import parser.Parser;
+import util.Configuration;
+import util.TaskGroup;
+import util.TaskManager;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The state of a single request made to a {@link QueryProcessor}.
+ *
+ * <p> Every request has its own result, result size and group of search tasks, and is the
+ * consumer of the parser that parses its queries, so requests made by different threads at
+ * the same time never share mutable state. Everything the requests do share (the dictionary,
+ * the document map, the posting reader and the caches) is either read only or thread safe.
+ *
+ * <p> A request may have a deadline, once it passes the searchers of the request stop fetching
+ * posting lines and scoring documents and rank the documents they scored so far (see {@link #isExpired()}).
+ * A timer armed by {@link #armDeadline(CompletableFuture)} completes the future of the request at the
+ * deadline, so the request does not take longer than its deadline even while it waits to be admitted,
+ * its queries are parsed or its searchers wait for posting lines.
+ */
+final class QueryRequest implements Parser.Consumer {
+
+    final QueryProcessor processor;
+    final QueryResult result;
+    final int resultSize;
+    final TaskGroup searchTasks;
+    final TaskManager.TaskPriority priority;
+    final int termBudget;
+
+    // the queries of the request if it is a batch, null otherwise.
+    private final Queue<Query> batch;
+
+    // the time (as given by System.nanoTime()) the request expires at, only used if hasDeadline is true.
+    private final long deadline;
+    private final boolean hasDeadline;
+    // set once the deadline timer fires.
+    private volatile boolean isCancelled;
+
+    /**
+     * Creates a request without a deadline and with the configured term budget, a batch request is a
+     * {@link QueryPriority#BATCH} request and any other request is an {@link QueryPriority#INTERACTIVE} request.
+     * @param processor the query processor that processes the request.
+     * @param result the result the searchers of the request will update.
+     * @param resultSize the number of documents to return for each query.
+     * @param isBatch true if the queries of the request should be searched together by a {@link BatchSearcher}.
+     */
+    QueryRequest(QueryProcessor processor, QueryResult result, int resultSize, boolean isBatch) {
+        this(processor, result, resultSize, isBatch, 0, isBatch ? QueryPriority.BATCH : QueryPriority.INTERACTIVE,
+                Configuration.getInstance().getQueryTermBudget());
+    }
+
+    /**
+     * Creates a request.
+     * @param processor the query processor that processes the request.
+     * @param result the result the searchers of the request will update.
+     * @param resultSize the number of documents to return for each query.
+     * @param isBatch true if the queries of the request should be searched together by a {@link BatchSearcher}.
+     * @param timeout the time in milliseconds from now after which the request expires, 0 for no deadline.
+     * @param priority the priority the work of the request is scheduled with.
+     * @param termBudget the number of terms every query of the request is reduced to, 0 for no limit.
+     */
+    QueryRequest(QueryProcessor processor, QueryResult result, int resultSize, boolean isBatch, long timeout,
+                 QueryPriority priority, int termBudget) {
+        this.processor = processor;
+        this.result = result;
+        this.resultSize = resultSize;
+        this.priority = priority.taskPriority;
+        this.termBudget = termBudget;
+        this.searchTasks = TaskManager.getTaskGroup(TaskManager.TaskType.COMPUTE, this.priority);
+        this.batch = isBatch ? new ConcurrentLinkedQueue<>() : null;
+        this.hasDeadline = timeout > 0;
+        this.deadline = System.nanoTime() + timeout * 1_000_000;
+    }
+
+    /**
+     * @return true if the request has a deadline and it has passed, the work of an expired
+     * request is cancelled and its queries are ranked from the documents scored so far.
+     */
+    boolean isExpired() {
+        return isCancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * @return the time in nanoseconds left until the deadline of the request, 0 if it passed
+     * and {@code Long.MAX_VALUE} if the request has no deadline.
+     */
+    long remainingNanos() {
+        if (isCancelled)
+            return 0;
+        if (!hasDeadline)
+            return Long.MAX_VALUE;
+
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Arms a timer that cancels the request at its deadline and completes the given future with a
+     * snapshot of the result, where the queries that were not ranked yet are marked as partial
+     * (see {@link QueryResult#isPartial(int)}). The timer is disarmed once the future completes,
+     * nothing is armed if the request has no deadline.
+     * @param future the future of the result of the request.
+     */
+    void armDeadline(CompletableFuture<QueryResult> future) {
+        if (!hasDeadline)
+            return;
+
+        long delay = Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+        ScheduledFuture<?> timer = TaskManager.getInstance().schedule(() -> {
+            isCancelled = true;
+            future.complete(result.snapshot());
+        }, delay);
+        future.whenComplete((done, error) -> timer.cancel(false));
+    }
+
+    /**
+     * Parses the given queries and searches them without blocking.
+     * @param provider provides the queries of the request in the format the parser expects.
+     * @return a future of the result of the request that is completed once the result of every query is ready.
+     */
+    CompletableFuture<QueryResult> processAsync(Parser.DocumentProvider provider) {
+        searchTasks.openGroup();
+        CompletableFuture<QueryResult> future = searchTasks.onCompletion().thenApply(done -> result);
+        Parser parser = new Parser(processor.stopWords, this, provider, priority);
+        parser.start();
+
+        return future;
+    }
+
+    /**
+     * initiates search using the given query, if the request
+     * is a batch the query is added to the batch instead.
+     * @param document document representing a query.
+     */
+    @Override
+    public void consume(Document document) {
+        // a query without terms has an empty ranking.
+        if (document.length == 0) {
+            result.updateResult(new Query(document).id, new int[0], new double[0]);
+            return;
+        }
+
+        if (batch != null)
+            batch.add(new Query(document));
+        else
+            searchTasks.add(new Searcher(new Query(document), this));
+    }
+
+    /**
+     * notifies the request that parsing of the queries is complete
+     * and no new consume calls will be made, if the request is a batch
+     * this is when the batch is searched.
+     */
+    @Override
+    public void onFinishParser() {
+        if (batch != null)
+            searchTasks.add(new BatchSearcher(batch, this));
+
+        searchTasks.closeGroup();
+    }
+}
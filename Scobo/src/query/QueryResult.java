@@ -14,24 +14,125 @@ import java.util.function.Consumer;
 public class QueryResult implements Iterable<Map.Entry<Integer, int[]>> {
 
     ConcurrentHashMap<Integer, int[]> results;
+    ConcurrentHashMap<Integer, double[]> scores;
+    // ids of the queries whose ranking is partial.
+    Set<Integer> partial;
+    // ids of the queries that were ranked.
+    Set<Integer> ranked;
+    // the terms that were dropped from the queries that were reduced to their term budget, by queryID.
+    ConcurrentHashMap<Integer, String[]> dropped;
+    // true if the request was rejected because the query processor was overloaded.
+    private volatile boolean overloaded;
 
     // constructs query result from free text queries.
     QueryResult(String... queries) {
         results = new ConcurrentHashMap<>(queries.length);
-        for (String query : queries)
+        scores = new ConcurrentHashMap<>(queries.length);
+        for (String query : queries) {
             results.put(query.hashCode(), new int[0]);
+            scores.put(query.hashCode(), new double[0]);
+        }
+        partial = ConcurrentHashMap.newKeySet();
+        ranked = ConcurrentHashMap.newKeySet();
+        dropped = new ConcurrentHashMap<>();
     }
 
     // constructs query result from structured queries.
     QueryResult(Pair<Integer, String>[] queries) {
         results = new ConcurrentHashMap<>(queries.length);
-        for (Pair<Integer, String> query : queries)
+        scores = new ConcurrentHashMap<>(queries.length);
+        for (Pair<Integer, String> query : queries) {
             results.put(query.first, new int[0]);
+            scores.put(query.first, new double[0]);
+        }
+        partial = ConcurrentHashMap.newKeySet();
+        ranked = ConcurrentHashMap.newKeySet();
+        dropped = new ConcurrentHashMap<>();
     }
 
-    // sets the result for the given queryID.
-    void updateResult(int queryID, int[] ranking) {
+    // constructs a copy of the given result.
+    private QueryResult(QueryResult other) {
+        results = new ConcurrentHashMap<>(other.results);
+        scores = new ConcurrentHashMap<>(other.scores);
+        partial = ConcurrentHashMap.newKeySet();
+        partial.addAll(other.partial);
+        ranked = ConcurrentHashMap.newKeySet();
+        ranked.addAll(other.ranked);
+        dropped = new ConcurrentHashMap<>(other.dropped);
+        overloaded = other.overloaded;
+    }
+
+    // sets the result and the scores of the ranked documents for the given queryID.
+    synchronized void updateResult(int queryID, int[] ranking, double[] rankingScores) {
+        this.scores.put(queryID, rankingScores);
         this.results.put(queryID, ranking);
+        this.ranked.add(queryID);
+    }
+
+    // a copy of the result as it is now, where the queries that were not ranked yet are marked as partial.
+    // used to return the result of a request whose deadline passed while some of its queries are still searched.
+    synchronized QueryResult snapshot() {
+        QueryResult snapshot = new QueryResult(this);
+        for (Integer queryID : results.keySet()) {
+            if (!snapshot.ranked.contains(queryID))
+                snapshot.partial.add(queryID);
+        }
+
+        return snapshot;
+    }
+
+    // marks the ranking of the given queryID as partial.
+    void markPartial(int queryID) {
+        partial.add(queryID);
+    }
+
+    /**
+     * @return true if the ranking of the given queryID is partial, that is if the query ran out
+     * of its deadline or budget, or some of its posting lines could not be read.
+     */
+    public boolean isPartial(int queryID) {
+        return partial.contains(queryID);
+    }
+
+    /**
+     * @return true if the ranking of any of the queries is partial.
+     */
+    public boolean isPartial() {
+        return !partial.isEmpty();
+    }
+
+    // sets the terms that were dropped from the given queryID when it was reduced to its term budget.
+    void setDroppedTerms(int queryID, String[] terms) {
+        dropped.put(queryID, terms);
+    }
+
+    /**
+     * @return the terms that were dropped from the given query when it was reduced to its term budget,
+     * an empty array if the query was not reduced.
+     */
+    public String[] droppedTermsOf(String query) {
+        return droppedTermsOf(query.hashCode());
+    }
+
+    /**
+     * @return the terms that were dropped from the given queryID when it was reduced to its term budget,
+     * an empty array if the query was not reduced.
+     */
+    public String[] droppedTermsOf(int queryID) {
+        return dropped.getOrDefault(queryID, new String[0]);
+    }
+
+    // marks the result as the result of a request that was rejected.
+    void markOverloaded() {
+        overloaded = true;
+    }
+
+    /**
+     * @return true if the request was rejected because the query processor was overloaded,
+     * in which case none of the queries were searched and all the rankings are empty.
+     */
+    public boolean isOverloaded() {
+        return overloaded;
     }
 
     /**
@@ -48,6 +149,22 @@ public class QueryResult implements Iterable<Map.Entry<Integer, int[]>> {
         return Optional.ofNullable(results.get(queryID));
     }
 
+    /**
+     * @return the scores of the documents in the ranking for the given query if it exists,
+     * the score at index i is the score of the document at index i of the ranking.
+     */
+    public Optional<double[]> scoresOf(String query) {
+        return Optional.ofNullable(scores.get(query.hashCode()));
+    }
+
+    /**
+     * @return the scores of the documents in the ranking for the given queryID if it exists,
+     * the score at index i is the score of the document at index i of the ranking.
+     */
+    public Optional<double[]> scoresOf(int queryID) {
+        return Optional.ofNullable(scores.get(queryID));
+    }
+
     /**
      * @return one of the available results, if only one is available
      * it will be returned.
@@ -1,11 +1,8 @@
 package query;
 
-import indexer.DocumentMap.DocumentMapping;
+import indexer.PostingList;
 import indexer.Term;
 import util.Configuration;
-import util.Pair;
-
-import java.util.*;
 
 /**
  * This class calculates the similarity between a query and documents
@@ -13,30 +10,100 @@ import java.util.*;
  */
 abstract class Ranker {
 
-    private static final int QUERY_RESULT_SIZE = 50;
-
     protected Query query;
     protected QueryProcessor manager;
-    // the queue contains <docID, similarity> mappings
-    private PriorityQueue<Pair<Integer, Double>> ranking;
+    // collects the documents with the highest similarity.
+    private TopKCollector ranking;
+    private final int resultSize;
+
+    // bm25 constants.
+    protected final double k;
+    protected final double b;
+
+    // column of k * (1 - b + b * (length / avgDocLength)) for each document.
+    protected final double[] lengthNormalization;
+    protected final double numDocuments;
 
-    // constructs a ranker for a given query and QueryProcessor.
-    private Ranker(Query query, QueryProcessor manager) {
+    // constructs a ranker with the given bm25 constants for a given query and QueryProcessor,
+    // the ranker will rank the top resultSize documents.
+    private Ranker(Query query, QueryProcessor manager, int resultSize, double k, double b) {
+        this(query, manager, resultSize, k, b, manager.documentMap.getLengthNormalization(k, b));
+    }
+
+    // constructs a ranker that scores the documents with the given length normalization column,
+    // the number of documents is the length of the column.
+    Ranker(Query query, QueryProcessor manager, int resultSize, double k, double b, double[] lengthNormalization) {
         this.query = query;
         this.manager = manager;
-        ranking = new PriorityQueue<>(QUERY_RESULT_SIZE,
-                Comparator.comparingDouble(doc -> doc.second));
+        this.k = k;
+        this.b = b;
+        this.lengthNormalization = lengthNormalization;
+        numDocuments = lengthNormalization.length;
+        this.resultSize = resultSize;
+        ranking = new TopKCollector(resultSize);
+    }
+
+    // constructs a ranker that scores like the given ranker but has its own ranking.
+    private Ranker(Ranker whole) {
+        this.query = whole.query;
+        this.manager = whole.manager;
+        this.k = whole.k;
+        this.b = whole.b;
+        this.lengthNormalization = whole.lengthNormalization;
+        this.numDocuments = whole.numDocuments;
+        this.resultSize = whole.resultSize;
+        ranking = new TopKCollector(resultSize);
+    }
+
+    /**
+     * @return a ranker that scores documents like this ranker but has its own ranking, used to rank
+     * part of the documents of the query on another thread, its ranking is added to the ranking of this
+     * ranker using {@link #merge(Ranker)}.
+     */
+    abstract Ranker part();
+
+    /**
+     * Adds the ranked documents of another ranker of the query to the ranking, such as a part of
+     * this ranker (see {@link #part()}), the rankers may be merged in any order.
+     * @param other a ranker of the same query that finished ranking.
+     */
+    void merge(Ranker other) {
+        int[] documents = other.getRanking();
+        double[] scores = other.getScores();
+        for (int i = 0; i < documents.length; i++)
+            updateRanking(documents[i], scores[i]);
     }
 
     // updates the ranking for a given docID that has the given similarity.
     protected void updateRanking(int docID, double sim) {
-        if (ranking.size() >= QUERY_RESULT_SIZE) {
-            Pair<Integer, Double> minDoc = ranking.peek();
-            if (sim <= minDoc.second) return;
-            ranking.poll();
-        }
+        ranking.offer(docID, sim);
+    }
+
+    // the similarity a document must exceed in order to enter the ranking.
+    double threshold() {
+        return ranking.threshold();
+    }
+
+    /**
+     * @return true if the score bounds stored in the index bound the scores given by this ranker,
+     * that is if the ranker uses the bm25 parameters the index was built with.
+     */
+    boolean hasIndexBounds() {
+        Configuration config = Configuration.getInstance();
+        return k == config.getBM25K() && b == config.getBM25B();
+    }
+
+    /**
+     * @param term a term of the query.
+     * @return upper bound of the document dependant part of the similarity of the term in any document,
+     * this is the bound stored in the index if it bounds this ranker, and otherwise k + 1
+     * which bounds the document dependant part of the bm25 function in any document.
+     */
+    double maxDocumentScore(Term term) {
+        if (hasIndexBounds() && term.scoreBound >= 0)
+            return term.scoreBound;
 
-        ranking.offer(new Pair<>(docID, sim));
+        return k + 1;
     }
 
     /**
@@ -44,42 +111,123 @@ abstract class Ranker {
      * is the one ranked the highest.
      */
     public int[] getRanking() {
-        int[] rankedResults = new int[QUERY_RESULT_SIZE];
-        for (int i = ranking.size() - 1; i >= 0; i--)
-            rankedResults[i] = Objects.requireNonNull(ranking.poll()).first;
-        return rankedResults;
+        return ranking.getDocuments();
+    }
+
+    /**
+     * @return the similarity of each of the ranked documents,
+     * in the same order as {@link #getRanking()}.
+     */
+    public double[] getScores() {
+        return ranking.getScores();
+    }
+
+    /**
+     * Adds the scores of the postings in the given posting list to the accumulator.
+     * @param postingList posting list of one of the query terms.
+     * @param termWeight the weight of the term in the query, as given by the {@link QueryPlan}.
+     * @param accumulator accumulator holding the scores of the query.
+     */
+    public void rank(PostingList postingList, double termWeight, ScoreAccumulator accumulator) {
+        for (int i = 0; i < postingList.size(); i++) {
+            int docID = postingList.documentAt(i);
+            accumulator.add(docID, termWeight * documentScore(docID, postingList.frequencyAt(i)));
+        }
+    }
+
+    /**
+     * Adds the scores of the postings in the given posting list whose documents
+     * are in the given range of docIDs to the accumulator.
+     * @param postingList posting list of one of the query terms.
+     * @param termWeight the weight of the term in the query, as given by the {@link QueryPlan}.
+     * @param accumulator accumulator holding the scores of the query.
+     * @param from the first docID of the range.
+     * @param to the docID past the end of the range.
+     */
+    void rank(PostingList postingList, double termWeight, ScoreAccumulator accumulator, int from, int to) {
+        int end = PostingCursor.positionOf(postingList, to);
+        for (int i = PostingCursor.positionOf(postingList, from); i < end; i++) {
+            int docID = postingList.documentAt(i);
+            accumulator.add(docID, termWeight * documentScore(docID, postingList.frequencyAt(i)));
+        }
+    }
+
+    /**
+     * @param docID id of a document.
+     * @param cWD the frequency of a term in the document.
+     * @return the document dependant part of the bm25 function, the score of a posting
+     * is this value multiplied by the weight of its term.
+     */
+    double documentScore(int docID, double cWD) {
+        return ((k + 1) * cWD) / (cWD + lengthNormalization[docID]);
+    }
+
+    /**
+     * Adds the scores of the postings in the given posting list whose documents
+     * are among the given candidates to the accumulator.
+     * @param postingList posting list of one of the query terms.
+     * @param termWeight the weight of the term in the query, as given by the {@link QueryPlan}.
+     * @param accumulator accumulator holding the scores of the query.
+     * @param candidates the docIDs of the candidates in increasing order.
+     */
+    void rank(PostingList postingList, double termWeight, ScoreAccumulator accumulator, int[] candidates) {
+        if (postingList.size() == 0)
+            return;
+
+        PostingCursor cursor = new PostingCursor(0, postingList, termWeight, 0, null);
+        for (int docID : candidates) {
+            cursor.advance(docID);
+            if (cursor.document == PostingCursor.END)
+                return;
+            if (cursor.document == docID)
+                accumulator.add(docID, termWeight * documentScore(docID, cursor.frequency()));
+        }
+    }
+
+    /**
+     * Adds all the documents in the accumulator to the ranking.
+     * @param accumulator accumulator holding the scores of the query.
+     */
+    public void collect(ScoreAccumulator accumulator) {
+        for (int i = 0; i < accumulator.size(); i++) {
+            int docID = accumulator.documentAt(i);
+            updateRanking(docID, accumulator.scoreOf(docID));
+        }
     }
 
     /**
-     * Adds the given doc to the ranking.
-     * @param docID the id of the document.
-     * @param tf the term frequency pairs of the document.
+     * @param term a term as it appears in the inverted file.
+     * @param df the number of documents the term appears in.
+     * @return the weight of the term in the query, this is the part of
+     * the similarity that does not depend on the document.
      */
-    public abstract void rank(int docID, Map<String, Integer> tf);
+    protected abstract double termWeight(String term, int df);
 
     /**
      * Creates a semantic Ranker.
      * @param query the query to be ranked.
      * @param manager the query processor in charge of the process.
+     * @param resultSize the number of documents to rank.
      */
-    public static Ranker semantic(Query query, QueryProcessor manager) {
-        return new SemanticRanker(query, manager);
+    public static Ranker semantic(Query query, QueryProcessor manager, int resultSize) {
+        return new SemanticRanker(query, manager, resultSize);
     }
 
     /**
      * Creates a bm25 Ranker.
      * @param query the query to be ranked.
      * @param manager the query processor in charge of the process.
+     * @param resultSize the number of documents to rank.
      */
-    public static Ranker bm25(Query query, QueryProcessor manager) {
-        return new BM25Ranker(query, manager);
+    public static Ranker bm25(Query query, QueryProcessor manager, int resultSize) {
+        return new BM25Ranker(query, manager, resultSize);
     }
 
     private static class SemanticRanker extends Ranker {
 
         // bm25 constants, magic numbers chosen through trial and error.
-        private static final double k = 1;
-        private static final double b = 0.3;
+        private static final double K = 1;
+        private static final double B = 0.3;
 
         // weights for the semantic parts of the query.
         private static final double ENTITIES_WEIGHT = 0.4;
@@ -87,96 +235,54 @@ abstract class Ranker {
         private static final double NUMBERS_WEIGHT  = 0.1;
         private static final double SEMANTIC_WEIGHT = 0.1;
 
-        private SemanticRanker(Query query, QueryProcessor manager) {
-            super(query, manager);
+        private SemanticRanker(Query query, QueryProcessor manager, int resultSize) {
+            super(query, manager, resultSize, K, B);
+        }
+
+        private SemanticRanker(SemanticRanker whole) {
+            super(whole);
         }
 
         @Override
-        public void rank(int docID, Map<String, Integer> tf) {
-            Optional<DocumentMapping> optional = manager.documentMap.lookup(docID);
-            DocumentMapping doc = Objects.requireNonNull(optional.orElse(null));
-            double avgDocLength = manager.documentMap.getAverageLength();
-            double numDocuments = manager.documentMap.size();
-            double sim =
-                    rankTerms(query.terms, TERM_WEIGHT, doc, avgDocLength, numDocuments, tf)
-                    + rankTerms(query.numbers, NUMBERS_WEIGHT, doc, avgDocLength, numDocuments, tf)
-                    + rankTerms(query.entities, ENTITIES_WEIGHT, doc, avgDocLength, numDocuments, tf)
-                    + rankTerms(query.semanticTerms, SEMANTIC_WEIGHT, doc, avgDocLength, numDocuments, tf);
-
-            updateRanking(docID, sim);
+        Ranker part() {
+            return new SemanticRanker(this);
         }
 
-        // implements the bm25 function on a group of terms with all the needed arguments.
-        private double rankTerms(Map<String, Integer> terms, double weight,
-                                        DocumentMapping doc, double avgDocLength,
-                                        double numDocuments, Map<String, Integer> tf) {
-            double sim = 0;
-            for (Map.Entry<String, Integer> term : tf.entrySet()) {
-                Optional<Term> optionalTerm = manager.dictionary.lookupTerm(term.getKey());
-                int df = 0;
-                if (optionalTerm.isPresent())
-                    df = optionalTerm.get().termDocumentFrequency;
-
-                int cWQ = terms.getOrDefault(term.getKey(), 0);
-                int cWD = term.getValue();
-
-                // the bm25 function itself.
-                sim +=
-                        cWQ *
-                                ((k + 1) * cWD)/
-                                (cWD + k * (1-b + b * (doc.length / avgDocLength))) *
-                        Math.log10(numDocuments / df);
-            }
-
-            return sim * weight;
+        @Override
+        // the weight of a term is its bm25 query weight in each part of the query scaled by the weight of the part.
+        protected double termWeight(String term, int df) {
+            double cWQ =
+                    TERM_WEIGHT * query.terms.getOrDefault(term, 0)
+                    + NUMBERS_WEIGHT * query.numbers.getOrDefault(term, 0)
+                    + ENTITIES_WEIGHT * query.entities.getOrDefault(term, 0)
+                    + SEMANTIC_WEIGHT * query.semanticTerms.getOrDefault(term, 0);
+
+            return cWQ * Math.log10(numDocuments / df);
         }
     }
 
     private static class BM25Ranker extends Ranker {
 
-        private final double k;
-        private final double b;
-
-        private BM25Ranker(Query query, QueryProcessor manager) {
-            super(query, manager);
-            // here we choose k and b based on weather or not the stemmer
-            // is used, again these numbers were chosen from trial and error.
-            if (Configuration.getInstance().getUseStemmer()) {
-                k = 0.4;
-                b = 0.9;
-            }
-            else {
-                k = 1;
-                b =  0.3;
-            }
+        // k and b depend on weather or not the stemmer is used, they are the parameters of the index.
+        private BM25Ranker(Query query, QueryProcessor manager, int resultSize) {
+            super(query, manager, resultSize,
+                    Configuration.getInstance().getBM25K(), Configuration.getInstance().getBM25B());
+        }
+
+        private BM25Ranker(BM25Ranker whole) {
+            super(whole);
+        }
+
+        @Override
+        Ranker part() {
+            return new BM25Ranker(this);
         }
 
         @Override
-        // implants the bm25 similarity function between the query and the given document.
-        public void rank(int docID, Map<String, Integer> tf) {
-            Optional<DocumentMapping> optional = manager.documentMap.lookup(docID);
-            DocumentMapping doc = Objects.requireNonNull(optional.orElse(null));
-            double avgDocLength = manager.documentMap.getAverageLength();
-            double numDocuments = manager.documentMap.size();
-            double sim = 0;
-            for (Map.Entry<String, Integer> term : tf.entrySet()) {
-                Optional<Term> optionalTerm = manager.dictionary.lookupTerm(term.getKey());
-                double df = 0.0;
-                if (optionalTerm.isPresent())
-                    df = optionalTerm.get().termDocumentFrequency;
-
-                double cWQ = query.get(term.getKey());
-                double cWD = term.getValue();
-
-                // the bm25 function itself.
-                sim +=
-                        cWQ *
-                                (((k + 1) * cWD)/
-                                (cWD + k * (1-b + (b * (doc.length / avgDocLength))))) *
-                        Math.log10((numDocuments + 1) / df);
-            }
-
-            this.updateRanking(docID, sim);
+        // the query dependant part of the bm25 similarity function.
+        protected double termWeight(String term, int df) {
+            double cWQ = query.get(term);
+            return cWQ * Math.log10((numDocuments + 1) / (double) df);
         }
     }
 }
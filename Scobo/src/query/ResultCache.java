@@ -0,0 +1,171 @@
+package query;
+
+import util.Configuration;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache of query results, keyed by the analyzed query and the
+ * settings that affect its ranking (see {@link #keyOf(Query, int, int)}).
+ *
+ * <p> The cache holds at most a fixed number of results and evicts the least recently
+ * used result when it is full. Since most queries are never repeated a result is only
+ * admitted into the cache the second time its query is seen, the queries that were seen once
+ * are remembered in a candidate list of the same size (also evicted least recently used),
+ * so a stream of unique queries never evicts the repeated ones.
+ *
+ * <p> A result holds the terms dropped from its query when it was reduced to its term budget,
+ * so a reduced query is cached like any other and its dropped terms are reported on a hit.
+ *
+ * <p> The cache belongs to a {@link QueryProcessor}, so it is invalidated whenever
+ * a new index is loaded into a new processor.
+ */
+final class ResultCache {
+
+    private final int capacity;
+
+    // cached results in access order, the eldest result is the least recently used.
+    private final LinkedHashMap<String, Result> results;
+    // queries that were seen once and will be admitted into the cache when seen again.
+    private final LinkedHashMap<String, Boolean> candidates;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Creates an empty cache.
+     * @param capacity the maximum number of results held by the cache, 0 disables the cache.
+     */
+    ResultCache(int capacity) {
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > ResultCache.this.capacity;
+            }
+        };
+        this.candidates = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > ResultCache.this.capacity;
+            }
+        };
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+    }
+
+    /**
+     * Creates the key of a query, the key is made of the analyzed terms of the query
+     * (before semantic expansion) in sorted order and every setting that affects the ranking.
+     * @param query a parsed query.
+     * @param resultSize the number of documents requested for the query.
+     * @param termBudget the number of terms the query is reduced to, 0 for no limit.
+     * @return key of the query's result.
+     */
+    static String keyOf(Query query, int resultSize, int termBudget) {
+        Configuration config = Configuration.getInstance();
+        StringBuilder key = new StringBuilder();
+        key.append(config.getUseStemmer()).append('|')
+                .append(config.getUseSemantic()).append('|')
+                .append(config.getUseSemantic() ? config.getSemanticCascadeSize() : 0).append('|')
+                .append(config.getUseImpactOrder()).append('|')
+                .append(resultSize).append('|')
+                .append(termBudget);
+
+        appendSorted(key, query.terms);
+        appendSorted(key, query.numbers);
+        appendSorted(key, query.entities);
+        return key.toString();
+    }
+
+    // appends the term -> frequency mappings to the key in sorted order.
+    private static void appendSorted(StringBuilder key, Map<String, Integer> terms) {
+        key.append('|');
+        for (Map.Entry<String, Integer> term : new TreeMap<>(terms).entrySet())
+            key.append(term.getKey()).append('=').append(term.getValue()).append(',');
+    }
+
+    /**
+     * Looks up the result of a query, counting a hit or a miss (nothing is counted while the cache is disabled).
+     * @param key the key of the query.
+     * @return a copy of the cached result of the query, empty if the result is not cached.
+     */
+    synchronized Optional<Result> lookup(String key) {
+        if (capacity <= 0)
+            return Optional.empty();
+
+        Result result = results.get(key);
+        if (result == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        return Optional.of(result.copy());
+    }
+
+    /**
+     * Offers the result of a query to the cache, the result is admitted only if
+     * the query was already seen before, otherwise the query becomes a candidate.
+     * @param key the key of the query.
+     * @param ranking the ranking of the query.
+     * @param scores the scores of the ranked documents.
+     * @param droppedTerms the terms dropped from the query when it was reduced to its term budget.
+     */
+    synchronized void offer(String key, int[] ranking, double[] scores, String[] droppedTerms) {
+        if (capacity <= 0)
+            return;
+
+        if (candidates.remove(key) == null) {
+            candidates.put(key, Boolean.TRUE);
+            return;
+        }
+
+        results.put(key, new Result(ranking, scores, droppedTerms).copy());
+    }
+
+    /**
+     * @return the number of lookups that found a cached result.
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a cached result.
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all the results and candidates from the cache.
+     */
+    synchronized void clear() {
+        results.clear();
+        candidates.clear();
+    }
+
+    /**
+     * A cached result of a query.
+     */
+    static final class Result {
+
+        final int[] ranking;
+        final double[] scores;
+        // the terms dropped from the query when it was reduced to its term budget, empty if none were.
+        final String[] droppedTerms;
+
+        Result(int[] ranking, double[] scores, String[] droppedTerms) {
+            this.ranking = ranking;
+            this.scores = scores;
+            this.droppedTerms = droppedTerms;
+        }
+
+        // copies the result, so the cached result is not shared with the query results.
+        private Result copy() {
+            return new Result(ranking.clone(), scores.clone(), droppedTerms.clone());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package query;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Accumulates the similarity of documents to a query one posting list at a time.
+ * The scores are kept in an array indexed by docID so adding a posting is a single
+ * array update, and the documents that were touched are remembered so that
+ * collecting the results and clearing the accumulator does not require a pass
+ * over the entire array.
+ *
+ * <p> Accumulators are large (one entry per document in the corpus) so they are
+ * not created per query, instead they are taken from a {@link Pool} and returned
+ * to it once the query is ranked.
+ */
+final class ScoreAccumulator {
+
+    private static final int INITIAL_TOUCHED_SIZE = 1024;
+
+    private final double[] scores;
+    private final boolean[] isTouched;
+
+    // docIDs of the documents that were added to the accumulator, in the order they were added.
+    private int[] touched;
+    private int touchedCount;
+
+    private ScoreAccumulator(int numDocuments) {
+        scores = new double[numDocuments];
+        isTouched = new boolean[numDocuments];
+        touched = new int[INITIAL_TOUCHED_SIZE];
+        touchedCount = 0;
+    }
+
+    /**
+     * Adds a score to the document with the given id.
+     * @param docID id of a document.
+     * @param score score of a single posting of the document.
+     */
+    void add(int docID, double score) {
+        if (!isTouched[docID]) {
+            isTouched[docID] = true;
+            if (touchedCount == touched.length)
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            touched[touchedCount++] = docID;
+        }
+
+        scores[docID] += score;
+    }
+
+    /**
+     * @return number of documents that were added to the accumulator.
+     */
+    int size() {
+        return touchedCount;
+    }
+
+    /**
+     * @param index index between 0 and {@link #size()}.
+     * @return docID of the document that was added at the given index.
+     */
+    int documentAt(int index) {
+        return touched[index];
+    }
+
+    /**
+     * @param docID id of a document.
+     * @return the accumulated score of the document.
+     */
+    double scoreOf(int docID) {
+        return scores[docID];
+    }
+
+    // resets the scores of the touched documents.
+    private void clear() {
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0;
+            isTouched[touched[i]] = false;
+        }
+
+        touchedCount = 0;
+    }
+
+    /**
+     * Pool of accumulators for a corpus of a given size, the pool grows to the
+     * number of queries that are ranked at the same time.
+     */
+    static final class Pool {
+
+        private final int numDocuments;
+        private final ConcurrentLinkedQueue<ScoreAccumulator> accumulators;
+
+        /**
+         * Creates an empty pool of accumulators.
+         * @param numDocuments number of documents in the corpus.
+         */
+        Pool(int numDocuments) {
+            this.numDocuments = numDocuments;
+            accumulators = new ConcurrentLinkedQueue<>();
+        }
+
+        /**
+         * @return an empty accumulator, it should be returned to the pool
+         * using {@link #release(ScoreAccumulator)} once it is no longer used.
+         */
+        ScoreAccumulator acquire() {
+            ScoreAccumulator accumulator = accumulators.poll();
+            if (accumulator == null)
+                accumulator = new ScoreAccumulator(numDocuments);
+
+            return accumulator;
+        }
+
+        /**
+         * Clears the accumulator and returns it to the pool.
+         * @param accumulator accumulator that was acquired from this pool.
+         */
+        void release(ScoreAccumulator accumulator) {
+            accumulator.clear();
+            accumulators.offer(accumulator);
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package query;
 
+import indexer.BlockMaxList;
+import indexer.ImpactList;
+import indexer.PostingList;
 import indexer.Term;
 import util.Configuration;
 import util.Logger;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages the retrieval of results for a single query
@@ -18,41 +19,209 @@ import java.util.concurrent.ConcurrentHashMap;
 public class Searcher implements Runnable {
 
     QueryProcessor manager;
+    QueryRequest request;
     Query query;
     Ranker ranker;
+    QueryPlan plan;
 
-    // maps document ids to pairs <term, frequency> pairs.
-    ConcurrentHashMap<Integer, Map<String, Integer>> relevantDocuments;
+    // the bm25 ranker and plan that pick the candidates of the semantic ranking, null unless it is a cascade.
+    private Ranker candidateRanker;
+    private QueryPlan candidatePlan;
+    private int candidateSize;
+    // the strategy the query is evaluated with, chosen by the planner once the query is executed.
+    private QueryPlanner.Choice choice;
+
+    // key of the query in the result cache.
+    private String cacheKey;
+    // posting lists that were read for the searcher in advance by pointer, null if there are none.
+    private Map<Long, PostingList> prefetched;
+
+    // true if the ranking of the query is not complete, and must not be cached. the fetch tasks
+    // set it before passing their line through the fetched queue, so it is visible to the searcher.
+    private boolean isPartial;
+    // true once the deadline of the request passed, the searcher stops fetching lines and scoring documents.
+    private volatile boolean isCancelled;
+    // the terms dropped from the query when it was reduced to its term budget, cached with its ranking.
+    private String[] droppedTerms = new String[0];
 
     /**
-     * Constructs Searcher for a given query that is managed by the
-     * given manager.
+     * Constructs Searcher for a given query of the given request.
      * @param query the query the search documents for.
-     * @param manager the query processor that manages the searcher.
+     * @param request the request the query belongs to.
      */
-    public Searcher(Query query, QueryProcessor manager) {
-        this.manager = manager;
+    Searcher(Query query, QueryRequest request) {
+        this.manager = request.processor;
+        this.request = request;
         this.query = query;
-        relevantDocuments = new ConcurrentHashMap<>();
     }
 
     @Override
     public void run() {
-        if (Configuration.getInstance().getUseSemantic()) {
+        try {
+            if (prepare())
+                execute();
+        }
+        catch (RuntimeException e) {
+            // the query is left unranked, but the request must still complete.
+            Logger.getInstance().error(e);
+            request.result.markPartial(query.id);
+        }
+        finally {
+            request.searchTasks.complete();
+        }
+    }
+
+    /**
+     * Prepares the query for searching, if the result of the query is in the result cache it is
+     * used as the result of the query, otherwise the query is expanded and compiled into a plan.
+     * @return true if the query needs to be searched using {@link #execute()},
+     * false if its result was taken from the result cache.
+     */
+    boolean prepare() {
+        long startTime = System.nanoTime();
+        // the key is taken before the query is expanded, the expansion only depends on the query.
+        cacheKey = ResultCache.keyOf(query, request.resultSize, request.termBudget);
+        Optional<ResultCache.Result> cached = manager.resultCache.lookup(cacheKey);
+        if (cached.isPresent()) {
+            request.result.updateResult(query.id, cached.get().ranking, cached.get().scores);
+            if (cached.get().droppedTerms.length > 0)
+                request.result.setDroppedTerms(query.id, cached.get().droppedTerms);
+            QueryPlanner.Choice cacheLookup = new QueryPlanner.Choice(QueryPlanner.Strategy.CACHE_LOOKUP, 0, 0);
+            Logger.getInstance().message("query " + query.id + " planned as "
+                    + cacheLookup.describe(System.nanoTime() - startTime));
+            return false;
+        }
+
+        Configuration config = Configuration.getInstance();
+        if (config.getUseSemantic()) {
+            if (config.getSemanticCascadeSize() > 0) {
+                // the candidates are ranked on the query as it was given, before it is expanded.
+                candidateSize = Math.max(config.getSemanticCascadeSize(), request.resultSize);
+                candidateRanker = Ranker.bm25(query, manager, candidateSize);
+                candidatePlan = QueryPlan.compile(query, manager.dictionary, candidateRanker);
+            }
+
             expandQuery();
-            ranker = Ranker.semantic(query, manager);
+            ranker = Ranker.semantic(query, manager, request.resultSize);
         }
-        else ranker = Ranker.bm25(query, manager);
+        else ranker = Ranker.bm25(query, manager, request.resultSize);
 
-        try { loadDocuments(); }
-        catch (IOException e) {
-            Logger.getInstance().error(e);
+        plan = reducePlan(QueryPlan.compile(query, manager.dictionary, ranker));
+        if (candidatePlan != null)
+            candidatePlan = candidatePlan.reduce(request.termBudget);
+
+        if (usesPostingLines()) {
+            plan = limitPlan(plan);
+            if (candidatePlan != null)
+                candidatePlan = limitPlan(candidatePlan);
+        }
+
+        return true;
+    }
+
+    // reduces the plan to the term budget of the request, the dropped terms are logged and reported in the query result.
+    private QueryPlan reducePlan(QueryPlan plan) {
+        QueryPlan reduced = plan.reduce(request.termBudget);
+        if (reduced == plan)
+            return plan;
+
+        ArrayList<String> dropped = new ArrayList<>(plan.size() - reduced.size());
+        for (int i = 0, kept = 0; i < plan.size(); i++) {
+            if (kept < reduced.size() && reduced.termAt(kept) == plan.termAt(i))
+                kept++;
+            else
+                dropped.add(plan.termAt(i).term);
+        }
+
+        Logger.getInstance().message("query " + query.id + " reduced to " + reduced.size() + " of its "
+                + plan.size() + " terms, dropped: " + String.join(" ", dropped));
+        droppedTerms = dropped.toArray(new String[0]);
+        request.result.setDroppedTerms(query.id, droppedTerms);
+        return reduced;
+    }
+
+    // limits the plan to the lines that fit in the posting and byte budgets of a query,
+    // if lines are dropped the ranking of the query is partial.
+    private QueryPlan limitPlan(QueryPlan plan) {
+        Configuration config = Configuration.getInstance();
+        QueryPlan limited = plan.limit(config.getQueryPostingBudget(), config.getQueryByteBudget());
+        if (limited == plan)
+            return plan;
+
+        Logger.getInstance().message("query " + query.id + " exceeds its budget, reading "
+                + limited.size() + " of its " + plan.size() + " posting lines");
+        isPartial = true;
+        return limited;
+    }
+
+    /**
+     * @return true if the prepared query will be evaluated on the posting lines of the
+     * inverted file, false if it will be evaluated on the impact ordered layout.
+     */
+    boolean usesPostingLines() {
+        return candidatePlan != null || !ImpactEvaluator.canEvaluate(plan, ranker);
+    }
+
+    /**
+     * Sets the posting lists that were read for the query in advance, the searcher will
+     * take the lines of the query from them instead of reading them.
+     * @param prefetched decoded posting lists by the pointer of their line.
+     */
+    void setPrefetched(Map<Long, PostingList> prefetched) {
+        this.prefetched = prefetched;
+    }
+
+    /**
+     * Searches the prepared query with the strategy chosen by the planner and sets its result
+     * in the query result of the request, the chosen strategy and its estimated cost are logged
+     * next to the time the search took.
+     */
+    void execute() {
+        long startTime = System.nanoTime();
+        choice = choose();
+        if (!isCancelled()) {
+            try { search(); }
+            catch (IOException e) {
+                isPartial = true;
+                Logger.getInstance().error(e);
+            }
+        }
+
+        Logger.getInstance().message("query " + query.id + " planned as "
+                + (candidatePlan != null ? "semantic cascade, candidates ranked " : "")
+                + choice.describe(System.nanoTime() - startTime));
+
+        if (isCancelled) {
+            isPartial = true;
+            Logger.getInstance().message("query " + query.id + " passed its deadline, ranking partial results");
         }
 
-        relevantDocuments.forEach((docID, tf) -> ranker.rank(docID, tf));
-        manager.currentResult.updateResult(query.id, ranker.getRanking());
+        int[] ranking = ranker.getRanking();
+        double[] scores = ranker.getScores();
+        request.result.updateResult(query.id, ranking, scores);
+        if (isPartial)
+            request.result.markPartial(query.id);
+        else
+            manager.resultCache.offer(cacheKey, ranking, scores, droppedTerms);
+    }
+
+    // chooses the strategy the query is evaluated with, the strategy of a semantic cascade is that of its candidates.
+    private QueryPlanner.Choice choose() {
+        if (candidatePlan != null)
+            return manager.planner.cascade(manager.planner.choose(candidatePlan, candidateRanker, candidateSize, prefetched),
+                    plan, candidateSize);
+        if (!usesPostingLines())
+            return manager.planner.scoreAtATime(plan, Configuration.getInstance().getQueryPostingBudget());
+
+        return manager.planner.choose(plan, ranker, request.resultSize, prefetched);
+    }
+
+    // true if the deadline of the request passed, in which case the work of the searcher is cancelled.
+    private boolean isCancelled() {
+        if (!isCancelled && request.isExpired())
+            isCancelled = true;
 
-        manager.searchTasks.complete();
+        return isCancelled;
     }
 
     // semantically expands the query, adding semantic fields.
@@ -77,42 +246,298 @@ public class Searcher implements Runnable {
         }
     }
 
-    // loads all the documents that might be relevant to the query, from the inverted file.
-    private void loadDocuments() throws IOException {
+    // loads the posting lines of the query from the inverted file and ranks the documents in them.
+    private void search() throws IOException {
+        long startTime = System.nanoTime();
+        if (candidatePlan != null)
+            rankCascade();
+        else if (choice.strategy == QueryPlanner.Strategy.SCORE_AT_A_TIME)
+            rankImpacts(plan, startTime);
+        else
+            rankPostings(plan, ranker, choice.strategy);
+    }
+
+    // fetches the posting lines of the plan and ranks the documents in them with the given ranker and strategy,
+    // returns the posting lines by their index in the plan.
+    private PostingList[] rankPostings(QueryPlan plan, Ranker ranker, QueryPlanner.Strategy strategy) throws IOException {
+        boolean useWand = strategy == QueryPlanner.Strategy.WAND;
+        boolean useMaxScore = strategy == QueryPlanner.Strategy.MAX_SCORE;
+
+        PostingList[] postingLists = new PostingList[plan.size()];
+        BlockMaxList[] blockMaxLists = useWand ? new BlockMaxList[plan.size()] : null;
+        BlockingQueue<Integer> fetched = fetchPostings(plan, postingLists, blockMaxLists);
+        if (useWand || useMaxScore)
+            rankPruned(plan, ranker, postingLists, blockMaxLists, fetched);
+        else
+            rankAll(plan, ranker, postingLists, fetched);
+
+        return postingLists;
+    }
+
+    // fetches the posting lines of the plan (and their block maxima if blockMaxLists is not null) in the order
+    // they appear in the inverted file, once a line is decoded its index in the plan is passed through the returned queue.
+    private BlockingQueue<Integer> fetchPostings(QueryPlan plan, PostingList[] postingLists, BlockMaxList[] blockMaxLists) {
+        BlockingQueue<Integer> fetched = new ArrayBlockingQueue<>(Math.max(1, plan.size()));
+        for (int i = 0; i < plan.size(); i++) {
+            int index = i;
+            manager.fetchTasks.add(() -> fetchPosting(plan.termAt(index), index, postingLists, blockMaxLists, fetched),
+                    request.priority);
+        }
+
+        return fetched;
+    }
+
+    // ranks the query in two stages, the candidates are ranked first by bm25 with pruning on the query before
+    // it was expanded, and then only the candidates are scored by the semantic ranker. the lines the candidates
+    // are ranked from are reused and the rest of the lines are fetched while the candidates are ranked.
+    // if the searcher is cancelled before the candidates are scored the candidates are ranked by their bm25 scores.
+    private void rankCascade() throws IOException {
+        HashMap<Long, Integer> candidateLines = new HashMap<>();
+        for (int i = 0; i < candidatePlan.size(); i++)
+            candidateLines.put(candidatePlan.termAt(i).pointer, i);
+
+        PostingList[] postingLists = new PostingList[plan.size()];
+        BlockingQueue<Integer> fetched = new ArrayBlockingQueue<>(Math.max(1, plan.size()));
+        int[] shared = new int[plan.size()];
+        int fetching = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            int index = i;
+            shared[i] = candidateLines.getOrDefault(plan.termAt(i).pointer, -1);
+            if (shared[i] < 0) {
+                manager.fetchTasks.add(() -> fetchPosting(plan.termAt(index), index, postingLists, null, fetched),
+                        request.priority);
+                fetching++;
+            }
+        }
+
+        PostingList[] candidateLists = rankPostings(candidatePlan, candidateRanker, choice.strategy);
+        if (isCancelled()) {
+            ranker.merge(candidateRanker);
+            return;
+        }
+
+        int[] candidates = candidateRanker.getRanking();
+        Arrays.sort(candidates);
+
+        // the shared lines have arrived, the rest are scored in plan order as they arrive.
+        boolean[] arrived = new boolean[plan.size()];
+        for (int i = 0; i < plan.size(); i++) {
+            arrived[i] = shared[i] >= 0;
+            if (arrived[i])
+                postingLists[i] = candidateLists[shared[i]];
+        }
+
+        ScoreAccumulator accumulator = manager.accumulators.acquire();
+        try {
+            int next = rankArrived(plan, ranker, postingLists, arrived, 0, accumulator, candidates);
+            for (int i = 0; i < fetching; i++) {
+                int index = takeFetched(fetched);
+                if (index < 0 || isCancelled())
+                    break;
+                arrived[index] = true;
+                next = rankArrived(plan, ranker, postingLists, arrived, next, accumulator, candidates);
+            }
+
+            ranker.collect(accumulator);
+        }
+        finally {
+            manager.accumulators.release(accumulator);
+        }
+    }
+
+    // scores every document in the posting lines term at a time, the lines are scored while the rest are
+    // still being fetched. the lines are scored in plan order, so the scores of a query do not depend on
+    // the order its lines arrive in, a line is scored as soon as it and every line before it have arrived.
+    // large queries are scored in parallel over ranges of docIDs once all the lines arrive.
+    private void rankAll(QueryPlan plan, Ranker ranker, PostingList[] postingLists,
+                         BlockingQueue<Integer> fetched) throws IOException {
+        int ranges = ParallelScorer.rangesFor(plan);
+        if (ranges > 1) {
+            // the lines are scored in plan order, like they are when scored by a single thread.
+            awaitFetched(fetched, plan.size());
+
+            if (!isCancelled())
+                new ParallelScorer(ranker, postingLists, ranges).score((part, from, to) -> {
+                    ScoreAccumulator accumulator = manager.accumulators.acquire();
+                    try {
+                        boolean isComplete = true;
+                        for (int i = 0; i < plan.size() && isComplete; i++) {
+                            isComplete = !isCancelled();
+                            if (isComplete && postingLists[i] != null)
+                                part.rank(postingLists[i], plan.weightAt(i), accumulator, from, to);
+                        }
+
+                        part.collect(accumulator);
+                        return isComplete;
+                    }
+                    finally {
+                        manager.accumulators.release(accumulator);
+                    }
+                }, request.priority);
+
+            return;
+        }
+
+        ScoreAccumulator accumulator = manager.accumulators.acquire();
+        try {
+            boolean[] arrived = new boolean[plan.size()];
+            int next = 0;
+            for (int i = 0; i < plan.size(); i++) {
+                int index = takeFetched(fetched);
+                if (index < 0 || isCancelled())
+                    break;
+                arrived[index] = true;
+                next = rankArrived(plan, ranker, postingLists, arrived, next, accumulator, null);
+            }
+
+            ranker.collect(accumulator);
+        }
+        finally {
+            manager.accumulators.release(accumulator);
+        }
+    }
+
+    // scores the arrived lines from the given index of the plan up to the first line that has not arrived
+    // yet, only the candidates if they are given. returns the index of that line.
+    private static int rankArrived(QueryPlan plan, Ranker ranker, PostingList[] postingLists, boolean[] arrived,
+                                   int next, ScoreAccumulator accumulator, int[] candidates) {
+        for (; next < plan.size() && arrived[next]; next++) {
+            if (postingLists[next] == null)
+                continue;
+            if (candidates != null)
+                ranker.rank(postingLists[next], plan.weightAt(next), accumulator, candidates);
+            else
+                ranker.rank(postingLists[next], plan.weightAt(next), accumulator);
+        }
+
+        return next;
+    }
+
+    // waits for all the posting lines and then ranks the documents document at a time, skipping the
+    // documents that cannot enter the ranking. the query is evaluated with WAND if the block maxima
+    // were fetched and with MaxScore otherwise, until it is evaluated or cancelled.
+    // large queries are evaluated in parallel over ranges of docIDs.
+    private void rankPruned(QueryPlan plan, Ranker ranker, PostingList[] postingLists, BlockMaxList[] blockMaxLists,
+                            BlockingQueue<Integer> fetched) throws IOException {
+        awaitFetched(fetched, plan.size());
+
+        if (isCancelled())
+            return;
+
+        int ranges = ParallelScorer.rangesFor(plan);
+        if (ranges > 1)
+            new ParallelScorer(ranker, postingLists, ranges).score((part, from, to) -> blockMaxLists != null ?
+                    new WandEvaluator(part, plan, postingLists, blockMaxLists, from, to).evaluate(this::isCancelled) :
+                    new MaxScoreEvaluator(part, plan, postingLists, from, to).evaluate(this::isCancelled),
+                    request.priority);
+        else if (blockMaxLists != null)
+            new WandEvaluator(ranker, plan, postingLists, blockMaxLists).evaluate(this::isCancelled);
+        else
+            new MaxScoreEvaluator(ranker, plan, postingLists).evaluate(this::isCancelled);
+    }
+
+    // fetches the impact ordered segments of the query and scores them score at a time, within the
+    // time and posting budgets of the configuration. if a budget runs out (or the searcher is cancelled)
+    // the best results so far are ranked.
+    private void rankImpacts(QueryPlan plan, long startTime) throws IOException {
+        ImpactList[] impactLists = new ImpactList[plan.size()];
+        BlockingQueue<Integer> fetched = new ArrayBlockingQueue<>(Math.max(1, plan.size()));
+        for (int i = 0; i < plan.size(); i++) {
+            int index = i;
+            manager.fetchTasks.add(() -> fetchImpacts(plan.termAt(index), index, impactLists, fetched), request.priority);
+        }
+
+        awaitFetched(fetched, plan.size());
+
         Configuration config = Configuration.getInstance();
-        RandomAccessFile termReader = new RandomAccessFile(config.getInvertedFilePath(), "r");
+        ScoreAccumulator accumulator = manager.accumulators.acquire();
+        try {
+            boolean isComplete = new ImpactEvaluator(ranker, plan, impactLists).evaluate(accumulator, startTime,
+                    config.getQueryTimeBudget(), config.getQueryPostingBudget(), this::isCancelled);
+            isPartial = !isComplete;
+            if (isPartial && !isCancelled)
+                Logger.getInstance().message("query " + query.id + " ran out of its budget, ranking partial results");
+
+            ranker.collect(accumulator);
+        }
+        finally {
+            manager.accumulators.release(accumulator);
+        }
+    }
 
-        ArrayList<Long> linePointers = new ArrayList<>(query.length);
-        for (Map.Entry<String, Integer> term : query) {
-            Optional<Term> res = manager.dictionary.lookupTerm(term.getKey());
-            res.ifPresent(dictTerm -> linePointers.add(dictTerm.pointer));
+    // waits until the given number of lines were fetched, or until the deadline of the request passed.
+    private void awaitFetched(BlockingQueue<Integer> fetched, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (takeFetched(fetched) < 0)
+                return;
         }
+    }
 
-        linePointers.sort(Long::compareTo);
+    // takes the index of the next fetched line, waiting no longer than the deadline of the request.
+    // returns -1 if the deadline passed before the line arrived, in which case the searcher is cancelled.
+    private int takeFetched(BlockingQueue<Integer> fetched) throws IOException {
+        try {
+            Integer index = fetched.poll(request.remainingNanos(), TimeUnit.NANOSECONDS);
+            if (index != null)
+                return index;
 
-        for (long linePointer : linePointers) {
-            termReader.seek(linePointer);
-            String line = termReader.readLine();
-            addDocuments(line);
+            isCancelled = true;
+            return -1;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while fetching posting lists", e);
         }
     }
 
-    // parses a line of the inverted file, adding the documents in it to the relevant documents.
-    private void addDocuments(String line) {
-        // the format of the line in the inverted file is as follows t(|d,f)+
-        String[] content = line.split("\\|");
-        String term = content[0];
-        for (int i = 1; i < content.length; i++) {
-            int splitIndex = content[i].indexOf(",");
-            int docID = Integer.parseInt(content[i].substring(0, splitIndex));
-            int frequency = Integer.parseInt(content[i].substring(splitIndex + 1));
-            relevantDocuments.compute(docID, (docID1, terms) -> {
-                if (terms == null)
-                    terms = new HashMap<>();
+    // takes the posting line of the term from the prefetched lists or the posting list cache, or reads and decodes
+    // it (and its block maxima if they are needed), passing its index in the plan to the searcher through the fetched queue.
+    // the line is not fetched if the searcher was cancelled.
+    private void fetchPosting(Term term, int index, PostingList[] postingLists, BlockMaxList[] blockMaxLists,
+                              BlockingQueue<Integer> fetched) {
+        try {
+            if (!isCancelled()) {
+                Optional<PostingList> cached = prefetched != null && prefetched.containsKey(term.pointer) ?
+                        Optional.of(prefetched.get(term.pointer)) : manager.postingCache.get(term);
+                if (cached.isPresent())
+                    postingLists[index] = cached.get();
+                else {
+                    postingLists[index] = PostingList.decode(manager.postingReader.read(term));
+                    manager.postingCache.offer(term, postingLists[index]);
+                }
+
+                if (blockMaxLists != null)
+                    blockMaxLists[index] = manager.postingReader.readBlockMax(term).orElse(null);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // a line that could not be read or decoded is skipped.
+            postingLists[index] = null;
+            isPartial = true;
+            Logger.getInstance().error(e);
+        }
+        finally {
+            // the queue is large enough to hold all the lists of the query so this never blocks.
+            fetched.add(index);
+            manager.fetchTasks.complete();
+        }
+    }
 
-                terms.put(term, frequency);
-                return terms;
-            });
+    // reads and decodes the impact ordered segments of the term, passing its index in the plan
+    // to the searcher through the fetched queue. the segments are not read if the searcher was cancelled.
+    private void fetchImpacts(Term term, int index, ImpactList[] impactLists, BlockingQueue<Integer> fetched) {
+        try {
+            if (!isCancelled())
+                impactLists[index] = manager.postingReader.readImpacts(term).orElse(null);
+        }
+        catch (IOException | RuntimeException e) {
+            impactLists[index] = null;
+            isPartial = true;
+            Logger.getInstance().error(e);
+        }
+        finally {
+            fetched.add(index);
+            manager.fetchTasks.complete();
         }
     }
 }
@@ -0,0 +1,169 @@
+package query;
+
+import java.util.Arrays;
+
+/**
+ * Collects the k documents with the highest scores.
+ *
+ * <p> The documents are kept in a min heap that is stored in two parallel arrays
+ * (docIDs and scores) so offering a document never allocates, the root of the heap
+ * is the lowest score currently collected which is the score a document must beat
+ * in order to be collected once the collector is full.
+ * Documents with equal scores are ordered by their docID (lower first), so the collected
+ * documents do not depend on the order in which the documents are offered.
+ *
+ * <p> Getting the collected documents or scores sorts the heap in place, after which
+ * the collector is read only and no more documents may be offered.
+ */
+final class TopKCollector {
+
+    private static final int INITIAL_SIZE = 64;
+
+    private final int k;
+
+    // min heap of the collected documents, the root is the worst document.
+    private int[] documents;
+    private double[] scores;
+    private int size;
+
+    private boolean isSorted;
+
+    /**
+     * Creates a collector that collects the top k documents.
+     * @param k the number of documents to collect.
+     */
+    TopKCollector(int k) {
+        this.k = k;
+        int initialSize = Math.max(1, Math.min(k, INITIAL_SIZE));
+        documents = new int[initialSize];
+        scores = new double[initialSize];
+        size = 0;
+        isSorted = false;
+    }
+
+    /**
+     * Offers a document to the collector, the document will be collected
+     * if there are less than k documents or if its score is higher than
+     * the lowest score collected.
+     * @param docID id of the document.
+     * @param score score of the document.
+     * @throws IllegalStateException if the collected documents were already sorted.
+     */
+    void offer(int docID, double score) {
+        if (isSorted)
+            throw new IllegalStateException("cannot offer a document after the collected documents were sorted");
+
+        if (size < k) {
+            if (size == documents.length) {
+                int newSize = Math.min(k, documents.length * 2);
+                documents = Arrays.copyOf(documents, newSize);
+                scores = Arrays.copyOf(scores, newSize);
+            }
+
+            documents[size] = docID;
+            scores[size] = score;
+            siftUp(size++);
+        }
+        else if (k > 0 && (score > scores[0] || (score == scores[0] && docID < documents[0]))) {
+            documents[0] = docID;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * @return the score a document must exceed in order to be collected (a document with an
+     * equal score is collected only if its docID is lower than the worst document collected),
+     * negative infinity while there are less than k documents collected.
+     * @throws IllegalStateException if the collected documents were already sorted.
+     */
+    double threshold() {
+        if (isSorted)
+            throw new IllegalStateException("the collected documents were already sorted");
+        if (size < k)
+            return Double.NEGATIVE_INFINITY;
+
+        return scores[0];
+    }
+
+    /**
+     * @return the number of documents collected.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return ids of the collected documents where the document at index 0
+     * is the one with the highest score.
+     */
+    int[] getDocuments() {
+        sort();
+        return Arrays.copyOf(documents, size);
+    }
+
+    /**
+     * @return scores of the collected documents in the same order as {@link #getDocuments()}.
+     */
+    double[] getScores() {
+        sort();
+        return Arrays.copyOf(scores, size);
+    }
+
+    // sorts the heap from the best document to the worst, after sorting no more documents may be offered.
+    private void sort() {
+        if (isSorted)
+            return;
+
+        // heap sort, the worst document is moved to the end of the heap every iteration.
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+
+        isSorted = true;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isWorse(index, parent))
+                return;
+
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int heapSize) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && isWorse(left, worst))
+                worst = left;
+            if (right < heapSize && isWorse(right, worst))
+                worst = right;
+            if (worst == index)
+                return;
+
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    // true if the document at i has a lower score than the document at j, or an equal score and a higher docID.
+    private boolean isWorse(int i, int j) {
+        return scores[i] < scores[j] || (scores[i] == scores[j] && documents[i] > documents[j]);
+    }
+
+    private void swap(int i, int j) {
+        int document = documents[i];
+        documents[i] = documents[j];
+        documents[j] = document;
+
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
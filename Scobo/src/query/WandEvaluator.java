@@ -0,0 +1,198 @@
+package query;
+
+import indexer.BlockMaxList;
+import indexer.PostingList;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates a query document at a time using the WAND algorithm, and the
+ * Block-Max WAND algorithm for terms that have block maxima.
+ *
+ * <p> Every posting list of the query is traversed by a cursor in increasing docID order,
+ * and every term has an upper bound of its score in any document (its weight in the query
+ * multiplied by the score bound stored in the index). A document is only scored if the sum of the
+ * bounds of the terms that may appear in it is higher than the lowest score in the ranking,
+ * the cursors skip over all the documents that cannot enter the ranking.
+ * When block maxima are available the same check is made again using the bounds of the blocks
+ * the document falls in, which are much tighter than the bounds of the whole posting lists.
+ *
+ * <p> Since documents are scored in increasing docID order and the ranking prefers lower docIDs
+ * when scores are equal, a document whose bound equals the lowest score in the ranking can be skipped,
+ * so the ranking produced is the same as the one produced by scoring every document.
+ */
+final class WandEvaluator {
+
+    /**
+     * relative margin added to the bounds so rounding errors in the
+     * summation of scores never cause a document to be skipped wrongly.
+     */
+    static final double BOUND_MARGIN = 1e-9;
+
+    /**
+     * the number of evaluation steps between two checks of whether the evaluation was cancelled.
+     */
+    static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private static final int END = PostingCursor.END;
+
+    private final Ranker ranker;
+    // cursors of the query terms, sorted by their current document.
+    private final PostingCursor[] cursors;
+    private final boolean hasBlockMax;
+
+    /**
+     * Creates an evaluator for a query.
+     * @param ranker the ranker of the query, the documents are ranked through it.
+     * @param plan the plan of the query.
+     * @param postingLists the posting lists of the plan (by plan index), may contain nulls.
+     * @param blockMaxLists the block maxima of the plan (by plan index), null where unavailable.
+     */
+    WandEvaluator(Ranker ranker, QueryPlan plan, PostingList[] postingLists, BlockMaxList[] blockMaxLists) {
+        this(ranker, plan, postingLists, blockMaxLists, 0, END);
+    }
+
+    /**
+     * Creates an evaluator for the documents of a query in a range of docIDs.
+     * @param ranker the ranker of the query, the documents are ranked through it.
+     * @param plan the plan of the query.
+     * @param postingLists the posting lists of the plan (by plan index), may contain nulls.
+     * @param blockMaxLists the block maxima of the plan (by plan index), null where unavailable.
+     * @param from the first docID of the range.
+     * @param to the docID past the end of the range.
+     */
+    WandEvaluator(Ranker ranker, QueryPlan plan, PostingList[] postingLists, BlockMaxList[] blockMaxLists, int from, int to) {
+        this.ranker = ranker;
+
+        PostingCursor[] cursors = new PostingCursor[plan.size()];
+        boolean hasBlockMax = false;
+        int count = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (postingLists[i] == null)
+                continue;
+
+            int start = PostingCursor.positionOf(postingLists[i], from);
+            int end = PostingCursor.positionOf(postingLists[i], to);
+            if (start == end)
+                continue;
+
+            cursors[count++] = new PostingCursor(i, postingLists[i], start, end, plan.weightAt(i),
+                    plan.scoreBoundAt(i) * (1 + BOUND_MARGIN), blockMaxLists[i]);
+            hasBlockMax |= blockMaxLists[i] != null;
+        }
+
+        this.cursors = Arrays.copyOf(cursors, count);
+        this.hasBlockMax = hasBlockMax;
+    }
+
+    /**
+     * @param plan the plan of a query.
+     * @param ranker the ranker of the query.
+     * @return true if the query can be evaluated with WAND, that is if the index has
+     * score bounds for all the terms in the plan and they bound the scores of the ranker.
+     */
+    static boolean canEvaluate(QueryPlan plan, Ranker ranker) {
+        if (!ranker.hasIndexBounds())
+            return false;
+
+        for (int i = 0; i < plan.size(); i++) {
+            double weight = plan.weightAt(i);
+            if (plan.scoreBoundAt(i) < 0 || weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Ranks all the documents that can enter the ranking of the ranker, unless the evaluation is
+     * cancelled in which case the ranking holds the documents that were scored before it was cancelled.
+     * @param isCancelled checked every {@link #CANCEL_CHECK_INTERVAL} steps, the evaluation stops once it is true.
+     * @return true if the evaluation completed, false if it was cancelled.
+     */
+    boolean evaluate(BooleanSupplier isCancelled) {
+        sortCursors();
+        for (int step = 1; ; step++) {
+            if (step % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean())
+                return false;
+
+            double threshold = ranker.threshold();
+
+            // the pivot is the first cursor at which the sum of the bounds exceeds the threshold,
+            // documents before the pivot document can only contain the terms before the pivot.
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < cursors.length && cursors[i].document != END; i++) {
+                bound += cursors[i].bound;
+                if (bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+
+            if (pivot < 0)
+                return true;
+
+            int pivotDocument = cursors[pivot].document;
+            while (pivot + 1 < cursors.length && cursors[pivot + 1].document == pivotDocument)
+                pivot++;
+
+            if (hasBlockMax && skipBlocks(pivot, pivotDocument, threshold))
+                continue;
+
+            if (cursors[0].document == pivotDocument) {
+                // all the cursors up to the pivot are on the pivot document.
+                double score = 0;
+                for (int i = 0; i <= pivot; i++)
+                    score += cursors[i].weight * ranker.documentScore(pivotDocument, cursors[i].frequency());
+
+                ranker.updateRanking(pivotDocument, score);
+                for (int i = 0; i <= pivot; i++)
+                    cursors[i].next();
+            }
+            else {
+                for (int i = 0; i < pivot; i++)
+                    cursors[i].advance(pivotDocument);
+            }
+
+            sortCursors();
+        }
+    }
+
+    // checks the block maxima of the cursors up to the pivot, if the blocks cannot
+    // exceed the threshold the cursors are moved past the blocks and true is returned.
+    private boolean skipBlocks(int pivot, int pivotDocument, double threshold) {
+        double blockBound = 0;
+        long nextDocument = pivot + 1 < cursors.length ? cursors[pivot + 1].document : END;
+        for (int i = 0; i <= pivot; i++) {
+            blockBound += cursors[i].blockBound(pivotDocument, BOUND_MARGIN);
+            nextDocument = Math.min(nextDocument, (long) cursors[i].blockEnd + 1);
+        }
+
+        if (blockBound > threshold)
+            return false;
+
+        // no document before the end of the blocks (or the next cursor) can exceed the threshold.
+        int target = (int) Math.min(nextDocument, END);
+        for (int i = 0; i <= pivot; i++)
+            cursors[i].advance(target);
+
+        sortCursors();
+        return true;
+    }
+
+    // insertion sort of the cursors by their current document and then by their plan order,
+    // the cursors are almost sorted after each step so this is close to linear.
+    private void sortCursors() {
+        for (int i = 1; i < cursors.length; i++) {
+            PostingCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].isAfter(cursor)) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import indexer.DocumentMap;
+import query.QueryPriority;
+import query.QueryProcessor;
+import query.QueryResult;
+import util.Configuration;
+import util.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * Handles search requests of the form
+ * {@code GET /search?q=<query>[&k=<result size>][&timeout=<milliseconds>][&priority=interactive|batch][&terms=<term budget>]}.
+ *
+ * <p> The query is processed by the shared query processor and the response is a compact
+ * json object holding the ranked documents:
+ * <pre>
+ *     {"query":"...","partial":false,"dropped":[],"results":[{"docID":12,"name":"FBIS3-1","score":7.53},...]}
+ * </pre>
+ * where partial is true if the query passed its timeout and the results are the best found until then,
+ * and dropped holds the terms that were dropped if the query had more terms than its term budget.
+ * Errors are returned as {@code {"error":"..."}} with a 4xx or 5xx status, a request that was rejected because
+ * the query processor is overloaded is answered with {@code {"error":"overloaded"}} and status 503,
+ * and a search that failed is answered with status 500.
+ */
+class SearchHandler implements HttpHandler {
+
+    /**
+     * the largest number of documents a single request may ask for.
+     */
+    static final int MAX_RESULT_SIZE = 1000;
+
+    /**
+     * Searches a query without blocking, with the arguments of
+     * {@link QueryProcessor#queryAsync(int, long, QueryPriority, int, String...)}.
+     */
+    interface Search {
+        CompletableFuture<QueryResult> search(int resultSize, long timeout, QueryPriority priority, int termBudget,
+                                              String query);
+    }
+
+    private final Search search;
+    // the name of a document by its docID.
+    private final IntFunction<String> documentNames;
+
+    /**
+     * Creates a handler that searches using the given query processor.
+     * @param queryProcessor the query processor shared by all the requests.
+     * @param documentMap the document map of the index, used to name the documents.
+     */
+    SearchHandler(QueryProcessor queryProcessor, DocumentMap documentMap) {
+        this(queryProcessor::queryAsync, docID -> documentMap.lookup(docID).map(document -> document.name).orElse(""));
+    }
+
+    /**
+     * Creates a handler that searches using the given search.
+     * @param search searches the queries of the requests.
+     * @param documentNames the name of a document by its docID.
+     */
+    SearchHandler(Search search, IntFunction<String> documentNames) {
+        this.search = search;
+        this.documentNames = documentNames;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "only GET requests are supported");
+                return;
+            }
+
+            Map<String, String> parameters;
+            try {
+                parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "malformed query string");
+                return;
+            }
+
+            String query = parameters.get("q");
+            if (query == null || query.trim().isEmpty()) {
+                sendError(exchange, 400, "missing query parameter q");
+                return;
+            }
+
+            int resultSize;
+            long timeout;
+            int termBudget;
+            try {
+                resultSize = Integer.parseInt(parameters.getOrDefault("k", String.valueOf(QueryProcessor.DEFAULT_RESULT_SIZE)));
+                timeout = Long.parseLong(parameters.getOrDefault("timeout", "0"));
+                termBudget = Integer.parseInt(parameters.getOrDefault("terms",
+                        String.valueOf(Configuration.getInstance().getQueryTermBudget())));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "k, timeout and terms must be numbers");
+                return;
+            }
+
+            if (resultSize <= 0 || resultSize > MAX_RESULT_SIZE || timeout < 0 || termBudget < 0) {
+                sendError(exchange, 400, "k must be between 1 and " + MAX_RESULT_SIZE
+                        + " and timeout and terms must not be negative");
+                return;
+            }
+
+            QueryPriority priority;
+            try {
+                priority = QueryPriority.valueOf(parameters.getOrDefault("priority", "interactive").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "priority must be interactive or batch");
+                return;
+            }
+
+            QueryResult result = search.search(resultSize, timeout, priority, termBudget, query).join();
+            if (result.isOverloaded())
+                sendError(exchange, 503, "overloaded");
+            else
+                send(exchange, 200, toJson(query, result));
+        }
+        catch (RuntimeException e) {
+            // the search failed (a CompletionException) or the handler has a bug, either way the client gets an answer.
+            Logger.getInstance().error(e);
+            sendError(exchange, 500, "the query could not be processed");
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // creates the json response of the result of the query.
+    private String toJson(String query, QueryResult result) {
+        int[] ranking = result.resultOf(query).orElse(new int[0]);
+        double[] scores = result.scoresOf(query).orElse(new double[0]);
+
+        StringBuilder json = new StringBuilder(64 + ranking.length * 48);
+        json.append("{\"query\":").append(quote(query))
+                .append(",\"partial\":").append(result.isPartial())
+                .append(",\"dropped\":[");
+        String[] dropped = result.droppedTermsOf(query);
+        for (int i = 0; i < dropped.length; i++) {
+            if (i > 0)
+                json.append(',');
+            json.append(quote(dropped[i]));
+        }
+
+        json.append("],\"results\":[");
+        for (int i = 0; i < ranking.length; i++) {
+            if (i > 0)
+                json.append(',');
+
+            String name = documentNames.apply(ranking[i]);
+            json.append("{\"docID\":").append(ranking[i])
+                    .append(",\"name\":").append(quote(name))
+                    .append(",\"score\":").append(scores[i])
+                    .append('}');
+        }
+
+        return json.append("]}").toString();
+    }
+
+    // parses the parameters of a url query string.
+    private static Map<String, String> parseParameters(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null)
+            return parameters;
+
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator <= 0)
+                continue;
+
+            parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+
+        return parameters;
+    }
+
+    // quotes and escapes a string as a json string.
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    else
+                        quoted.append(c);
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    // sends an error response.
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "{\"error\":" + quote(message) + "}");
+    }
+
+    // sends a json response.
+    static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
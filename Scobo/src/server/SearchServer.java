@@ -0,0 +1,141 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import indexer.Dictionary;
+import indexer.DocumentMap;
+import query.QueryProcessor;
+import util.Configuration;
+import util.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless search server, exposes the search of a loaded index over http
+ * using the http server that is built into the jdk.
+ *
+ * <p> The index is loaded once when the server is created and every request is processed by the
+ * same {@link QueryProcessor}, so the dictionary, document map and caches are shared by all the requests.
+ * Requests are handled on a fixed thread pool, or on a virtual thread per request if the configuration
+ * asks for it and the java version supports virtual threads. The server exposes:
+ * <ul>
+ *     <li>{@code GET /search?q=<query>[&k=<result size>][&timeout=<milliseconds>]} - see {@link SearchHandler}.</li>
+ *     <li>{@code GET /health} - returns {@code {"status":"ok"}} while the server is running.</li>
+ * </ul>
+ *
+ * <p> The server is started from the command line with {@code java -cp Scobo.jar server.SearchServer [port]},
+ * it uses the index and options of the configuration file.
+ */
+public class SearchServer {
+
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final QueryProcessor queryProcessor;
+
+    /**
+     * Creates a server that searches the index at the configured index path, this constructor
+     * blocks while the index is loaded.
+     * @param port the port the server will listen on.
+     * @throws IOException if the index could not be loaded or the port could not be bound.
+     */
+    public SearchServer(int port) throws IOException {
+        Configuration config = Configuration.getInstance();
+        Dictionary dictionary = Dictionary.loadDictionary();
+        DocumentMap documentMap = DocumentMap.loadDocumentMap();
+        queryProcessor = new QueryProcessor(config.getIndexPath(), dictionary, documentMap);
+
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/search", new SearchHandler(queryProcessor, documentMap));
+        httpServer.createContext("/health", exchange -> {
+            try { SearchHandler.send(exchange, 200, "{\"status\":\"ok\"}"); }
+            finally { exchange.close(); }
+        });
+
+        executor = createExecutor(config);
+        httpServer.setExecutor(executor);
+    }
+
+    // creates the executor the requests are handled on according to the configuration.
+    private static ExecutorService createExecutor(Configuration config) {
+        if (config.getServerUseVirtualThreads()) {
+            // virtual threads are only available from java 21, so they are created reflectively.
+            try {
+                Method virtualExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) virtualExecutor.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Logger.getInstance().warn("virtual threads are not supported by this java version, using a thread pool");
+            }
+        }
+
+        return Executors.newFixedThreadPool(Math.max(1, config.getServerThreads()));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        httpServer.start();
+        Logger.getInstance().message("search server listening on port " + httpServer.getAddress().getPort());
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, requests in progress are given a short time to complete,
+     * after which the index is released.
+     */
+    public void stop() {
+        httpServer.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Logger.getInstance().warn(e);
+        }
+
+        queryProcessor.close();
+        Logger.getInstance().flushLog();
+    }
+
+    /**
+     * Starts a search server on the port given as the first argument,
+     * or on the configured port if no argument is given.
+     * @param args optional port.
+     */
+    public static void main(String[] args) {
+        int port = Configuration.getInstance().getServerPort();
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+
+            if (port < 0 || port > 65535) {
+                System.err.println("usage: SearchServer [port], the port must be a number between 0 and 65535");
+                System.exit(1);
+            }
+        }
+
+        try {
+            SearchServer server = new SearchServer(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+        } catch (IOException e) {
+            Logger.getInstance().error(e);
+            Logger.getInstance().flushLog();
+            System.exit(1);
+        }
+    }
+}
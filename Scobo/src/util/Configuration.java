@@ -21,6 +21,12 @@ public class Configuration {
 
     private static final String CONFIG_PATH = "scobo.properties";
 
+    // bm25 parameters of each index, magic numbers chosen through trial and error.
+    private static final double BM25_K = 1;
+    private static final double BM25_B = 0.3;
+    private static final double STEMMED_BM25_K = 0.4;
+    private static final double STEMMED_BM25_B = 0.9;
+
     private String corpusPath;
     private static final String CORPUS_PATH_PROP = "CorpusPath";
     private static final String DEFAULT_CORPUS_PATH = "data";
@@ -45,6 +51,110 @@ public class Configuration {
     private static final String USE_SEMANTIC_PROP = "UseSemantic";
     private static final boolean DEFAULT_USE_SEMANTIC = false;
 
+    private boolean useImpactOrder;
+    private static final String USE_IMPACT_ORDER_PROP = "UseImpactOrder";
+    private static final boolean DEFAULT_USE_IMPACT_ORDER = false;
+
+    private long queryTimeBudget;
+    private static final String QUERY_TIME_BUDGET_PROP = "QueryTimeBudget";
+    private static final long DEFAULT_QUERY_TIME_BUDGET = 0;
+
+    private long queryPostingBudget;
+    private static final String QUERY_POSTING_BUDGET_PROP = "QueryPostingBudget";
+    private static final long DEFAULT_QUERY_POSTING_BUDGET = 0;
+
+    private long queryByteBudget;
+    private static final String QUERY_BYTE_BUDGET_PROP = "QueryByteBudget";
+    private static final long DEFAULT_QUERY_BYTE_BUDGET = 0;
+
+    private long batchByteBudget;
+    private static final String BATCH_BYTE_BUDGET_PROP = "BatchByteBudget";
+    private static final long DEFAULT_BATCH_BYTE_BUDGET = 128L * 1024 * 1024;
+
+    private int maxConcurrentQueries;
+    private static final String MAX_CONCURRENT_QUERIES_PROP = "MaxConcurrentQueries";
+    private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 16;
+
+    private int maxQueuedQueries;
+    private static final String MAX_QUEUED_QUERIES_PROP = "MaxQueuedQueries";
+    private static final int DEFAULT_MAX_QUEUED_QUERIES = 256;
+
+    private int queryTermBudget;
+    private static final String QUERY_TERM_BUDGET_PROP = "QueryTermBudget";
+    private static final int DEFAULT_QUERY_TERM_BUDGET = 0;
+
+    private int semanticCascadeSize;
+    private static final String SEMANTIC_CASCADE_SIZE_PROP = "SemanticCascadeSize";
+    private static final int DEFAULT_SEMANTIC_CASCADE_SIZE = 0;
+
+    private long parallelScoringPostings;
+    private static final String PARALLEL_SCORING_POSTINGS_PROP = "ParallelScoringPostings";
+    private static final long DEFAULT_PARALLEL_SCORING_POSTINGS = 200_000;
+
+    private int resultCacheSize;
+    private static final String RESULT_CACHE_SIZE_PROP = "ResultCacheSize";
+    private static final int DEFAULT_RESULT_CACHE_SIZE = 1024;
+
+    private long postingCacheBytes;
+    private static final String POSTING_CACHE_BYTES_PROP = "PostingCacheBytes";
+    private static final long DEFAULT_POSTING_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private int postingCacheHotTerms;
+    private static final String POSTING_CACHE_HOT_TERMS_PROP = "PostingCacheHotTerms";
+    private static final int DEFAULT_POSTING_CACHE_HOT_TERMS = 1024;
+
+    private int serverPort;
+    private static final String SERVER_PORT_PROP = "ServerPort";
+    private static final int DEFAULT_SERVER_PORT = 8080;
+
+    private int serverThreads;
+    private static final String SERVER_THREADS_PROP = "ServerThreads";
+    private static final int DEFAULT_SERVER_THREADS = 16;
+
+    private boolean serverUseVirtualThreads;
+    private static final String SERVER_USE_VIRTUAL_THREADS_PROP = "ServerUseVirtualThreads";
+    private static final boolean DEFAULT_SERVER_USE_VIRTUAL_THREADS = false;
+
+    private long plannerFetchNanos;
+    private static final String PLANNER_FETCH_NANOS_PROP = "PlannerFetchNanos";
+    private static final long DEFAULT_PLANNER_FETCH_NANOS = 20_000;
+
+    private long plannerReadNanos;
+    private static final String PLANNER_READ_NANOS_PROP = "PlannerReadNanos";
+    private static final long DEFAULT_PLANNER_READ_NANOS = 20_000;
+
+    private double plannerReadNanosPerByte;
+    private static final String PLANNER_READ_NANOS_PER_BYTE_PROP = "PlannerReadNanosPerByte";
+    private static final double DEFAULT_PLANNER_READ_NANOS_PER_BYTE = 1;
+
+    private double plannerDecodeNanosPerPosting;
+    private static final String PLANNER_DECODE_NANOS_PER_POSTING_PROP = "PlannerDecodeNanosPerPosting";
+    private static final double DEFAULT_PLANNER_DECODE_NANOS_PER_POSTING = 4;
+
+    private double plannerTermAtATimeNanosPerPosting;
+    private static final String PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING_PROP = "PlannerTermAtATimeNanosPerPosting";
+    private static final double DEFAULT_PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING = 3;
+
+    private double plannerCollectNanosPerDocument;
+    private static final String PLANNER_COLLECT_NANOS_PER_DOCUMENT_PROP = "PlannerCollectNanosPerDocument";
+    private static final double DEFAULT_PLANNER_COLLECT_NANOS_PER_DOCUMENT = 5;
+
+    private double plannerDocumentAtATimeNanosPerPosting;
+    private static final String PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING_PROP = "PlannerDocumentAtATimeNanosPerPosting";
+    private static final double DEFAULT_PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING = 12;
+
+    private double plannerScoreAtATimeNanosPerPosting;
+    private static final String PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING_PROP = "PlannerScoreAtATimeNanosPerPosting";
+    private static final double DEFAULT_PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING = 5;
+
+    private double plannerCandidateNanosPerLine;
+    private static final String PLANNER_CANDIDATE_NANOS_PER_LINE_PROP = "PlannerCandidateNanosPerLine";
+    private static final double DEFAULT_PLANNER_CANDIDATE_NANOS_PER_LINE = 30;
+
+    private double plannerPrunedFraction;
+    private static final String PLANNER_PRUNED_FRACTION_PROP = "PlannerPrunedFraction";
+    private static final double DEFAULT_PLANNER_PRUNED_FRACTION = 0.4;
+
     private Configuration() {
         File configFile = new File(CONFIG_PATH);
         if (!configFile.exists())
@@ -65,6 +175,59 @@ public class Configuration {
             this.logPath = properties.getProperty(LOG_PATH_PROP);
             this.useStemmer = Boolean.parseBoolean(properties.getProperty(USE_STEMMER_PROP));
             this.useSemantic = Boolean.parseBoolean(properties.getProperty(USE_SEMANTIC_PROP));
+            // properties that were added later may be missing from older configuration files.
+            this.useImpactOrder = Boolean.parseBoolean(properties.getProperty(
+                    USE_IMPACT_ORDER_PROP, String.valueOf(DEFAULT_USE_IMPACT_ORDER)));
+            this.queryTimeBudget = Long.parseLong(properties.getProperty(
+                    QUERY_TIME_BUDGET_PROP, String.valueOf(DEFAULT_QUERY_TIME_BUDGET)));
+            this.queryPostingBudget = Long.parseLong(properties.getProperty(
+                    QUERY_POSTING_BUDGET_PROP, String.valueOf(DEFAULT_QUERY_POSTING_BUDGET)));
+            this.queryByteBudget = Long.parseLong(properties.getProperty(
+                    QUERY_BYTE_BUDGET_PROP, String.valueOf(DEFAULT_QUERY_BYTE_BUDGET)));
+            this.batchByteBudget = Long.parseLong(properties.getProperty(
+                    BATCH_BYTE_BUDGET_PROP, String.valueOf(DEFAULT_BATCH_BYTE_BUDGET)));
+            this.maxConcurrentQueries = Integer.parseInt(properties.getProperty(
+                    MAX_CONCURRENT_QUERIES_PROP, String.valueOf(DEFAULT_MAX_CONCURRENT_QUERIES)));
+            this.maxQueuedQueries = Integer.parseInt(properties.getProperty(
+                    MAX_QUEUED_QUERIES_PROP, String.valueOf(DEFAULT_MAX_QUEUED_QUERIES)));
+            this.queryTermBudget = Integer.parseInt(properties.getProperty(
+                    QUERY_TERM_BUDGET_PROP, String.valueOf(DEFAULT_QUERY_TERM_BUDGET)));
+            this.semanticCascadeSize = Integer.parseInt(properties.getProperty(
+                    SEMANTIC_CASCADE_SIZE_PROP, String.valueOf(DEFAULT_SEMANTIC_CASCADE_SIZE)));
+            this.parallelScoringPostings = Long.parseLong(properties.getProperty(
+                    PARALLEL_SCORING_POSTINGS_PROP, String.valueOf(DEFAULT_PARALLEL_SCORING_POSTINGS)));
+            this.resultCacheSize = Integer.parseInt(properties.getProperty(
+                    RESULT_CACHE_SIZE_PROP, String.valueOf(DEFAULT_RESULT_CACHE_SIZE)));
+            this.postingCacheBytes = Long.parseLong(properties.getProperty(
+                    POSTING_CACHE_BYTES_PROP, String.valueOf(DEFAULT_POSTING_CACHE_BYTES)));
+            this.postingCacheHotTerms = Integer.parseInt(properties.getProperty(
+                    POSTING_CACHE_HOT_TERMS_PROP, String.valueOf(DEFAULT_POSTING_CACHE_HOT_TERMS)));
+            this.serverPort = Integer.parseInt(properties.getProperty(
+                    SERVER_PORT_PROP, String.valueOf(DEFAULT_SERVER_PORT)));
+            this.serverThreads = Integer.parseInt(properties.getProperty(
+                    SERVER_THREADS_PROP, String.valueOf(DEFAULT_SERVER_THREADS)));
+            this.serverUseVirtualThreads = Boolean.parseBoolean(properties.getProperty(
+                    SERVER_USE_VIRTUAL_THREADS_PROP, String.valueOf(DEFAULT_SERVER_USE_VIRTUAL_THREADS)));
+            this.plannerFetchNanos = Long.parseLong(properties.getProperty(
+                    PLANNER_FETCH_NANOS_PROP, String.valueOf(DEFAULT_PLANNER_FETCH_NANOS)));
+            this.plannerReadNanos = Long.parseLong(properties.getProperty(
+                    PLANNER_READ_NANOS_PROP, String.valueOf(DEFAULT_PLANNER_READ_NANOS)));
+            this.plannerReadNanosPerByte = Double.parseDouble(properties.getProperty(
+                    PLANNER_READ_NANOS_PER_BYTE_PROP, String.valueOf(DEFAULT_PLANNER_READ_NANOS_PER_BYTE)));
+            this.plannerDecodeNanosPerPosting = Double.parseDouble(properties.getProperty(
+                    PLANNER_DECODE_NANOS_PER_POSTING_PROP, String.valueOf(DEFAULT_PLANNER_DECODE_NANOS_PER_POSTING)));
+            this.plannerTermAtATimeNanosPerPosting = Double.parseDouble(properties.getProperty(
+                    PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(DEFAULT_PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING)));
+            this.plannerCollectNanosPerDocument = Double.parseDouble(properties.getProperty(
+                    PLANNER_COLLECT_NANOS_PER_DOCUMENT_PROP, String.valueOf(DEFAULT_PLANNER_COLLECT_NANOS_PER_DOCUMENT)));
+            this.plannerDocumentAtATimeNanosPerPosting = Double.parseDouble(properties.getProperty(
+                    PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(DEFAULT_PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING)));
+            this.plannerScoreAtATimeNanosPerPosting = Double.parseDouble(properties.getProperty(
+                    PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(DEFAULT_PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING)));
+            this.plannerCandidateNanosPerLine = Double.parseDouble(properties.getProperty(
+                    PLANNER_CANDIDATE_NANOS_PER_LINE_PROP, String.valueOf(DEFAULT_PLANNER_CANDIDATE_NANOS_PER_LINE)));
+            this.plannerPrunedFraction = Double.parseDouble(properties.getProperty(
+                    PLANNER_PRUNED_FRACTION_PROP, String.valueOf(DEFAULT_PLANNER_PRUNED_FRACTION)));
         } catch (IOException e) {
             Logger.getInstance().error(e);
         }
@@ -79,6 +242,32 @@ public class Configuration {
         this.logPath = DEFAULT_LOG_PATH;
         this.useStemmer = DEFAULT_USE_STEMMER;
         this.useSemantic = DEFAULT_USE_SEMANTIC;
+        this.useImpactOrder = DEFAULT_USE_IMPACT_ORDER;
+        this.queryTimeBudget = DEFAULT_QUERY_TIME_BUDGET;
+        this.queryPostingBudget = DEFAULT_QUERY_POSTING_BUDGET;
+        this.queryByteBudget = DEFAULT_QUERY_BYTE_BUDGET;
+        this.batchByteBudget = DEFAULT_BATCH_BYTE_BUDGET;
+        this.maxConcurrentQueries = DEFAULT_MAX_CONCURRENT_QUERIES;
+        this.maxQueuedQueries = DEFAULT_MAX_QUEUED_QUERIES;
+        this.queryTermBudget = DEFAULT_QUERY_TERM_BUDGET;
+        this.semanticCascadeSize = DEFAULT_SEMANTIC_CASCADE_SIZE;
+        this.parallelScoringPostings = DEFAULT_PARALLEL_SCORING_POSTINGS;
+        this.resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
+        this.postingCacheBytes = DEFAULT_POSTING_CACHE_BYTES;
+        this.postingCacheHotTerms = DEFAULT_POSTING_CACHE_HOT_TERMS;
+        this.serverPort = DEFAULT_SERVER_PORT;
+        this.serverThreads = DEFAULT_SERVER_THREADS;
+        this.serverUseVirtualThreads = DEFAULT_SERVER_USE_VIRTUAL_THREADS;
+        this.plannerFetchNanos = DEFAULT_PLANNER_FETCH_NANOS;
+        this.plannerReadNanos = DEFAULT_PLANNER_READ_NANOS;
+        this.plannerReadNanosPerByte = DEFAULT_PLANNER_READ_NANOS_PER_BYTE;
+        this.plannerDecodeNanosPerPosting = DEFAULT_PLANNER_DECODE_NANOS_PER_POSTING;
+        this.plannerTermAtATimeNanosPerPosting = DEFAULT_PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING;
+        this.plannerCollectNanosPerDocument = DEFAULT_PLANNER_COLLECT_NANOS_PER_DOCUMENT;
+        this.plannerDocumentAtATimeNanosPerPosting = DEFAULT_PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING;
+        this.plannerScoreAtATimeNanosPerPosting = DEFAULT_PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING;
+        this.plannerCandidateNanosPerLine = DEFAULT_PLANNER_CANDIDATE_NANOS_PER_LINE;
+        this.plannerPrunedFraction = DEFAULT_PLANNER_PRUNED_FRACTION;
         updateConfig();
     }
 
@@ -95,6 +284,32 @@ public class Configuration {
         properties.setProperty(LOG_PATH_PROP, this.logPath);
         properties.setProperty(USE_STEMMER_PROP, String.valueOf(this.useStemmer));
         properties.setProperty(USE_SEMANTIC_PROP, String.valueOf(this.useSemantic));
+        properties.setProperty(USE_IMPACT_ORDER_PROP, String.valueOf(this.useImpactOrder));
+        properties.setProperty(QUERY_TIME_BUDGET_PROP, String.valueOf(this.queryTimeBudget));
+        properties.setProperty(QUERY_POSTING_BUDGET_PROP, String.valueOf(this.queryPostingBudget));
+        properties.setProperty(QUERY_BYTE_BUDGET_PROP, String.valueOf(this.queryByteBudget));
+        properties.setProperty(BATCH_BYTE_BUDGET_PROP, String.valueOf(this.batchByteBudget));
+        properties.setProperty(MAX_CONCURRENT_QUERIES_PROP, String.valueOf(this.maxConcurrentQueries));
+        properties.setProperty(MAX_QUEUED_QUERIES_PROP, String.valueOf(this.maxQueuedQueries));
+        properties.setProperty(QUERY_TERM_BUDGET_PROP, String.valueOf(this.queryTermBudget));
+        properties.setProperty(SEMANTIC_CASCADE_SIZE_PROP, String.valueOf(this.semanticCascadeSize));
+        properties.setProperty(PARALLEL_SCORING_POSTINGS_PROP, String.valueOf(this.parallelScoringPostings));
+        properties.setProperty(RESULT_CACHE_SIZE_PROP, String.valueOf(this.resultCacheSize));
+        properties.setProperty(POSTING_CACHE_BYTES_PROP, String.valueOf(this.postingCacheBytes));
+        properties.setProperty(POSTING_CACHE_HOT_TERMS_PROP, String.valueOf(this.postingCacheHotTerms));
+        properties.setProperty(SERVER_PORT_PROP, String.valueOf(this.serverPort));
+        properties.setProperty(SERVER_THREADS_PROP, String.valueOf(this.serverThreads));
+        properties.setProperty(SERVER_USE_VIRTUAL_THREADS_PROP, String.valueOf(this.serverUseVirtualThreads));
+        properties.setProperty(PLANNER_FETCH_NANOS_PROP, String.valueOf(this.plannerFetchNanos));
+        properties.setProperty(PLANNER_READ_NANOS_PROP, String.valueOf(this.plannerReadNanos));
+        properties.setProperty(PLANNER_READ_NANOS_PER_BYTE_PROP, String.valueOf(this.plannerReadNanosPerByte));
+        properties.setProperty(PLANNER_DECODE_NANOS_PER_POSTING_PROP, String.valueOf(this.plannerDecodeNanosPerPosting));
+        properties.setProperty(PLANNER_TERM_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(this.plannerTermAtATimeNanosPerPosting));
+        properties.setProperty(PLANNER_COLLECT_NANOS_PER_DOCUMENT_PROP, String.valueOf(this.plannerCollectNanosPerDocument));
+        properties.setProperty(PLANNER_DOCUMENT_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(this.plannerDocumentAtATimeNanosPerPosting));
+        properties.setProperty(PLANNER_SCORE_AT_A_TIME_NANOS_PER_POSTING_PROP, String.valueOf(this.plannerScoreAtATimeNanosPerPosting));
+        properties.setProperty(PLANNER_CANDIDATE_NANOS_PER_LINE_PROP, String.valueOf(this.plannerCandidateNanosPerLine));
+        properties.setProperty(PLANNER_PRUNED_FRACTION_PROP, String.valueOf(this.plannerPrunedFraction));
 
         try {
             FileWriter propWriter = new FileWriter(CONFIG_PATH);
@@ -155,19 +370,287 @@ public class Configuration {
      */
     public void setUseSemantic(boolean useSemantic) { this.useSemantic = useSemantic; }
 
+    /**
+     * Changes weather or not the indexer will write the impact ordered layout of the index,
+     * and weather or not queries will be evaluated using it if it exists. This change only applies to
+     * the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param useImpactOrder true if the engine should use the impact ordered layout, false otherwise.
+     */
+    public void setUseImpactOrder(boolean useImpactOrder) { this.useImpactOrder = useImpactOrder; }
+
+    /**
+     * Changes the time in milliseconds a query evaluated on the impact ordered layout may take
+     * before returning the best results found so far (0 for no limit), this change only applies to
+     * the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param queryTimeBudget the time budget of a query in milliseconds.
+     */
+    public void setQueryTimeBudget(long queryTimeBudget) { this.queryTimeBudget = queryTimeBudget; }
+
+    /**
+     * Changes the number of postings a query may score before returning the best results found so far
+     * (0 for no limit). A query evaluated on the posting lines of the inverted file only reads the lines
+     * of its most important terms that fit in the budget, and a query evaluated on the impact ordered layout
+     * stops scoring once the budget runs out. This change only applies to
+     * the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param queryPostingBudget the posting budget of a query.
+     */
+    public void setQueryPostingBudget(long queryPostingBudget) { this.queryPostingBudget = queryPostingBudget; }
+
+    /**
+     * Changes the number of bytes of posting lines a query may read (0 for no limit), a query
+     * only reads the lines of its most important terms that fit in the budget. This change only applies to
+     * the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param queryByteBudget the byte budget of a query.
+     */
+    public void setQueryByteBudget(long queryByteBudget) { this.queryByteBudget = queryByteBudget; }
+
+    /**
+     * Changes the number of bytes of posting lines a batch of queries holds in memory at the same time
+     * (0 for no limit), a batch whose lines do not fit is searched in waves of queries whose lines fit.
+     * This change only applies to the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param batchByteBudget the byte budget of a batch.
+     */
+    public void setBatchByteBudget(long batchByteBudget) { this.batchByteBudget = batchByteBudget; }
+
+    /**
+     * Changes the number of query requests a query processor processes at the same time (0 for no limit),
+     * requests beyond it wait in a queue. This change only applies to query processors created after it
+     * during the current run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param maxConcurrentQueries the number of requests processed at the same time.
+     */
+    public void setMaxConcurrentQueries(int maxConcurrentQueries) { this.maxConcurrentQueries = maxConcurrentQueries; }
+
+    /**
+     * Changes the number of query requests that may wait for their turn to be processed, requests beyond it
+     * are rejected as overloaded. This change only applies to query processors created after it during the
+     * current run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param maxQueuedQueries the number of requests that may wait.
+     */
+    public void setMaxQueuedQueries(int maxQueuedQueries) { this.maxQueuedQueries = maxQueuedQueries; }
+
+    /**
+     * Changes the number of terms a query is reduced to (0 for no limit), a query with more terms only keeps
+     * the terms with the highest estimated contribution (idf multiplied by the frequency in the query) and the
+     * dropped terms are reported. Requests may set their own budget, this is the budget of the requests that do not.
+     * This change only applies to the current run of the engine, and will not persist
+     * unless the {@link Configuration#updateConfig()} method is called.
+     * @param queryTermBudget the number of terms a query is reduced to.
+     */
+    public void setQueryTermBudget(int queryTermBudget) { this.queryTermBudget = queryTermBudget; }
+
+    /**
+     * Changes the number of candidates the semantic ranking of a query is limited to (0 ranks every document),
+     * when it is set the documents are first ranked by bm25 on the query before it is semantically expanded
+     * and only the top candidates are scored by the semantic ranker. This change only applies to the current
+     * run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param semanticCascadeSize the number of candidates of the semantic ranking.
+     */
+    public void setSemanticCascadeSize(int semanticCascadeSize) { this.semanticCascadeSize = semanticCascadeSize; }
+
+    /**
+     * Changes the number of postings from which a query is scored in parallel over ranges of docIDs
+     * when there are idle CPU threads (0 disables parallel scoring). This change only applies to the current
+     * run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param parallelScoringPostings the number of postings from which a query is scored in parallel.
+     */
+    public void setParallelScoringPostings(long parallelScoringPostings) { this.parallelScoringPostings = parallelScoringPostings; }
+
+    /**
+     * Changes the number of query results held by the result cache of a query processor (0 disables the cache),
+     * this change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param resultCacheSize the number of results held by the cache.
+     */
+    public void setResultCacheSize(int resultCacheSize) { this.resultCacheSize = resultCacheSize; }
+
+    /**
+     * Changes the number of bytes the decoded posting lists cached by a query processor may take
+     * (0 disables the cache), this change only applies to query processors created after it during
+     * the current run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param postingCacheBytes the byte budget of the posting list cache.
+     */
+    public void setPostingCacheBytes(long postingCacheBytes) { this.postingCacheBytes = postingCacheBytes; }
+
+    /**
+     * Changes the number of posting lists of the terms with the highest document frequency that are
+     * cached when a query processor is created, this change only applies to query processors created after it
+     * during the current run of the engine, and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param postingCacheHotTerms the number of lists cached when the index is loaded.
+     */
+    public void setPostingCacheHotTerms(int postingCacheHotTerms) { this.postingCacheHotTerms = postingCacheHotTerms; }
+
+    /**
+     * Changes the port the search server listens on, this change only applies to
+     * servers started after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param serverPort the port of the search server.
+     */
+    public void setServerPort(int serverPort) { this.serverPort = serverPort; }
+
+    /**
+     * Changes the number of threads the search server handles requests on, this change only applies to
+     * servers started after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param serverThreads the number of request handling threads.
+     */
+    public void setServerThreads(int serverThreads) { this.serverThreads = serverThreads; }
+
+    /**
+     * Changes weather or not the search server handles every request on its own virtual thread
+     * instead of a thread pool (only if the java version supports virtual threads), this change only applies to
+     * servers started after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param serverUseVirtualThreads true if the server should use virtual threads, false otherwise.
+     */
+    public void setServerUseVirtualThreads(boolean serverUseVirtualThreads) { this.serverUseVirtualThreads = serverUseVirtualThreads; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to pass a posting line of a query through the IO threads, even
+     * if it is cached, one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerFetchNanos the time it takes to pass a line through the IO threads.
+     */
+    public void setPlannerFetchNanos(long plannerFetchNanos) { this.plannerFetchNanos = plannerFetchNanos; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to read a posting line from the inverted file, apart from the
+     * bytes of the line, one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerReadNanos the time a read takes apart from its bytes.
+     */
+    public void setPlannerReadNanos(long plannerReadNanos) { this.plannerReadNanos = plannerReadNanos; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to read a byte of a posting line, one of the costs the query
+     * planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerReadNanosPerByte the time it takes to read a byte.
+     */
+    public void setPlannerReadNanosPerByte(double plannerReadNanosPerByte) { this.plannerReadNanosPerByte = plannerReadNanosPerByte; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to decode a posting, one of the costs the query planner
+     * estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerDecodeNanosPerPosting the time it takes to decode a posting.
+     */
+    public void setPlannerDecodeNanosPerPosting(double plannerDecodeNanosPerPosting) { this.plannerDecodeNanosPerPosting = plannerDecodeNanosPerPosting; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to add a posting to the score accumulator of a query evaluated
+     * term at a time, one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerTermAtATimeNanosPerPosting the time it takes to add a posting to the score accumulator.
+     */
+    public void setPlannerTermAtATimeNanosPerPosting(double plannerTermAtATimeNanosPerPosting) { this.plannerTermAtATimeNanosPerPosting = plannerTermAtATimeNanosPerPosting; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to move a document from the score accumulator to the ranking,
+     * one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerCollectNanosPerDocument the time it takes to move a document to the ranking.
+     */
+    public void setPlannerCollectNanosPerDocument(double plannerCollectNanosPerDocument) { this.plannerCollectNanosPerDocument = plannerCollectNanosPerDocument; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to score a posting through the cursors of the pruning
+     * evaluators (WAND and MaxScore), one of the costs the query planner estimates the evaluation strategies of a query
+     * by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerDocumentAtATimeNanosPerPosting the time it takes to score a posting document at a time.
+     */
+    public void setPlannerDocumentAtATimeNanosPerPosting(double plannerDocumentAtATimeNanosPerPosting) { this.plannerDocumentAtATimeNanosPerPosting = plannerDocumentAtATimeNanosPerPosting; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to score a posting of the impact ordered layout, one of the
+     * costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerScoreAtATimeNanosPerPosting the time it takes to score a posting score at a time.
+     */
+    public void setPlannerScoreAtATimeNanosPerPosting(double plannerScoreAtATimeNanosPerPosting) { this.plannerScoreAtATimeNanosPerPosting = plannerScoreAtATimeNanosPerPosting; }
+
+    /**
+     * Changes the estimated time in nanoseconds it takes to score a candidate of the semantic cascade in a single
+     * posting line, one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerCandidateNanosPerLine the time it takes to score a candidate in a line.
+     */
+    public void setPlannerCandidateNanosPerLine(double plannerCandidateNanosPerLine) { this.plannerCandidateNanosPerLine = plannerCandidateNanosPerLine; }
+
+    /**
+     * Changes the estimated part of the postings of a query with more than one posting line the pruning evaluators
+     * score, one of the costs the query planner estimates the evaluation strategies of a query by.
+     * This change only applies to query processors created after it during the current run of the engine,
+     * and will not persist unless the {@link Configuration#updateConfig()} method is called.
+     * @param plannerPrunedFraction the part of the postings the pruning evaluators score.
+     */
+    public void setPlannerPrunedFraction(double plannerPrunedFraction) { this.plannerPrunedFraction = plannerPrunedFraction; }
+
     public String getCorpusPath() { return corpusPath; }
     public String getIndexPath() { return indexPath; }
     public int getParserBatchSize() { return parserBatchSize; }
     public String getLogPath() { return logPath; }
     public boolean getUseStemmer() { return useStemmer; }
     public boolean getUseSemantic() { return useSemantic; }
+    public boolean getUseImpactOrder() { return useImpactOrder; }
+    public long getQueryTimeBudget() { return queryTimeBudget; }
+    public long getQueryPostingBudget() { return queryPostingBudget; }
+    public long getQueryByteBudget() { return queryByteBudget; }
+    public long getBatchByteBudget() { return batchByteBudget; }
+    public int getMaxConcurrentQueries() { return maxConcurrentQueries; }
+    public int getMaxQueuedQueries() { return maxQueuedQueries; }
+    public int getQueryTermBudget() { return queryTermBudget; }
+    public int getSemanticCascadeSize() { return semanticCascadeSize; }
+    public long getParallelScoringPostings() { return parallelScoringPostings; }
+    public int getResultCacheSize() { return resultCacheSize; }
+    public long getPostingCacheBytes() { return postingCacheBytes; }
+    public int getPostingCacheHotTerms() { return postingCacheHotTerms; }
+    public int getServerPort() { return serverPort; }
+    public int getServerThreads() { return serverThreads; }
+    public boolean getServerUseVirtualThreads() { return serverUseVirtualThreads; }
+    public long getPlannerFetchNanos() { return plannerFetchNanos; }
+    public long getPlannerReadNanos() { return plannerReadNanos; }
+    public double getPlannerReadNanosPerByte() { return plannerReadNanosPerByte; }
+    public double getPlannerDecodeNanosPerPosting() { return plannerDecodeNanosPerPosting; }
+    public double getPlannerTermAtATimeNanosPerPosting() { return plannerTermAtATimeNanosPerPosting; }
+    public double getPlannerCollectNanosPerDocument() { return plannerCollectNanosPerDocument; }
+    public double getPlannerDocumentAtATimeNanosPerPosting() { return plannerDocumentAtATimeNanosPerPosting; }
+    public double getPlannerScoreAtATimeNanosPerPosting() { return plannerScoreAtATimeNanosPerPosting; }
+    public double getPlannerCandidateNanosPerLine() { return plannerCandidateNanosPerLine; }
+    public double getPlannerPrunedFraction() { return plannerPrunedFraction; }
+
+    /**
+     * @return the bm25 k parameter of the index, the score bounds
+     * of the index are computed using this parameter.
+     */
+    public double getBM25K() { return useStemmer ? STEMMED_BM25_K : BM25_K; }
+
+    /**
+     * @return the bm25 b parameter of the index, the score bounds
+     * of the index are computed using this parameter.
+     */
+    public double getBM25B() { return useStemmer ? STEMMED_BM25_B : BM25_B; }
 
     public String getDictionaryPath() {
         return indexPath + "/"  + getUseStemmerPath() + "/dictionary.txt";
     }
 
     public String getDocumentMapPath() {
-        return indexPath + "/"  + getUseStemmerPath() + "/document_map.txt";
+        return indexPath + "/"  + getUseStemmerPath() + "/document_map.bin";
     }
 
     public String getPostingFilePath() {
@@ -178,6 +661,14 @@ public class Configuration {
         return indexPath + "/"  + getUseStemmerPath() + "/inverted_file.txt";
     }
 
+    public String getBlockMaxPath() {
+        return indexPath + "/"  + getUseStemmerPath() + "/block_max.bin";
+    }
+
+    public String getImpactPath() {
+        return indexPath + "/"  + getUseStemmerPath() + "/impacts.bin";
+    }
+
     public InputStream getGloVe() {
         if (useStemmer)
             return getClass().getClassLoader().getResourceAsStream("GloSim.stemmed");
@@ -121,6 +121,13 @@ public class CountLatch {
         return count.addAndGet(delta);
     }
 
+    /**
+     * @return the current count of the latch.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
     /**
      * Decrements the count of the latch, releasing all waiting threads if
      * the count reaches zero.
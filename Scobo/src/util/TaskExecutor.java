@@ -2,12 +2,19 @@ package util;
 
 import java.util.Comparator;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Thread pool used to execute tasks with varying priority.
  * This implementation is practically identical to {@code ThreadPoolExecutor}
  * apart from the ability to execute tasks with a given priority.
  *
+ * <p> Tasks with a higher priority are executed first, and tasks with the same priority are executed
+ * in the order they were enqueued. In order for tasks with a low priority not to starve while tasks
+ * with a higher priority keep arriving, the priority of a waiting task rises by one level every
+ * {@link #AGING_MILLIS} milliseconds, so a task is executed before any task of a higher priority that
+ * was enqueued more than {@code AGING_MILLIS} milliseconds per level of difference after it.
+ *
  * @see ThreadPoolExecutor
  */
 public class TaskExecutor extends ThreadPoolExecutor {
@@ -15,6 +22,16 @@ public class TaskExecutor extends ThreadPoolExecutor {
     public static final int PRIORITY_LOW        = 1;
     public static final int DEFAULT_PRIORITY    = 0;
     public static final int HIGH_PRIORITY       = -1;
+    public static final int INTERACTIVE_PRIORITY = -2;
+
+    /**
+     * the time in milliseconds it takes the priority of a waiting task to rise by one level.
+     */
+    public static final long AGING_MILLIS = 100;
+    private static final long AGING_NANOS = AGING_MILLIS * 1_000_000;
+
+    // orders the tasks with the same rank by the order they were enqueued.
+    private static final AtomicLong sequence = new AtomicLong(0);
 
     @SuppressWarnings({"unchecked"})
     public TaskExecutor(int poolSize, int initialSize) {
@@ -31,46 +48,47 @@ public class TaskExecutor extends ThreadPoolExecutor {
     public void execute(Runnable runnable) {
         if (runnable instanceof Task)
             super.execute(runnable);
-
-        super.execute(taskOf(runnable, 0));
+        else
+            super.execute(new Task(runnable, DEFAULT_PRIORITY));
     }
 
     /**
      * Enqueues a task with default priority to be
      * executed when there is an available thread.
      * @param runnable a task to be executed.
-     * @param priority the tasks priority {-1 (HIGH), 0 (DEFAULT), 1 (LOW)}
+     * @param priority the tasks priority {-2 (INTERACTIVE), -1 (HIGH), 0 (DEFAULT), 1 (LOW)}
      */
     public void execute(Runnable runnable, int priority) {
         if (runnable instanceof Task)
             super.execute(runnable);
-
-        super.execute(taskOf(runnable, priority));
+        else
+            super.execute(new Task(runnable, priority));
     }
 
-    // creates a task from the given runnable and priority.
-    private static Task taskOf(Runnable runnable, int priority) {
-        return new Task() {
-            @Override
-            public int getPriority() {
-                return priority;
-            }
+    // a runnable that can have a priority of execution.
+    private static final class Task implements Runnable {
 
-            @Override
-            public void run() {
-                runnable.run();
-            }
+        // tasks with a lower rank are executed first.
+        static final Comparator<Task> comparator = (first, second) -> {
+            int compare = Long.signum(first.rank - second.rank);
+            return compare != 0 ? compare : Long.compare(first.sequence, second.sequence);
         };
-    }
-
-    // a comparable runnable that can have a priority of execution.
-    private interface Task extends Runnable {
 
-        Comparator<Task> comparator = Comparator.comparingInt(Task::getPriority);
+        private final Runnable runnable;
+        // the time the task was enqueued delayed by its priority, the task is
+        // executed as if it was enqueued at this time with the highest priority.
+        private final long rank;
+        private final long sequence;
 
-        int getPriority();
+        Task(Runnable runnable, int priority) {
+            this.runnable = runnable;
+            this.rank = System.nanoTime() + (priority - INTERACTIVE_PRIORITY) * AGING_NANOS;
+            this.sequence = TaskExecutor.sequence.getAndIncrement();
+        }
 
         @Override
-        void run();
+        public void run() {
+            runnable.run();
+        }
     }
 }
@@ -1,6 +1,7 @@
 package util;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 
 import static util.TaskManager.*;
@@ -55,6 +56,7 @@ public final class TaskGroup {
     private CountLatch latch;
     private CountDownLatch groupLatch;
     private volatile boolean isOpen;
+    private volatile CompletableFuture<Void> completion;
 
     protected TaskGroup(TaskManager manager, TaskType type, TaskPriority priority) {
         this.manager = manager;
@@ -63,6 +65,7 @@ public final class TaskGroup {
         latch = new CountLatch(0);
         groupLatch = new CountDownLatch(0);
         isOpen = false;
+        completion = new CompletableFuture<>();
     }
 
     /**
@@ -80,6 +83,23 @@ public final class TaskGroup {
             manager.executeIO(task, priority.getVal());
     }
 
+    /**
+     * Adds a task to the group
+     * and schedules it through the TaskManager
+     * as a {@link TaskGroup#type} task with the given priority
+     * instead of the priority of the group.
+     *
+     * @param task a task to be executed
+     * @param priority the priority of the task
+     */
+    public void add(Runnable task, TaskPriority priority) {
+        latch.countUp();
+        if (type == TaskType.COMPUTE)
+            manager.executeCPU(task, priority.getVal());
+        if (type == TaskType.IO)
+            manager.executeIO(task, priority.getVal());
+    }
+
     /**
      * Adds a collection of tasks to the group
      * and schedules them through the TaskManager
@@ -122,6 +142,8 @@ public final class TaskGroup {
         if (!isOpen) {
             this.isOpen = true;
             this.groupLatch = new CountDownLatch(1);
+            if (completion.isDone())
+                this.completion = new CompletableFuture<>();
         }
     }
 
@@ -135,6 +157,8 @@ public final class TaskGroup {
         if (isOpen){
             this.isOpen = false;
             groupLatch.countDown();
+            if (latch.getCount() == 0)
+                completion.complete(null);
         }
     }
 
@@ -144,7 +168,25 @@ public final class TaskGroup {
      * in order to update the {@link #awaitCompletion()} mechanism.
      */
     public void complete() {
-        latch.countDown();
+        if (latch.countDown() == 0 && !isOpen)
+            completion.complete(null);
+    }
+
+    /**
+     * Returns a future that is completed when every task that was added to the group
+     * has called the {@link TaskGroup#complete()} method, the non blocking
+     * counterpart of {@link #awaitCompletion()}.
+     * The future is completed by the thread that completes the last task (or closes the group),
+     * so actions that depend on it should be short or run asynchronously.
+     *
+     * <p> Like {@link #awaitCompletion()} the future may be completed before all the planned
+     * tasks were added unless {@link TaskGroup#openGroup()} is used, the future returned
+     * after the group is opened is completed only after the group is closed.
+     *
+     * @return a future that is completed when the tasks of the group complete.
+     */
+    public CompletableFuture<Void> onCompletion() {
+        return completion;
     }
 
     /**
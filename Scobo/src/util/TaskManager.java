@@ -1,5 +1,8 @@
 package util;
 
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -20,7 +23,13 @@ public final class TaskManager {
 
     public enum TaskType {IO, COMPUTE}
 
+    /**
+     * Priorities of tasks, INTERACTIVE is meant for work a user is waiting on (such as a query typed in by a user)
+     * and LOW for bulk work (such as query files), a waiting task rises in priority over time
+     * so tasks with a low priority are not starved (see {@link TaskExecutor}).
+     */
     public enum TaskPriority {
+        INTERACTIVE(TaskExecutor.INTERACTIVE_PRIORITY),
         HIGH(TaskExecutor.HIGH_PRIORITY),
         DEFAULT(TaskExecutor.DEFAULT_PRIORITY),
         LOW(TaskExecutor.PRIORITY_LOW);
@@ -39,6 +48,8 @@ public final class TaskManager {
      */
     private TaskExecutor IOExecutor;
     private TaskExecutor CPUExecutor;
+    // runs the timers of the tasks that have a deadline.
+    private ScheduledThreadPoolExecutor timer;
 
     private TaskManager() {
         final int IOThreads = Runtime.getRuntime().availableProcessors();
@@ -46,6 +57,14 @@ public final class TaskManager {
 
         IOExecutor = new TaskExecutor(IOThreads, 128);
         CPUExecutor = new TaskExecutor(CPUThreads, 32768);
+
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "task timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // timers are usually cancelled since most tasks finish before their deadline.
+        timer.setRemoveOnCancelPolicy(true);
     }
 
     private static TaskManager taskManager = null;
@@ -75,7 +94,7 @@ public final class TaskManager {
      * the group as a single unit.
      * <p><em> The Task group will have MEDIUM priority
      * @param type the task type {IO, COMPUTE}
-     * @param priority the tasks priority {HIGH (>=), DEFAULT (>=), LOW}
+     * @param priority the tasks priority {INTERACTIVE (>=), HIGH (>=), DEFAULT (>=), LOW}
      * @return a Task Group object capable of executing tasks.
      * @see #getTaskGroup(TaskType)
      */
@@ -104,4 +123,33 @@ public final class TaskManager {
     public void executeCPU(Runnable task, int priority) {
         CPUExecutor.execute(task, priority);
     }
+
+    /**
+     * Runs the task once the given delay passes, on the single timer thread of the task manager.
+     * The task should be short (such as cancelling work or completing a future) since it delays
+     * all the other timers, any real work should be handed to the IO or CPU executors.
+     * @param task a task to execute.
+     * @param delay the delay in milliseconds.
+     * @return future of the timer, cancelling it before the delay passes keeps the task from running.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of CPU threads that are neither executing a task nor about to
+     * take a waiting task, that is the number of CPU threads additional work could use right now.
+     */
+    public int getIdleCPUThreads() {
+        int busy = CPUExecutor.getActiveCount() + CPUExecutor.getQueue().size();
+        return Math.max(0, CPUExecutor.getCorePoolSize() - busy);
+    }
+
+    /**
+     * @return the number of IO tasks waiting for a thread per IO thread, 0 if a new IO
+     * task would start right away, 1 if it would wait for about one task per thread to finish.
+     */
+    public double getIOBacklog() {
+        return (double) IOExecutor.getQueue().size() / IOExecutor.getCorePoolSize();
+    }
 }
@@ -0,0 +1,91 @@
+package indexer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parser.Document;
+import util.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DocumentMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String indexPath;
+
+    @Before
+    public void setUp() throws IOException {
+        Configuration config = Configuration.getInstance();
+        indexPath = config.getIndexPath();
+        config.setIndexPath(folder.getRoot().getAbsolutePath());
+        Files.createDirectories(Paths.get(config.getDocumentMapPath()).getParent());
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.getInstance().setIndexPath(indexPath);
+    }
+
+    @Test
+    public void namesLongerThanAShortRoundTrip() throws IOException {
+        // a byte count above Short.MAX_VALUE is negative when read as a signed short.
+        String longName = name('n', 40000);
+        DocumentMap documentMap = new DocumentMap();
+        documentMap.addDocument(document("DOC-0", 3, 2));
+        documentMap.addDocument(document(longName, 5, 4));
+        documentMap.addDocument(document("DOC-2", 7, 1));
+        documentMap.save();
+
+        DocumentMap loaded = DocumentMap.loadDocumentMap();
+        assertEquals(3, loaded.size());
+        assertEquals("DOC-0", loaded.lookup(0).get().name);
+        assertEquals(longName, loaded.lookup(1).get().name);
+        assertEquals(5, loaded.getLength(1));
+        assertEquals(4, loaded.getMaxFrequency(1));
+        assertEquals("DOC-2", loaded.lookup(2).get().name);
+    }
+
+    @Test
+    public void clearDeletesTheLoadedFile() throws IOException {
+        DocumentMap documentMap = new DocumentMap();
+        documentMap.addDocument(document("DOC-0", 3, 2));
+        documentMap.save();
+
+        DocumentMap loaded = DocumentMap.loadDocumentMap();
+        assertEquals("DOC-0", loaded.lookup(0).get().name);
+        loaded.clear();
+        assertFalse(Files.exists(Paths.get(Configuration.getInstance().getDocumentMapPath())));
+    }
+
+    @Test
+    public void namesLongerThanTheLimitAreNotSaved() throws IOException {
+        DocumentMap documentMap = new DocumentMap();
+        documentMap.addDocument(document(name('n', 70000), 3, 2));
+        documentMap.save();
+
+        // the map is not saved rather than saved with a truncated byte count.
+        assertFalse(Files.exists(Paths.get(Configuration.getInstance().getDocumentMapPath())));
+    }
+
+    private static Document document(String name, int length, int maxFrequency) {
+        Document document = new Document(name);
+        document.length = length;
+        document.maxFrequency = maxFrequency;
+        return document;
+    }
+
+    private static String name(char c, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,197 @@
+package indexer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Pair;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PostingCacheTest {
+
+    private static final int DOCUMENT_COUNT = 20000;
+    // the size of the buffers of the run reader and the inverted file writer.
+    private static final int CHUNK_SIZE = 65536;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Dictionary dictionary;
+    // the lines of every run by term, in the order they are written.
+    private List<LinkedHashMap<String, String>> runs;
+
+    @Before
+    public void setUp() {
+        dictionary = new Dictionary();
+        runs = new ArrayList<>();
+        runs.add(new LinkedHashMap<>());
+        runs.add(new LinkedHashMap<>());
+
+        // the entities of document 0, an entity is only kept by the dictionary once it appears in two documents.
+        String[] entities = {"ALPHA", "BRAVO", "CHARLIE", "DELTA", "ECHO", "FOXTROT", "GOLF"};
+        int[] frequencies = {4, 2, 3, 2, 6, 2, 1};
+        for (int i = 0; i < entities.length; i++) {
+            dictionary.addEntityFromDocument(entities[i], frequencies[i]);
+            dictionary.addEntityFromDocument(entities[i], 1);
+            runs.get(0).put(entities[i], "|0," + frequencies[i] + "|1,1");
+        }
+
+        // a line of the first run that ends right before a chunk boundary, so the term of the next line straddles it.
+        int prefix = 0;
+        for (Map.Entry<String, String> line : runs.get(0).entrySet())
+            prefix += line.getKey().length() + line.getValue().length() + 1;
+        StringBuilder postings = new StringBuilder();
+        for (int docID = 2; prefix + 2 + postings.length() < CHUNK_SIZE - 24; docID++)
+            postings.append('|').append(docID).append(",1");
+        StringBuilder term = new StringBuilder("a");
+        while (prefix + term.length() + postings.length() + 1 < CHUNK_SIZE - 1)
+            term.append('x');
+        addTerm(0, term.toString(), postings.toString());
+
+        // a term whose lines are longer than a chunk in both runs.
+        addTerm(0, "bbb", postings(0, DOCUMENT_COUNT / 2));
+        addTerm(1, "bbb", postings(DOCUMENT_COUNT / 2, DOCUMENT_COUNT));
+        addTerm(1, "ccc", postings(DOCUMENT_COUNT - 3, DOCUMENT_COUNT));
+    }
+
+    @Test
+    public void mergeStreamsLinesAcrossChunks() throws IOException {
+        DominantEntities dominantEntities = new DominantEntities(DOCUMENT_COUNT);
+        File invertedFile = folder.newFile("inverted_file.txt");
+        File dictionaryFile = folder.newFile("dictionary.txt");
+        int termCount = merge(invertedFile, dictionaryFile, dominantEntities);
+
+        // the line of a term is its term followed by its postings from every run, in run order.
+        TreeMap<String, String> expectedLines = new TreeMap<>();
+        for (Map<String, String> run : runs)
+            for (Map.Entry<String, String> line : run.entrySet())
+                expectedLines.merge(line.getKey(), line.getValue(), String::concat);
+
+        StringBuilder expected = new StringBuilder();
+        List<String> expectedDictionary = new ArrayList<>();
+        for (Map.Entry<String, String> line : expectedLines.entrySet()) {
+            int pointer = expected.length();
+            expected.append(line.getKey()).append(line.getValue());
+            expectedDictionary.add(line.getKey() + "|" + pointer + "|" + (expected.length() - pointer));
+            // the lines before "bbb" are the same in the first run and in the inverted file.
+            if (line.getKey().equals("bbb"))
+                assertTrue(pointer < CHUNK_SIZE && pointer + line.getKey().length() > CHUNK_SIZE);
+            expected.append('\n');
+        }
+
+        assertEquals(expectedLines.size(), termCount);
+        assertEquals(expected.toString(), new String(Files.readAllBytes(invertedFile.toPath()), StandardCharsets.UTF_8));
+
+        List<String> dictionaryLines = Files.readAllLines(dictionaryFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(expectedDictionary.size(), dictionaryLines.size());
+        for (int i = 0; i < dictionaryLines.size(); i++) {
+            // term|tf|df|pointer|length|scoreBound|blockPointer|impactPointer
+            String[] entry = dictionaryLines.get(i).split("\\|");
+            assertEquals(8, entry.length);
+            assertEquals(expectedDictionary.get(i), entry[0] + "|" + entry[3] + "|" + entry[4]);
+        }
+
+        // the terms are released from the dictionary as they are written.
+        assertEquals(0, dictionary.getTerms().size());
+    }
+
+    @Test
+    public void mergeKeepsDominantEntities() throws IOException {
+        DominantEntities dominantEntities = new DominantEntities(DOCUMENT_COUNT);
+        merge(folder.newFile("inverted_file.txt"), folder.newFile("dictionary.txt"), dominantEntities);
+
+        // FOXTROT has the frequency of the least frequent entities (BRAVO and DELTA) and replaces
+        // the first of them, GOLF is less frequent than all the dominant entities and is not kept.
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("ALPHA", 4);
+        expected.put("CHARLIE", 3);
+        expected.put("DELTA", 2);
+        expected.put("ECHO", 6);
+        expected.put("FOXTROT", 2);
+        assertEquals(expected, asMap(dominantEntities.get(0)));
+
+        // document 1 has the 7 entities with frequency 1, every new entity replaces the minimum.
+        assertEquals(DominantEntities.DOMINANT_ENTITIES_COUNT, dominantEntities.get(1).size());
+        assertTrue(asMap(dominantEntities.get(1)).containsKey("GOLF"));
+        assertTrue(dominantEntities.get(2).isEmpty());
+    }
+
+    @Test
+    public void equalFrequencyReplacesMinimum() {
+        DominantEntities dominantEntities = new DominantEntities(1);
+        int[] frequencies = {5, 3, 7, 3, 9};
+        for (int i = 0; i < frequencies.length; i++)
+            dominantEntities.offer(0, dominantEntities.addEntity("E" + i), frequencies[i]);
+
+        dominantEntities.offer(0, dominantEntities.addEntity("LOWER"), 2);
+        assertFalse(asMap(dominantEntities.get(0)).containsKey("LOWER"));
+
+        dominantEntities.offer(0, dominantEntities.addEntity("EQUAL"), 3);
+        Map<String, Integer> entities = asMap(dominantEntities.get(0));
+        assertEquals(DominantEntities.DOMINANT_ENTITIES_COUNT, entities.size());
+        assertTrue(entities.containsKey("EQUAL"));
+        // E1 and E3 share the minimal frequency, only one of them is replaced.
+        assertTrue(entities.containsKey("E1") != entities.containsKey("E3"));
+    }
+
+    // writes the runs and merges them into the given files, returns the number of merged terms.
+    private int merge(File invertedFile, File dictionaryFile, DominantEntities dominantEntities) throws IOException {
+        PostingRunReader[] readers = new PostingRunReader[runs.size()];
+        for (int i = 0; i < runs.size(); i++)
+            readers[i] = new PostingRunReader(writeRun(i).getPath());
+
+        double[] lengthNormalization = new double[DOCUMENT_COUNT];
+        Arrays.fill(lengthNormalization, 1.2);
+        try (InvertedFileWriter invertedFileWriter = new InvertedFileWriter(invertedFile.getPath());
+             Writer dictionaryWriter = new OutputStreamWriter(new FileOutputStream(dictionaryFile), StandardCharsets.UTF_8);
+             BlockMaxWriter blockMaxWriter = new BlockMaxWriter(
+                     folder.newFile("block_max.bin").getPath(), 1.2, lengthNormalization)) {
+            return PostingCache.merge(readers, dictionary, invertedFileWriter, dictionaryWriter,
+                    blockMaxWriter, null, dominantEntities);
+        }
+        finally {
+            for (PostingRunReader reader : readers)
+                reader.close();
+        }
+    }
+
+    // writes the lines of the run into a posting file.
+    private File writeRun(int run) throws IOException {
+        File file = folder.newFile("run" + run + ".txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> line : runs.get(run).entrySet())
+                writer.append(line.getKey()).append(line.getValue()).append('\n');
+        }
+
+        return file;
+    }
+
+    // adds a line of the term to the run and the term to the dictionary.
+    private void addTerm(int run, String term, String postings) {
+        dictionary.addTermFromDocument(term, 1);
+        runs.get(run).put(term, postings);
+    }
+
+    // the postings of the documents in [from, to).
+    private static String postings(int from, int to) {
+        StringBuilder postings = new StringBuilder();
+        for (int docID = from; docID < to; docID++)
+            postings.append('|').append(docID).append(',').append(docID % 7 + 1);
+
+        return postings.toString();
+    }
+
+    private static Map<String, Integer> asMap(List<Pair<String, Integer>> entities) {
+        Map<String, Integer> map = new HashMap<>();
+        for (Pair<String, Integer> entity : entities)
+            map.put(entity.first, entity.second);
+
+        return map;
+    }
+}
@@ -0,0 +1,113 @@
+package query;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Configuration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queuesBeyondTheConcurrencyLimit() {
+        AdmissionController admission = new AdmissionController(2, 2);
+        List<String> started = new ArrayList<>();
+
+        assertTrue(admission.admit(() -> started.add("a")));
+        assertTrue(admission.admit(() -> started.add("b")));
+        assertTrue(admission.admit(() -> started.add("c")));
+        assertTrue(admission.admit(() -> started.add("d")));
+
+        // two requests run and two wait.
+        assertEquals(Arrays.asList("a", "b"), started);
+        assertEquals(0, admission.getRejected());
+    }
+
+    @Test
+    public void rejectsBeyondTheQueue() {
+        AdmissionController admission = new AdmissionController(1, 1);
+        List<String> started = new ArrayList<>();
+
+        assertTrue(admission.admit(() -> started.add("a")));
+        assertTrue(admission.admit(() -> started.add("b")));
+        assertFalse(admission.admit(() -> started.add("c")));
+        assertFalse(admission.admit(() -> started.add("d")));
+
+        assertEquals(Arrays.asList("a"), started);
+        assertEquals(2, admission.getRejected());
+
+        // once the waiting request started there is room in the queue again.
+        admission.release();
+        assertTrue(admission.admit(() -> started.add("e")));
+        assertEquals(Arrays.asList("a", "b"), started);
+        assertEquals(2, admission.getRejected());
+    }
+
+    @Test
+    public void releaseStartsTheNextRequestInOrder() {
+        AdmissionController admission = new AdmissionController(1, 3);
+        List<String> started = new ArrayList<>();
+        admission.admit(() -> started.add("a"));
+        admission.admit(() -> started.add("b"));
+        admission.admit(() -> started.add("c"));
+
+        admission.release();
+        assertEquals(Arrays.asList("a", "b"), started);
+        admission.release();
+        assertEquals(Arrays.asList("a", "b", "c"), started);
+
+        // the queue is empty, so releasing the last running request frees its place for the next one.
+        admission.release();
+        assertTrue(admission.admit(() -> started.add("d")));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), started);
+    }
+
+    @Test
+    public void admitsEverythingWithoutALimit() {
+        AdmissionController admission = new AdmissionController(0, 0);
+        List<String> started = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            assertTrue(admission.admit(() -> started.add("r")));
+
+        assertEquals(100, started.size());
+        assertEquals(0, admission.getRejected());
+    }
+
+    @Test
+    public void marksRejectedRequestsOverloaded() throws IOException {
+        Configuration config = Configuration.getInstance();
+        int maxConcurrent = config.getMaxConcurrentQueries();
+        int maxQueued = config.getMaxQueuedQueries();
+        QueryProcessor processor;
+        try {
+            // the request is rejected before its index is ever read.
+            config.setMaxConcurrentQueries(1);
+            config.setMaxQueuedQueries(0);
+            processor = TestIndex.empty(folder.getRoot());
+        } finally {
+            config.setMaxConcurrentQueries(maxConcurrent);
+            config.setMaxQueuedQueries(maxQueued);
+        }
+
+        // a request that never finishes takes the only place.
+        assertTrue(processor.admission.admit(() -> { }));
+
+        CompletableFuture<QueryResult> future = processor.queryAsync(10, 0, QueryPriority.INTERACTIVE, "query");
+        assertTrue(future.isDone());
+        QueryResult result = future.join();
+        assertTrue(result.isOverloaded());
+        assertFalse(result.resultOf("query").map(ranking -> ranking.length > 0).orElse(false));
+        assertEquals(1, processor.getRejectedRequests());
+        processor.close();
+    }
+}
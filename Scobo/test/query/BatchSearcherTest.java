@@ -0,0 +1,90 @@
+package query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Configuration;
+import util.Pair;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BatchSearcherTest {
+
+    private static final int DOCUMENT_COUNT = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long batchByteBudget;
+    private long postingCacheBytes;
+
+    @Before
+    public void setUp() {
+        Configuration config = Configuration.getInstance();
+        batchByteBudget = config.getBatchByteBudget();
+        postingCacheBytes = config.getPostingCacheBytes();
+        // the lines are read by the batch, not taken from the cache.
+        config.setPostingCacheBytes(0);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration config = Configuration.getInstance();
+        config.setBatchByteBudget(batchByteBudget);
+        config.setPostingCacheBytes(postingCacheBytes);
+    }
+
+    @Test(timeout = 10_000)
+    public void wavesRankLikeASingleBatch() throws IOException {
+        QueryProcessor processor = TestIndex.build(folder.getRoot(), DOCUMENT_COUNT, line("apple", 1), line("berry", 2),
+                line("cherry", 3), line("grape", 5), line("lemon", 7));
+        Pair<Integer, String>[] queries = queries("apple berry", "berry cherry", "grape", "lemon apple", "cherry grape lemon");
+
+        Configuration.getInstance().setBatchByteBudget(0);
+        QueryResult single = processor.queryBatch(queries, 10);
+
+        // every query holds a line the query before it does not, so every query is a wave of its own.
+        Configuration.getInstance().setBatchByteBudget(1);
+        QueryResult waves = processor.queryBatch(queries, 10);
+
+        for (Pair<Integer, String> query : queries) {
+            assertTrue(single.resultOf(query.first).get().length > 0);
+            assertArrayEquals(single.resultOf(query.first).get(), waves.resultOf(query.first).get());
+            assertArrayEquals(single.scoresOf(query.first).get(), waves.scoresOf(query.first).get(), 0);
+            assertFalse(waves.isPartial(query.first));
+        }
+        processor.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void corruptLineCompletesTheBatch() throws IOException {
+        // the line of "zebra" has a posting without a frequency, so decoding it fails.
+        QueryProcessor processor = TestIndex.build(folder.getRoot(), DOCUMENT_COUNT, line("apple", 1), "zebra|5");
+        QueryResult result = processor.queryBatch(queries("apple", "zebra"), 10);
+
+        assertFalse(result.isPartial(1));
+        assertEquals(10, result.resultOf(1).get().length);
+        assertTrue(result.isPartial(2));
+        processor.close();
+    }
+
+    // a posting line of the documents whose docID is a multiple of the given step.
+    private static String line(String term, int step) {
+        StringBuilder line = new StringBuilder(term);
+        for (int docID = 0; docID < DOCUMENT_COUNT; docID += step)
+            line.append('|').append(docID).append(',').append(1 + docID % 3);
+        return line.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Pair<Integer, String>[] queries(String... queries) {
+        Pair<Integer, String>[] pairs = new Pair[queries.length];
+        for (int i = 0; i < queries.length; i++)
+            pairs[i] = new Pair<>(i + 1, queries[i]);
+        return pairs;
+    }
+}
@@ -0,0 +1,299 @@
+package query;
+
+import indexer.BlockMaxList;
+import indexer.ImpactList;
+import indexer.PostingList;
+import indexer.Term;
+import org.junit.Before;
+import org.junit.Test;
+import util.Configuration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class EvaluatorTest {
+
+    private static final int DOCUMENT_COUNT = 5000;
+    // the number of documents every term of the query appears in.
+    private static final int[] DOCUMENT_FREQUENCIES = {4000, 1200, 300, 64, 7};
+    private static final int[] RESULT_SIZES = {1, 10, 100, DOCUMENT_COUNT + 1};
+
+    private double k;
+    private double b;
+    private double[] lengthNormalization;
+
+    private QueryPlan plan;
+    private PostingList[] postingLists;
+    private BlockMaxList[] blockMaxLists;
+
+    @Before
+    public void setUp() {
+        Configuration config = Configuration.getInstance();
+        k = config.getBM25K();
+        b = config.getBM25B();
+
+        Random random = new Random(7);
+        lengthNormalization = new double[DOCUMENT_COUNT];
+        for (int docID = 0; docID < DOCUMENT_COUNT; docID++)
+            lengthNormalization[docID] = k * (1 - b + b * (0.2 + 3 * random.nextDouble()));
+
+        int size = DOCUMENT_FREQUENCIES.length;
+        Term[] terms = new Term[size];
+        double[] weights = new double[size];
+        postingLists = new PostingList[size];
+        blockMaxLists = new BlockMaxList[size];
+        Ranker ranker = ranker(1);
+        for (int i = 0; i < size; i++) {
+            int df = DOCUMENT_FREQUENCIES[i];
+            postingLists[i] = postingList("term" + i, df, random);
+            terms[i] = new Term("term" + i, df, df, i);
+            weights[i] = Math.log10((DOCUMENT_COUNT + 1) / (double) df) * (1 + random.nextInt(3));
+
+            // the bounds are kept like the block max writer keeps them, only for lines with more than one block.
+            float[] blockBounds = new float[(df + BlockMaxList.BLOCK_SIZE - 1) / BlockMaxList.BLOCK_SIZE];
+            float termBound = 0;
+            for (int j = 0; j < df; j++) {
+                float bound = roundUp(ranker.documentScore(postingLists[i].documentAt(j), postingLists[i].frequencyAt(j)));
+                int block = j / BlockMaxList.BLOCK_SIZE;
+                blockBounds[block] = Math.max(blockBounds[block], bound);
+                termBound = Math.max(termBound, bound);
+            }
+            terms[i].scoreBound = termBound;
+            if (blockBounds.length > 1)
+                blockMaxLists[i] = blockMaxList(postingLists[i], blockBounds);
+        }
+
+        plan = new QueryPlan(terms, DOCUMENT_FREQUENCIES.clone(), weights);
+    }
+
+    @Test
+    public void wandMatchesTermAtATime() {
+        for (int resultSize : RESULT_SIZES) {
+            Ranker expected = rankTermAtATime(resultSize);
+            Ranker ranker = ranker(resultSize);
+            assertTrue(new WandEvaluator(ranker, plan, postingLists, new BlockMaxList[plan.size()]).evaluate(() -> false));
+            assertSameRanking(expected, ranker);
+        }
+    }
+
+    @Test
+    public void blockMaxWandMatchesTermAtATime() {
+        for (int resultSize : RESULT_SIZES) {
+            Ranker expected = rankTermAtATime(resultSize);
+            Ranker ranker = ranker(resultSize);
+            assertTrue(new WandEvaluator(ranker, plan, postingLists, blockMaxLists).evaluate(() -> false));
+            assertSameRanking(expected, ranker);
+        }
+    }
+
+    @Test
+    public void maxScoreMatchesTermAtATime() {
+        for (int resultSize : RESULT_SIZES) {
+            Ranker expected = rankTermAtATime(resultSize);
+            Ranker ranker = ranker(resultSize);
+            assertTrue(new MaxScoreEvaluator(ranker, plan, postingLists).evaluate(() -> false));
+            assertSameRanking(expected, ranker);
+        }
+    }
+
+    @Test
+    public void maxScoreSumsInPlanOrder() {
+        // the terms of the plan are reversed, so their bounds no longer grow with their plan order.
+        int size = plan.size();
+        Term[] terms = new Term[size];
+        int[] documentFrequencies = new int[size];
+        double[] weights = new double[size];
+        PostingList[] reversed = new PostingList[size];
+        for (int i = 0; i < size; i++) {
+            terms[i] = plan.termAt(size - 1 - i);
+            documentFrequencies[i] = plan.documentFrequencyAt(size - 1 - i);
+            weights[i] = plan.weightAt(size - 1 - i);
+            reversed[i] = postingLists[size - 1 - i];
+        }
+        plan = new QueryPlan(terms, documentFrequencies, weights);
+        postingLists = reversed;
+
+        for (int resultSize : RESULT_SIZES) {
+            Ranker expected = rankTermAtATime(resultSize);
+            Ranker ranker = ranker(resultSize);
+            assertTrue(new MaxScoreEvaluator(ranker, plan, postingLists).evaluate(() -> false));
+            assertSameRanking(expected, ranker);
+        }
+    }
+
+    @Test
+    public void rangesMatchTermAtATime() {
+        // the parts of a query evaluated over ranges of docIDs merge into the ranking of the whole query.
+        int[] bounds = {0, 1234, 1235, 3000, PostingCursor.END};
+        for (int resultSize : RESULT_SIZES) {
+            Ranker expected = rankTermAtATime(resultSize);
+            Ranker wand = ranker(resultSize);
+            Ranker maxScore = ranker(resultSize);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                Ranker wandPart = wand.part();
+                new WandEvaluator(wandPart, plan, postingLists, blockMaxLists, bounds[i], bounds[i + 1])
+                        .evaluate(() -> false);
+                wand.merge(wandPart);
+
+                Ranker maxScorePart = maxScore.part();
+                new MaxScoreEvaluator(maxScorePart, plan, postingLists, bounds[i], bounds[i + 1]).evaluate(() -> false);
+                maxScore.merge(maxScorePart);
+            }
+
+            assertSameRanking(expected, wand);
+            assertSameRanking(expected, maxScore);
+        }
+    }
+
+    @Test
+    public void impactsRankByQuantizedScores() {
+        ImpactList[] impactLists = new ImpactList[plan.size()];
+        Ranker scorer = ranker(1);
+        for (int i = 0; i < plan.size(); i++)
+            impactLists[i] = impactList(postingLists[i], scorer);
+
+        for (int resultSize : RESULT_SIZES) {
+            Ranker ranker = ranker(resultSize);
+            ScoreAccumulator accumulator = new ScoreAccumulator.Pool(DOCUMENT_COUNT).acquire();
+            assertTrue(new ImpactEvaluator(ranker, plan, impactLists)
+                    .evaluate(accumulator, System.nanoTime(), 0, 0, () -> false));
+            ranker.collect(accumulator);
+
+            // the score of a document is the sum of its quantized term scores, added from the highest to the lowest.
+            TopKCollector expected = new TopKCollector(resultSize);
+            for (Map.Entry<Integer, List<double[]>> document : quantizedScores(scorer).entrySet()) {
+                List<double[]> contributions = document.getValue();
+                contributions.sort((x, y) -> x[0] != y[0] ? Double.compare(y[0], x[0]) : Double.compare(x[1], y[1]));
+                double score = 0;
+                for (double[] contribution : contributions)
+                    score += contribution[0];
+                expected.offer(document.getKey(), score);
+            }
+
+            assertArrayEquals(expected.getDocuments(), ranker.getRanking());
+            assertArrayEquals(expected.getScores(), ranker.getScores(), 0);
+        }
+    }
+
+    @Test
+    public void impactsStopAtPostingBudget() {
+        ImpactList[] impactLists = new ImpactList[plan.size()];
+        Ranker scorer = ranker(1);
+        for (int i = 0; i < plan.size(); i++)
+            impactLists[i] = impactList(postingLists[i], scorer);
+
+        ScoreAccumulator accumulator = new ScoreAccumulator.Pool(DOCUMENT_COUNT).acquire();
+        assertFalse(new ImpactEvaluator(ranker(10), plan, impactLists)
+                .evaluate(accumulator, System.nanoTime(), 0, 1, () -> false));
+        assertTrue(accumulator.size() < DOCUMENT_COUNT);
+    }
+
+    // ranks every posting of the plan term at a time, the ranking the evaluators must produce.
+    private Ranker rankTermAtATime(int resultSize) {
+        Ranker ranker = ranker(resultSize);
+        ScoreAccumulator accumulator = new ScoreAccumulator.Pool(DOCUMENT_COUNT).acquire();
+        for (int i = 0; i < plan.size(); i++)
+            ranker.rank(postingLists[i], plan.weightAt(i), accumulator);
+        ranker.collect(accumulator);
+
+        return ranker;
+    }
+
+    // the weighted quantized scores of every document by term, as {score, plan index} pairs.
+    private Map<Integer, List<double[]>> quantizedScores(Ranker scorer) {
+        Map<Integer, List<double[]>> scores = new HashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            for (int j = 0; j < postingLists[i].size(); j++) {
+                int docID = postingLists[i].documentAt(j);
+                int impact = ImpactList.quantize(scorer.documentScore(docID, postingLists[i].frequencyAt(j)), k);
+                scores.computeIfAbsent(docID, key -> new ArrayList<>())
+                        .add(new double[]{plan.weightAt(i) * ImpactList.scoreOf(impact, k), i});
+            }
+        }
+
+        return scores;
+    }
+
+    private Ranker ranker(int resultSize) {
+        return new TestRanker(resultSize, k, b, lengthNormalization);
+    }
+
+    private static void assertSameRanking(Ranker expected, Ranker actual) {
+        assertArrayEquals(expected.getRanking(), actual.getRanking());
+        assertArrayEquals(expected.getScores(), actual.getScores(), 0);
+    }
+
+    // a posting list of df random documents with random frequencies.
+    private static PostingList postingList(String term, int df, Random random) {
+        TreeSet<Integer> documents = new TreeSet<>();
+        while (documents.size() < df)
+            documents.add(random.nextInt(DOCUMENT_COUNT));
+
+        StringBuilder line = new StringBuilder(term);
+        for (int docID : documents)
+            line.append('|').append(docID).append(',').append(1 + random.nextInt(10));
+
+        return PostingList.decode(ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static BlockMaxList blockMaxList(PostingList postingList, float[] blockBounds) {
+        ByteBuffer blocks = ByteBuffer.allocate(blockBounds.length * (Integer.BYTES + Float.BYTES));
+        for (int block = 0; block < blockBounds.length; block++) {
+            int last = Math.min(postingList.size(), (block + 1) * BlockMaxList.BLOCK_SIZE) - 1;
+            blocks.putInt(postingList.documentAt(last)).putFloat(blockBounds[block]);
+        }
+        blocks.flip();
+
+        return BlockMaxList.decode(blocks);
+    }
+
+    // the segments of the posting list by quantized impact, from the highest impact to the lowest.
+    private ImpactList impactList(PostingList postingList, Ranker scorer) {
+        TreeMap<Integer, List<Integer>> segments = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < postingList.size(); i++) {
+            int docID = postingList.documentAt(i);
+            int impact = ImpactList.quantize(scorer.documentScore(docID, postingList.frequencyAt(i)), k);
+            segments.computeIfAbsent(impact, key -> new ArrayList<>()).add(docID);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((2 * segments.size() + postingList.size()) * Integer.BYTES);
+        for (Map.Entry<Integer, List<Integer>> segment : segments.entrySet())
+            buffer.putInt(segment.getKey()).putInt(segment.getValue().size());
+        for (List<Integer> documents : segments.values())
+            for (int docID : documents)
+                buffer.putInt(docID);
+        buffer.flip();
+
+        return ImpactList.decode(buffer, segments.size(), postingList.size());
+    }
+
+    // the closest float that is not smaller than the given value.
+    private static float roundUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    // a bm25 ranker over the documents of the test, the weights of the terms are given by the plan.
+    private static final class TestRanker extends Ranker {
+
+        private final int resultSize;
+
+        private TestRanker(int resultSize, double k, double b, double[] lengthNormalization) {
+            super(null, null, resultSize, k, b, lengthNormalization);
+            this.resultSize = resultSize;
+        }
+
+        @Override
+        Ranker part() {
+            return new TestRanker(resultSize, k, b, lengthNormalization);
+        }
+
+        @Override
+        protected double termWeight(String term, int df) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
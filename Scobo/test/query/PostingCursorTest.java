@@ -0,0 +1,120 @@
+package query;
+
+import indexer.BlockMaxList;
+import indexer.PostingList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class PostingCursorTest {
+
+    // the postings of the documents 0, 3, 6, ... in three full blocks and a partial one.
+    private static final int POSTING_COUNT = 3 * BlockMaxList.BLOCK_SIZE + 8;
+    private static final int STEP = 3;
+
+    private PostingList postings;
+    private BlockMaxList blocks;
+
+    @Before
+    public void setUp() {
+        StringBuilder line = new StringBuilder("term");
+        for (int i = 0; i < POSTING_COUNT; i++)
+            line.append('|').append(i * STEP).append(',').append(1 + i % 5);
+        postings = PostingList.decode(ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8)));
+
+        int blockCount = (POSTING_COUNT + BlockMaxList.BLOCK_SIZE - 1) / BlockMaxList.BLOCK_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(blockCount * (Integer.BYTES + Float.BYTES));
+        for (int block = 0; block < blockCount; block++) {
+            int last = Math.min(POSTING_COUNT, (block + 1) * BlockMaxList.BLOCK_SIZE) - 1;
+            buffer.putInt(documentAt(last)).putFloat(block + 1);
+        }
+        buffer.flip();
+        blocks = BlockMaxList.decode(buffer);
+    }
+
+    @Test
+    public void advancesAcrossBlockEdges() {
+        PostingCursor cursor = new PostingCursor(0, postings, 1, 10, blocks);
+        int lastOfFirstBlock = documentAt(BlockMaxList.BLOCK_SIZE - 1);
+
+        cursor.advance(lastOfFirstBlock);
+        assertEquals(lastOfFirstBlock, cursor.document);
+
+        // a target between the last document of a block and the first of the next lands on the next block.
+        cursor.advance(lastOfFirstBlock + 1);
+        assertEquals(documentAt(BlockMaxList.BLOCK_SIZE), cursor.document);
+        assertEquals(1 + BlockMaxList.BLOCK_SIZE % 5, cursor.frequency());
+
+        // a target the cursor already passed does not move it.
+        cursor.advance(0);
+        assertEquals(documentAt(BlockMaxList.BLOCK_SIZE), cursor.document);
+
+        cursor.next();
+        assertEquals(documentAt(BlockMaxList.BLOCK_SIZE + 1), cursor.document);
+
+        cursor.advance(documentAt(POSTING_COUNT - 1));
+        assertEquals(documentAt(POSTING_COUNT - 1), cursor.document);
+        cursor.next();
+        assertEquals(PostingCursor.END, cursor.document);
+    }
+
+    @Test
+    public void advancesPastTheEnd() {
+        PostingCursor cursor = new PostingCursor(0, postings, 1, 10, blocks);
+        cursor.advance(documentAt(POSTING_COUNT - 1) + 1);
+        assertEquals(PostingCursor.END, cursor.document);
+
+        // a cursor limited to a range ends at the end of its range even though the list goes on.
+        int start = BlockMaxList.BLOCK_SIZE - 2;
+        int end = BlockMaxList.BLOCK_SIZE + 2;
+        PostingCursor range = new PostingCursor(0, postings, start, end, 1, 10, blocks);
+        assertEquals(documentAt(start), range.document);
+        range.advance(documentAt(end - 1));
+        assertEquals(documentAt(end - 1), range.document);
+        range.advance(documentAt(end));
+        assertEquals(PostingCursor.END, range.document);
+    }
+
+    @Test
+    public void boundsTheBlockOfTheTarget() {
+        PostingCursor cursor = new PostingCursor(0, postings, 2, 10, blocks);
+        int lastOfFirstBlock = documentAt(BlockMaxList.BLOCK_SIZE - 1);
+
+        assertEquals(2, cursor.blockBound(lastOfFirstBlock, 0), 0);
+        assertEquals(lastOfFirstBlock, cursor.blockEnd);
+
+        assertEquals(4, cursor.blockBound(lastOfFirstBlock + 1, 0), 0);
+        assertEquals(documentAt(2 * BlockMaxList.BLOCK_SIZE - 1), cursor.blockEnd);
+
+        assertEquals(8, cursor.blockBound(documentAt(POSTING_COUNT - 1), 0), 0);
+        assertEquals(documentAt(POSTING_COUNT - 1), cursor.blockEnd);
+
+        // past the last document no document can score.
+        assertEquals(0, cursor.blockBound(documentAt(POSTING_COUNT - 1) + 1, 0), 0);
+        assertEquals(PostingCursor.END, cursor.blockEnd);
+    }
+
+    @Test
+    public void boundsTheWholeListWithoutBlocks() {
+        PostingCursor cursor = new PostingCursor(0, postings, 2, 10, null);
+        assertEquals(10, cursor.blockBound(BlockMaxList.BLOCK_SIZE * STEP, 0), 0);
+        assertEquals(documentAt(POSTING_COUNT - 1), cursor.blockEnd);
+    }
+
+    @Test
+    public void findsPositions() {
+        assertEquals(0, PostingCursor.positionOf(postings, 0));
+        assertEquals(1, PostingCursor.positionOf(postings, 1));
+        assertEquals(1, PostingCursor.positionOf(postings, STEP));
+        assertEquals(POSTING_COUNT - 1, PostingCursor.positionOf(postings, documentAt(POSTING_COUNT - 1)));
+        assertEquals(POSTING_COUNT, PostingCursor.positionOf(postings, PostingCursor.END));
+    }
+
+    private static int documentAt(int index) {
+        return index * STEP;
+    }
+}
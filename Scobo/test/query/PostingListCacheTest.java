@@ -0,0 +1,79 @@
+package query;
+
+import indexer.PostingList;
+import indexer.Term;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Configuration;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PostingListCacheTest {
+
+    private static final int DOCUMENT_COUNT = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long postingCacheBytes;
+    private QueryProcessor processor;
+
+    @Before
+    public void setUp() throws IOException {
+        Configuration config = Configuration.getInstance();
+        postingCacheBytes = config.getPostingCacheBytes();
+        // the cache of the query processor is not populated, the tests populate their own.
+        config.setPostingCacheBytes(0);
+        // the line of "bad" has a posting without a frequency, so decoding it fails.
+        processor = TestIndex.build(folder.getRoot(), DOCUMENT_COUNT, line("big", 1), line("mid", 40), line("low", 50),
+                "bad|5");
+    }
+
+    @After
+    public void tearDown() {
+        processor.close();
+        Configuration.getInstance().setPostingCacheBytes(postingCacheBytes);
+    }
+
+    @Test
+    public void populateSkipsListsThatDoNotFit() {
+        // the static region holds half of the budget, it fits every list but the most frequent one.
+        long staticBudget = PostingList.sizeInBytes(3, 5) + PostingList.sizeInBytes(3, 4) + PostingList.sizeInBytes(3, 1);
+        PostingListCache cache = new PostingListCache(2 * staticBudget);
+        cache.populate(processor.dictionary, processor.postingReader, 10);
+
+        assertFalse(cache.contains(term("big")));
+        assertTrue(cache.contains(term("mid")));
+        assertTrue(cache.contains(term("low")));
+        assertFalse(cache.contains(term("bad")));
+        assertEquals(PostingList.sizeInBytes(3, 5) + PostingList.sizeInBytes(3, 4), cache.sizeInBytes());
+        assertEquals(5, cache.get(term("mid")).get().size());
+    }
+
+    @Test
+    public void populateStopsAtTheTermCount() {
+        PostingListCache cache = new PostingListCache(Long.MAX_VALUE / 2);
+        cache.populate(processor.dictionary, processor.postingReader, 2);
+
+        assertTrue(cache.contains(term("big")));
+        assertTrue(cache.contains(term("mid")));
+        assertFalse(cache.contains(term("low")));
+    }
+
+    private Term term(String term) {
+        return processor.dictionary.lookupTerm(term).get();
+    }
+
+    // a posting line of the documents whose docID is a multiple of the given step.
+    private static String line(String term, int step) {
+        StringBuilder line = new StringBuilder(term);
+        for (int docID = 0; docID < DOCUMENT_COUNT; docID += step)
+            line.append('|').append(docID).append(',').append(1 + docID % 3);
+        return line.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package query;
+
+import indexer.PostingList;
+import indexer.Term;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Configuration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryPlannerTest {
+
+    private static final int DOCUMENT_COUNT = 500_000;
+    // the number of documents every term of a long query appears in, and the bytes its line takes.
+    private static final int LONG_FREQUENCY = 200_000;
+    private static final int LONG_LENGTH = 1_000_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long parallelScoringPostings;
+    private double documentAtATimeNanosPerPosting;
+    private QueryPlanner planner;
+
+    @Before
+    public void setUp() {
+        // the plans are estimated as if they were scored by a single thread.
+        Configuration config = Configuration.getInstance();
+        parallelScoringPostings = config.getParallelScoringPostings();
+        documentAtATimeNanosPerPosting = config.getPlannerDocumentAtATimeNanosPerPosting();
+        config.setParallelScoringPostings(0);
+        planner = new QueryPlanner(new PostingListCache(0), DOCUMENT_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration config = Configuration.getInstance();
+        config.setParallelScoringPostings(parallelScoringPostings);
+        config.setPlannerDocumentAtATimeNanosPerPosting(documentAtATimeNanosPerPosting);
+    }
+
+    @Test
+    public void shortQueryIsTermAtATime() {
+        QueryPlan plan = plan(1, 50, 400);
+        assertEquals(QueryPlanner.Strategy.TERM_AT_A_TIME, planner.choose(plan, ranker(true), 10, null).strategy);
+        assertEquals(QueryPlanner.Strategy.TERM_AT_A_TIME,
+                planner.choose(plan, ranker(true), 10, prefetched(plan)).strategy);
+    }
+
+    @Test
+    public void longCachedQueryIsPruned() {
+        QueryPlan plan = plan(4, LONG_FREQUENCY, LONG_LENGTH);
+        QueryPlanner.Choice choice = planner.choose(plan, ranker(true), 10, prefetched(plan));
+        assertEquals(QueryPlanner.Strategy.WAND, choice.strategy);
+        assertEquals(4L * LONG_FREQUENCY, choice.postings);
+
+        // without the score bounds of the index only MaxScore can prune the query.
+        assertEquals(QueryPlanner.Strategy.MAX_SCORE,
+                planner.choose(plan, ranker(false), 10, prefetched(plan)).strategy);
+    }
+
+    @Test
+    public void longQueryThatMustBeReadIsTermAtATime() {
+        // the lines are scored as they are read, which hides the scoring behind the reads.
+        QueryPlan plan = plan(4, LONG_FREQUENCY, LONG_LENGTH);
+        assertEquals(QueryPlanner.Strategy.TERM_AT_A_TIME, planner.choose(plan, ranker(true), 10, null).strategy);
+    }
+
+    @Test
+    public void costsAreConfigurable() {
+        Configuration.getInstance().setPlannerDocumentAtATimeNanosPerPosting(100);
+        QueryPlanner expensivePruning = new QueryPlanner(new PostingListCache(0), DOCUMENT_COUNT);
+        QueryPlan plan = plan(4, LONG_FREQUENCY, LONG_LENGTH);
+        assertEquals(QueryPlanner.Strategy.TERM_AT_A_TIME,
+                expensivePruning.choose(plan, ranker(true), 10, prefetched(plan)).strategy);
+
+        // a planner keeps the costs it was created with.
+        assertEquals(QueryPlanner.Strategy.WAND, planner.choose(plan, ranker(true), 10, prefetched(plan)).strategy);
+    }
+
+    @Test
+    public void batchDecodesByThePlanFrequencies() {
+        // the dictionary entries of the terms count fewer documents than the plan, the plan is what is decoded.
+        QueryPlan plan = plan(4, LONG_FREQUENCY, LONG_LENGTH);
+        Term[] terms = new Term[plan.size()];
+        int[] documentFrequencies = new int[plan.size()];
+        double[] weights = new double[plan.size()];
+        for (int i = 0; i < plan.size(); i++) {
+            Term term = plan.termAt(i);
+            terms[i] = new Term(term.term, 1, 1, term.pointer, term.length, 1, -1, -1);
+            documentFrequencies[i] = plan.documentFrequencyAt(i);
+            weights[i] = plan.weightAt(i);
+        }
+        QueryPlan entryPlan = new QueryPlan(terms, documentFrequencies, weights);
+
+        // the lines of the plan are adjacent, so they are read with a single read.
+        Term[] planTerms = new Term[plan.size()];
+        for (int i = 0; i < plan.size(); i++)
+            planTerms[i] = plan.termAt(i);
+        QueryPlanner.Choice expected = planner.batch(Arrays.asList(plan, plan),
+                Collections.singletonList(Arrays.asList(planTerms)));
+        QueryPlanner.Choice choice = planner.batch(Arrays.asList(entryPlan, entryPlan),
+                Collections.singletonList(Arrays.asList(terms)));
+        assertEquals(QueryPlanner.Strategy.BATCH, choice.strategy);
+        assertEquals(expected.estimatedNanos, choice.estimatedNanos);
+    }
+
+    @Test
+    public void repeatedQueryIsLookedUp() throws IOException {
+        Configuration config = Configuration.getInstance();
+        int resultCacheSize = config.getResultCacheSize();
+        QueryProcessor processor;
+        try {
+            config.setResultCacheSize(16);
+            processor = TestIndex.empty(folder.getRoot());
+        } finally {
+            config.setResultCacheSize(resultCacheSize);
+        }
+
+        // the result is admitted into the cache the second time the query is searched.
+        processor.query("planner");
+        processor.query("planner");
+        assertEquals(0, processor.getCacheHits());
+        // the third search is planned as a cache lookup and never reaches the planner.
+        processor.query("planner");
+        assertEquals(1, processor.getCacheHits());
+        processor.close();
+    }
+
+    // a plan of terms that appear in the given number of documents and whose lines take the given number of bytes.
+    private static QueryPlan plan(int size, int documentFrequency, int length) {
+        Term[] terms = new Term[size];
+        int[] documentFrequencies = new int[size];
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            terms[i] = new Term("term" + i, documentFrequency, documentFrequency, (long) i * length, length,
+                    1, -1, -1);
+            documentFrequencies[i] = documentFrequency;
+            weights[i] = 1;
+        }
+
+        return new QueryPlan(terms, documentFrequencies, weights);
+    }
+
+    // the lines of the plan as if they were read in advance.
+    private static Map<Long, PostingList> prefetched(QueryPlan plan) {
+        Map<Long, PostingList> prefetched = new HashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            Term term = plan.termAt(i);
+            prefetched.put(term.pointer, PostingList.decode(
+                    ByteBuffer.wrap((term.term + "|0,1").getBytes(StandardCharsets.UTF_8))));
+        }
+
+        return prefetched;
+    }
+
+    // a ranker with the bm25 parameters of the index if withIndexBounds, otherwise with other parameters.
+    private static Ranker ranker(boolean withIndexBounds) {
+        Configuration config = Configuration.getInstance();
+        double k = withIndexBounds ? config.getBM25K() : config.getBM25K() + 1;
+        return new Ranker(null, null, 10, k, config.getBM25B(), new double[DOCUMENT_COUNT]) {
+            @Override
+            Ranker part() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected double termWeight(String term, int df) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
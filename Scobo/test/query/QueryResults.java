@@ -0,0 +1,36 @@
+package query;
+
+/**
+ * Builds query results for tests outside of the query package.
+ */
+public class QueryResults {
+
+    /**
+     * @return the result of a ranked free text query.
+     */
+    public static QueryResult of(String query, int[] ranking, double[] scores, String... dropped) {
+        QueryResult result = new QueryResult(query);
+        result.updateResult(query.hashCode(), ranking, scores);
+        if (dropped.length > 0)
+            result.setDroppedTerms(query.hashCode(), dropped);
+        return result;
+    }
+
+    /**
+     * @return the partial result of a free text query that passed its timeout.
+     */
+    public static QueryResult partial(String query, int[] ranking, double[] scores) {
+        QueryResult result = of(query, ranking, scores);
+        result.markPartial(query.hashCode());
+        return result;
+    }
+
+    /**
+     * @return the result of a free text query that was rejected because the query processor was overloaded.
+     */
+    public static QueryResult overloaded(String query) {
+        QueryResult result = new QueryResult(query);
+        result.markOverloaded();
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+package query;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    // the dropped terms of a query that was not reduced.
+    private static final String[] NONE = new String[0];
+
+    @Test
+    public void admitsOnSecondOffer() {
+        ResultCache cache = new ResultCache(4);
+        cache.offer("q", new int[]{3, 1}, new double[]{2.0, 1.0}, NONE);
+        assertFalse(cache.lookup("q").isPresent());
+
+        cache.offer("q", new int[]{3, 1}, new double[]{2.0, 1.0}, NONE);
+        Optional<ResultCache.Result> result = cache.lookup("q");
+        assertTrue(result.isPresent());
+        assertArrayEquals(new int[]{3, 1}, result.get().ranking);
+        assertArrayEquals(new double[]{2.0, 1.0}, result.get().scores, 0);
+        assertEquals(0, result.get().droppedTerms.length);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void returnsCopies() {
+        ResultCache cache = new ResultCache(4);
+        int[] ranking = {5};
+        cache.offer("q", ranking, new double[]{1.0}, NONE);
+        cache.offer("q", ranking, new double[]{1.0}, NONE);
+        ranking[0] = 6;
+
+        cache.lookup("q").get().ranking[0] = 7;
+        assertArrayEquals(new int[]{5}, cache.lookup("q").get().ranking);
+    }
+
+    @Test
+    public void keepsDroppedTerms() {
+        ResultCache cache = new ResultCache(4);
+        String[] dropped = {"narrative", "relevant"};
+        cache.offer("q", new int[]{2}, new double[]{1.0}, dropped);
+        cache.offer("q", new int[]{2}, new double[]{1.0}, dropped);
+        dropped[0] = "changed";
+
+        ResultCache.Result result = cache.lookup("q").get();
+        assertArrayEquals(new String[]{"narrative", "relevant"}, result.droppedTerms);
+        result.droppedTerms[1] = "changed";
+        assertArrayEquals(new String[]{"narrative", "relevant"}, cache.lookup("q").get().droppedTerms);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ResultCache cache = new ResultCache(2);
+        admit(cache, "a");
+        admit(cache, "b");
+
+        // looking up "a" makes "b" the least recently used result.
+        assertTrue(cache.lookup("a").isPresent());
+        admit(cache, "c");
+
+        assertTrue(cache.lookup("a").isPresent());
+        assertFalse(cache.lookup("b").isPresent());
+        assertTrue(cache.lookup("c").isPresent());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedCandidates() {
+        ResultCache cache = new ResultCache(2);
+        cache.offer("a", new int[0], new double[0], NONE);
+        cache.offer("b", new int[0], new double[0], NONE);
+        cache.offer("c", new int[0], new double[0], NONE);
+
+        // "a" was evicted from the candidates, so its second offer only makes it a candidate again.
+        cache.offer("a", new int[0], new double[0], NONE);
+        cache.offer("c", new int[0], new double[0], NONE);
+        assertFalse(cache.lookup("a").isPresent());
+        assertTrue(cache.lookup("c").isPresent());
+    }
+
+    @Test
+    public void disabledCacheCountsNothing() {
+        ResultCache cache = new ResultCache(0);
+        admit(cache, "q");
+
+        assertFalse(cache.lookup("q").isPresent());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void clearRemovesResultsAndCandidates() {
+        ResultCache cache = new ResultCache(2);
+        admit(cache, "a");
+        cache.offer("b", new int[0], new double[0], NONE);
+        cache.clear();
+
+        assertFalse(cache.lookup("a").isPresent());
+        cache.offer("b", new int[0], new double[0], NONE);
+        assertFalse(cache.lookup("b").isPresent());
+    }
+
+    // offers the result of the query twice, so it is admitted.
+    private static void admit(ResultCache cache, String key) {
+        cache.offer(key, new int[]{key.hashCode()}, new double[]{1.0}, NONE);
+        cache.offer(key, new int[]{key.hashCode()}, new double[]{1.0}, NONE);
+    }
+}
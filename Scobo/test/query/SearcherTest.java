@@ -0,0 +1,88 @@
+package query;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import util.Configuration;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SearcherTest {
+
+    // a query of three terms, reduced to the one with the highest estimated contribution.
+    private static final String REDUCED_QUERY = "apple berry cherry";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 10_000)
+    public void corruptLineCompletesTheRequest() throws Exception {
+        // the line of "zebra" has a posting without a frequency, so decoding it fails.
+        QueryProcessor processor = load("zebra|1|1|0|7|-1|-1|-1\n", "zebra|5");
+
+        QueryResult result = processor.query("zebra");
+        assertTrue(result.isPartial());
+        assertEquals(0, result.resultOf("zebra").get().length);
+
+        // the request released its admission, so the next requests are processed as well.
+        for (int i = 0; i < 3; i++)
+            assertFalse(processor.queryAsync(10, 0, "zebra").get(5, TimeUnit.SECONDS).isOverloaded());
+        processor.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void missingInvertedFileCompletesTheRequest() throws Exception {
+        QueryProcessor processor = load("zebra|1|1|0|7|-1|-1|-1\n", null);
+        assertTrue(processor.query("zebra").isPartial());
+        processor.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void reducedQueryIsCachedWithItsDroppedTerms() throws Exception {
+        Configuration config = Configuration.getInstance();
+        int resultCacheSize = config.getResultCacheSize();
+        QueryProcessor processor;
+        try {
+            config.setResultCacheSize(16);
+            processor = TestIndex.build(folder.getRoot(), 20, "apple|0,1|1,2|2,1", "berry|1,1|3,1",
+                    "cherry|0,2|1,1|2,1|3,1|4,1|5,1");
+        } finally {
+            config.setResultCacheSize(resultCacheSize);
+        }
+
+        // the result is admitted into the cache the second time the query is searched.
+        QueryResult searched = searchReduced(processor);
+        searchReduced(processor);
+        assertEquals(0, processor.getCacheHits());
+        QueryResult cached = searchReduced(processor);
+        assertEquals(1, processor.getCacheHits());
+
+        assertEquals(2, searched.droppedTermsOf(REDUCED_QUERY).length);
+        assertArrayEquals(searched.droppedTermsOf(REDUCED_QUERY), cached.droppedTermsOf(REDUCED_QUERY));
+        assertArrayEquals(searched.resultOf(REDUCED_QUERY).get(), cached.resultOf(REDUCED_QUERY).get());
+        processor.close();
+    }
+
+    // searches the reduced query with a term budget of a single term.
+    private static QueryResult searchReduced(QueryProcessor processor) throws Exception {
+        return processor.queryAsync(10, 0, QueryPriority.INTERACTIVE, 1, REDUCED_QUERY).get(5, TimeUnit.SECONDS);
+    }
+
+    // loads the index with a single request at a time, and without cached posting lists.
+    private QueryProcessor load(String dictionary, String invertedFile) throws IOException {
+        Configuration config = Configuration.getInstance();
+        int maxConcurrent = config.getMaxConcurrentQueries();
+        long postingCacheBytes = config.getPostingCacheBytes();
+        try {
+            config.setMaxConcurrentQueries(1);
+            config.setPostingCacheBytes(0);
+            return TestIndex.load(folder.getRoot(), dictionary, invertedFile);
+        } finally {
+            config.setMaxConcurrentQueries(maxConcurrent);
+            config.setPostingCacheBytes(postingCacheBytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package query;
+
+import indexer.Dictionary;
+import indexer.DocumentMap;
+import util.Configuration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Creates query processors over small indexes written by the tests, for tests of
+ * the query processor that do not depend on a real corpus.
+ */
+class TestIndex {
+
+    /**
+     * Writes an index without terms or documents into the given folder and loads a query processor
+     * from it, with the current configuration.
+     * @param folder an empty folder.
+     * @return a query processor of the empty index.
+     */
+    static QueryProcessor empty(File folder) throws IOException {
+        return load(folder, "", null);
+    }
+
+    /**
+     * Writes an index of the given posting lines into the given folder and loads a query processor from it,
+     * with the current configuration. Every document is 10 terms long and is named DOC-docID.
+     * @param folder an empty folder.
+     * @param documentCount the number of documents in the index.
+     * @param lines the posting lines of the index in the format term(|docID,tf)+, in the order of the inverted file.
+     * A line may be corrupt, its dictionary entry is still written.
+     * @return a query processor of the index.
+     */
+    static QueryProcessor build(File folder, int documentCount, String... lines) throws IOException {
+        StringBuilder dictionary = new StringBuilder();
+        StringBuilder invertedFile = new StringBuilder();
+        for (String line : lines) {
+            String[] postings = line.split("\\|");
+            int termFrequency = 0;
+            for (int i = 1; i < postings.length; i++) {
+                // a corrupt posting without a frequency is written as is.
+                String[] posting = postings[i].split(",");
+                termFrequency += posting.length > 1 ? Integer.parseInt(posting[1]) : 0;
+            }
+
+            dictionary.append(postings[0]).append('|').append(termFrequency).append('|').append(postings.length - 1)
+                    .append('|').append(invertedFile.length()).append('|').append(line.length())
+                    .append("|-1|-1|-1\n");
+            invertedFile.append(line).append('\n');
+        }
+
+        Configuration config = Configuration.getInstance();
+        String indexPath = config.getIndexPath();
+        try {
+            config.setIndexPath(folder.getAbsolutePath());
+            Files.createDirectories(Paths.get(config.getDocumentMapPath()).getParent());
+            writeDocumentMap(Paths.get(config.getDocumentMapPath()), documentCount);
+        } finally {
+            config.setIndexPath(indexPath);
+        }
+
+        return load(folder, dictionary.toString(), invertedFile.toString());
+    }
+
+    // writes a document map of documents that are 10 terms long and have no dominant entities.
+    private static void writeDocumentMap(Path path, int documentCount) throws IOException {
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+        DataOutputStream heap = new DataOutputStream(heapBytes);
+        int[] nameOffsets = new int[documentCount];
+        int[] entityOffsets = new int[documentCount];
+        for (int docID = 0; docID < documentCount; docID++) {
+            nameOffsets[docID] = heap.size();
+            byte[] name = ("DOC-" + docID).getBytes(StandardCharsets.UTF_8);
+            heap.writeShort(name.length);
+            heap.write(name);
+            entityOffsets[docID] = heap.size();
+            heap.writeByte(0);
+        }
+
+        try (DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writer.writeInt(documentCount);
+            writer.writeLong(10L * documentCount);
+            for (int docID = 0; docID < documentCount; docID++)
+                writer.writeInt(10);
+            for (int docID = 0; docID < documentCount; docID++)
+                writer.writeInt(1);
+            for (int offset : nameOffsets)
+                writer.writeInt(offset);
+            for (int offset : entityOffsets)
+                writer.writeInt(offset);
+            heapBytes.writeTo(writer);
+        }
+    }
+
+    /**
+     * Writes an index with the given dictionary and inverted file into the given folder and loads a query
+     * processor from it, with the current configuration. The index has no documents, unless a document map
+     * was already written into the folder.
+     * @param folder a folder without an index.
+     * @param dictionary the lines of the dictionary file.
+     * @param invertedFile the contents of the inverted file, null if the index has no inverted file.
+     * @return a query processor of the index.
+     */
+    static QueryProcessor load(File folder, String dictionary, String invertedFile) throws IOException {
+        Configuration config = Configuration.getInstance();
+        String indexPath = config.getIndexPath();
+        try {
+            config.setIndexPath(folder.getAbsolutePath());
+            Files.createDirectories(Paths.get(config.getDictionaryPath()).getParent());
+            Files.write(Paths.get(config.getDictionaryPath()), dictionary.getBytes(StandardCharsets.UTF_8));
+            if (invertedFile != null)
+                Files.write(Paths.get(config.getInvertedFilePath()), invertedFile.getBytes(StandardCharsets.UTF_8));
+            // the header of a document map without documents: [count][total length].
+            if (!Files.exists(Paths.get(config.getDocumentMapPath())))
+                Files.write(Paths.get(config.getDocumentMapPath()), new byte[Integer.BYTES + Long.BYTES]);
+            return new QueryProcessor(config.getIndexPath(), Dictionary.loadDictionary(), DocumentMap.loadDocumentMap());
+        } finally {
+            config.setIndexPath(indexPath);
+        }
+    }
+}
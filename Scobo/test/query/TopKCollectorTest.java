@@ -0,0 +1,86 @@
+package query;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKCollectorTest {
+
+    @Test
+    public void collectsHighestScores() {
+        TopKCollector collector = new TopKCollector(3);
+        double[] scores = {1.5, 4.0, 0.5, 3.0, 2.0, 6.0};
+        for (int docID = 0; docID < scores.length; docID++)
+            collector.offer(docID, scores[docID]);
+
+        assertArrayEquals(new int[]{5, 1, 3}, collector.getDocuments());
+        assertArrayEquals(new double[]{6.0, 4.0, 3.0}, collector.getScores(), 0);
+    }
+
+    @Test
+    public void collectsAllWhenKExceedsHits() {
+        TopKCollector collector = new TopKCollector(1000);
+        collector.offer(7, 1.0);
+        collector.offer(3, 2.0);
+
+        assertEquals(2, collector.size());
+        assertEquals(Double.NEGATIVE_INFINITY, collector.threshold(), 0);
+        assertArrayEquals(new int[]{3, 7}, collector.getDocuments());
+        assertArrayEquals(new double[]{2.0, 1.0}, collector.getScores(), 0);
+    }
+
+    @Test
+    public void collectsNothingWhenKIsZero() {
+        TopKCollector collector = new TopKCollector(0);
+        collector.offer(1, 1.0);
+        collector.offer(2, 2.0);
+
+        assertEquals(0, collector.size());
+        assertEquals(0, collector.getDocuments().length);
+        assertEquals(0, collector.getScores().length);
+    }
+
+    @Test
+    public void ordersTiesByLowerDocID() {
+        TopKCollector collector = new TopKCollector(3);
+        int[] docIDs = {9, 4, 6, 2, 8};
+        for (int docID : docIDs)
+            collector.offer(docID, 1.0);
+
+        assertEquals(1.0, collector.threshold(), 0);
+
+        // a document with the threshold score is collected only if its docID is lower than the worst document.
+        collector.offer(7, 1.0);
+        collector.offer(1, 1.0);
+        assertArrayEquals(new int[]{1, 2, 4}, collector.getDocuments());
+    }
+
+    @Test
+    public void doesNotDependOnOfferOrder() {
+        Random random = new Random(17);
+        int documents = 500;
+        double[] scores = new double[documents];
+        for (int docID = 0; docID < documents; docID++)
+            scores[docID] = random.nextInt(20);
+
+        TopKCollector ascending = new TopKCollector(25);
+        TopKCollector descending = new TopKCollector(25);
+        for (int docID = 0; docID < documents; docID++) {
+            ascending.offer(docID, scores[docID]);
+            descending.offer(documents - 1 - docID, scores[documents - 1 - docID]);
+        }
+
+        assertArrayEquals(ascending.getDocuments(), descending.getDocuments());
+        assertArrayEquals(ascending.getScores(), descending.getScores(), 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOfferAfterSort() {
+        TopKCollector collector = new TopKCollector(2);
+        collector.offer(1, 1.0);
+        collector.getDocuments();
+        collector.offer(2, 2.0);
+    }
+}
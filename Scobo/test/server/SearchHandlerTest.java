@@ -0,0 +1,160 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import query.QueryPriority;
+import query.QueryResult;
+import query.QueryResults;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class SearchHandlerTest {
+
+    private HttpServer server;
+    // the next search of the handler.
+    private volatile SearchHandler.Search search;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/search", new SearchHandler(
+                (resultSize, timeout, priority, termBudget, query) ->
+                        search.search(resultSize, timeout, priority, termBudget, query),
+                docID -> "DOC-" + docID + (docID == 7 ? "\"x\"" : "")));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void rejectsBadRequests() throws IOException {
+        search = (resultSize, timeout, priority, termBudget, query) -> {
+            throw new AssertionError("a bad request must not be searched");
+        };
+
+        assertEquals(400, get("").status);
+        assertEquals(400, get("?q=").status);
+        assertEquals(400, get("?q=a&k=ten").status);
+        assertEquals(400, get("?q=a&k=0").status);
+        assertEquals(400, get("?q=a&k=" + (SearchHandler.MAX_RESULT_SIZE + 1)).status);
+        assertEquals(400, get("?q=a&timeout=-1").status);
+        assertEquals(400, get("?q=a&priority=urgent").status);
+        assertEquals(400, get("?q=%zz").status);
+
+        Response response = request("POST", "?q=a");
+        assertEquals(405, response.status);
+        assertEquals("{\"error\":\"only GET requests are supported\"}", response.body);
+    }
+
+    @Test
+    public void answersOverloadedWith503() throws IOException {
+        search = (resultSize, timeout, priority, termBudget, query) ->
+                CompletableFuture.completedFuture(QueryResults.overloaded(query));
+
+        Response response = get("?q=a");
+        assertEquals(503, response.status);
+        assertEquals("{\"error\":\"overloaded\"}", response.body);
+    }
+
+    @Test
+    public void answersResultsAsJson() throws IOException {
+        String query = "say \"hi\"\\\n";
+        search = (resultSize, timeout, priority, termBudget, q) -> {
+            assertEquals(query, q);
+            assertEquals(2, resultSize);
+            assertEquals(50, timeout);
+            assertEquals(QueryPriority.BATCH, priority);
+            return CompletableFuture.completedFuture(
+                    QueryResults.of(q, new int[]{7, 3}, new double[]{2.5, 1.0}, "tab\there"));
+        };
+
+        Response response = get("?q=" + URLEncoder.encode(query, "UTF-8") + "&k=2&timeout=50&priority=batch");
+        assertEquals(200, response.status);
+        assertEquals("{\"query\":\"say \\\"hi\\\"\\\\\\n\",\"partial\":false,\"dropped\":[\"tab\\there\"],"
+                + "\"results\":[{\"docID\":7,\"name\":\"DOC-7\\\"x\\\"\",\"score\":2.5},"
+                + "{\"docID\":3,\"name\":\"DOC-3\",\"score\":1.0}]}", response.body);
+    }
+
+    @Test
+    public void marksPartialResults() throws IOException {
+        search = (resultSize, timeout, priority, termBudget, query) ->
+                CompletableFuture.completedFuture(QueryResults.partial(query, new int[]{3}, new double[]{1.0}));
+
+        Response response = get("?q=a");
+        assertEquals(200, response.status);
+        assertEquals("{\"query\":\"a\",\"partial\":true,\"dropped\":[],"
+                + "\"results\":[{\"docID\":3,\"name\":\"DOC-3\",\"score\":1.0}]}", response.body);
+    }
+
+    @Test
+    public void answersFailuresWith500() throws IOException {
+        search = (resultSize, timeout, priority, termBudget, query) -> {
+            CompletableFuture<QueryResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("index is closed"));
+            return future;
+        };
+        assertEquals(500, get("?q=a").status);
+
+        search = (resultSize, timeout, priority, termBudget, query) -> {
+            throw new IllegalStateException("index is closed");
+        };
+        Response response = get("?q=a");
+        assertEquals(500, response.status);
+        assertEquals("{\"error\":\"the query could not be processed\"}", response.body);
+    }
+
+    @Test
+    public void quotesControlCharacters() {
+        assertEquals("\"\"", SearchHandler.quote(""));
+        assertEquals("\"a\\\"b\\\\c\"", SearchHandler.quote("a\"b\\c"));
+        assertEquals("\"\\n\\r\\t\\u0000\\u001f\"", SearchHandler.quote("\n\r\t\u0000\u001f"));
+        assertEquals("\"\u05e9/\u007f\"", SearchHandler.quote("\u05e9/\u007f"));
+    }
+
+    private Response get(String query) throws IOException {
+        return request("GET", query);
+    }
+
+    // sends a request to the handler and reads its response.
+    private Response request(String method, String query) throws IOException {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/search" + query);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        try {
+            int status = connection.getResponseCode();
+            InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int read; (read = input.read(buffer)) > 0; )
+                body.write(buffer, 0, read);
+            return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
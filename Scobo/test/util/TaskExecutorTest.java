@@ -0,0 +1,84 @@
+package util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TaskExecutorTest {
+
+    private TaskExecutor executor;
+    // blocks the only thread of the executor, so the tasks wait in the queue until it is released.
+    private CountDownLatch blocker;
+    private List<String> executed;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        executor = new TaskExecutor(1, 16);
+        blocker = new CountDownLatch(1);
+        executed = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void executesInteractiveTasksFirst() throws InterruptedException {
+        execute("low 1", TaskExecutor.PRIORITY_LOW);
+        execute("low 2", TaskExecutor.PRIORITY_LOW);
+        execute("default", TaskExecutor.DEFAULT_PRIORITY);
+        execute("interactive 1", TaskExecutor.INTERACTIVE_PRIORITY);
+        execute("high", TaskExecutor.HIGH_PRIORITY);
+        execute("interactive 2", TaskExecutor.INTERACTIVE_PRIORITY);
+
+        awaitExecution();
+        assertEquals(Arrays.asList("interactive 1", "interactive 2", "high", "default", "low 1", "low 2"), executed);
+    }
+
+    @Test
+    public void agedTasksAreNotStarved() throws InterruptedException {
+        // a low priority task is behind interactive tasks that were enqueued up to 3 aging periods after it.
+        execute("low", TaskExecutor.PRIORITY_LOW);
+        Thread.sleep(TaskExecutor.AGING_MILLIS + TaskExecutor.AGING_MILLIS / 2);
+        execute("interactive 1", TaskExecutor.INTERACTIVE_PRIORITY);
+        Thread.sleep(2 * TaskExecutor.AGING_MILLIS + TaskExecutor.AGING_MILLIS / 2);
+        execute("interactive 2", TaskExecutor.INTERACTIVE_PRIORITY);
+        execute("high", TaskExecutor.HIGH_PRIORITY);
+
+        awaitExecution();
+        assertEquals(Arrays.asList("interactive 1", "low", "interactive 2", "high"), executed);
+    }
+
+    private void execute(String name, int priority) {
+        executor.execute(() -> executed.add(name), priority);
+    }
+
+    // releases the executor and waits until all the queued tasks were executed.
+    private void awaitExecution() throws InterruptedException {
+        blocker.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}